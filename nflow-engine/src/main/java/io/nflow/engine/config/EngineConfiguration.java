@@ -3,8 +3,10 @@ package io.nflow.engine.config;
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
 import static java.lang.Runtime.getRuntime;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
@@ -28,18 +30,29 @@ import io.nflow.engine.internal.executor.WorkflowInstanceExecutor;
 public class EngineConfiguration {
 
   /**
-   * Creates a workflow instance executor for processing workflow instances.
+   * Creates a workflow instance executor for processing workflow instances. If the application defines an executor service
+   * bean qualified with {@link NFlow}, the state processors are run in it and the number of in-flight state processors is
+   * limited by <code>nflow.dispatcher.executor.inflight.max</code>. Otherwise a fixed size thread pool is created.
    *
    * @param nflowThreadFactory Thread factory to be used for creating instance executor threads.
    * @param env The Spring environment.
+   * @param nflowExecutorService Optional application provided executor service for running the state processors.
    * @return Workflow instance executor.
    */
   @Bean
-  public WorkflowInstanceExecutor nflowExecutor(@NFlow ThreadFactory nflowThreadFactory, Environment env) {
+  public WorkflowInstanceExecutor nflowExecutor(@NFlow ThreadFactory nflowThreadFactory, Environment env,
+      @NFlow ObjectProvider<ExecutorService> nflowExecutorService) {
     int threadCount = env.getProperty("nflow.executor.thread.count", Integer.class, 2 * getRuntime().availableProcessors());
     int awaitTerminationSeconds = env.getRequiredProperty("nflow.dispatcher.await.termination.seconds", Integer.class);
     int queueSize = env.getProperty("nflow.dispatcher.executor.queue.size", Integer.class, 2 * threadCount);
     int notifyThreshold = env.getProperty("nflow.dispatcher.executor.queue.wait_until_threshold", Integer.class, queueSize / 2);
+    ExecutorService executorService = nflowExecutorService.getIfAvailable();
+    if (executorService != null) {
+      int maxInFlight = env.getProperty("nflow.dispatcher.executor.inflight.max", Integer.class, threadCount + queueSize);
+      int inFlightThreshold = env.getProperty("nflow.dispatcher.executor.inflight.wait_until_threshold", Integer.class,
+          maxInFlight / 2);
+      return new WorkflowInstanceExecutor(executorService, maxInFlight, inFlightThreshold, awaitTerminationSeconds);
+    }
     int keepAliveSeconds = env.getRequiredProperty("nflow.dispatcher.executor.thread.keepalive.seconds", Integer.class);
     return new WorkflowInstanceExecutor(queueSize, threadCount, notifyThreshold, awaitTerminationSeconds, keepAliveSeconds,
         nflowThreadFactory);
@@ -21,7 +21,10 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import io.nflow.engine.config.NFlow;
+import io.nflow.engine.internal.executor.LocalActivationNotifier;
+import io.nflow.engine.internal.executor.TableActivationNotifier;
 import io.nflow.engine.internal.storage.db.DatabaseInitializer;
+import io.nflow.engine.workflow.executor.ActivationNotifier;
 
 /**
  * Base class for different database configurations.
@@ -118,6 +121,44 @@ public abstract class DatabaseConfiguration {
     return new TransactionTemplate(platformTransactionManager);
   }
 
+  /**
+   * Creates the activation notifier that wakes up the workflow dispatchers when workflow instances become ready for execution.
+   * @param jdbcTemplate The nFlow JDBC template.
+   * @param dataSource The nFlow datasource.
+   * @param env The Spring environment.
+   * @return The activation notifier.
+   */
+  @Bean
+  @NFlow
+  public ActivationNotifier nflowActivationNotifier(@NFlow JdbcTemplate jdbcTemplate, @NFlow DataSource dataSource,
+      Environment env) {
+    String type = env.getRequiredProperty("nflow.dispatcher.activation.notifier");
+    String executorGroup = env.getRequiredProperty("nflow.executor.group").trim();
+    return createActivationNotifier(type, jdbcTemplate, dataSource, executorGroup, env);
+  }
+
+  /**
+   * Creates the activation notifier of given type. Override this to support database specific notifiers.
+   * @param type The activation notifier type.
+   * @param jdbcTemplate The nFlow JDBC template.
+   * @param dataSource The nFlow datasource.
+   * @param executorGroup The executor group.
+   * @param env The Spring environment.
+   * @return The activation notifier.
+   */
+  protected ActivationNotifier createActivationNotifier(String type, JdbcTemplate jdbcTemplate, DataSource dataSource,
+      String executorGroup, Environment env) {
+    switch (type) {
+    case "local":
+      return new LocalActivationNotifier();
+    case "table":
+      return new TableActivationNotifier(jdbcTemplate, executorGroup,
+          env.getRequiredProperty("nflow.dispatcher.activation.poll.ms", Long.class));
+    default:
+      throw new IllegalStateException("Unsupported activation notifier type " + type + " for " + dbType + " database");
+    }
+  }
+
   /**
    * Get a database configuration string property from the environment, or if the generic property is not defined, the property
    * based on the database type.
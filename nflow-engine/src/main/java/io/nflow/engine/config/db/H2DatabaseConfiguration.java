@@ -163,5 +163,22 @@ public class H2DatabaseConfiguration extends DatabaseConfiguration {
     public boolean useBatchUpdate() {
       return true;
     }
+
+    /**
+     * Returns false as H2 does not support skipping locked rows.
+     */
+    @Override
+    public boolean hasSkipLocked() {
+      return false;
+    }
+
+    /**
+     * Returns SQL for a query with a limit of results that locks the selected rows. H2 does not support skipping locked rows,
+     * so the query waits for rows locked by other transactions.
+     */
+    @Override
+    public String forUpdateSkipLocked(String query, String limit) {
+      return limit(query, limit) + " for update";
+    }
   }
 }
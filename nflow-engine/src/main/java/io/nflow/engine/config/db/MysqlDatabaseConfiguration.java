@@ -15,6 +15,7 @@ import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.datasource.DataSourceUtils;
@@ -32,6 +33,7 @@ import io.nflow.engine.workflow.instance.WorkflowInstance.WorkflowInstanceStatus
 @Configuration
 public class MysqlDatabaseConfiguration extends DatabaseConfiguration {
   private static final Logger logger = getLogger(MysqlDatabaseConfiguration.class);
+  private boolean hasSkipLocked;
 
   /**
    * Create a new instance.
@@ -63,11 +65,17 @@ public class MysqlDatabaseConfiguration extends DatabaseConfiguration {
           databaseProductVersion = databaseProductVersion.substring(6);
         }
         String[] versions = split(databaseProductVersion, ".-");
-        if (parseInt(versions[0]) <= 5 && parseInt(versions[1]) <= 5) {
+        int mariaDbMajorVersion = parseInt(versions[0]);
+        int mariaDbMinorVersion = parseInt(versions[1]);
+        if (mariaDbMajorVersion <= 5 && mariaDbMinorVersion <= 5) {
           dbType += ".legacy";
         }
-      } else if (majorVersion <= 5 && minorVersion <= 5) {
-        dbType += ".legacy";
+        hasSkipLocked = mariaDbMajorVersion > 10 || (mariaDbMajorVersion == 10 && mariaDbMinorVersion >= 6);
+      } else {
+        if (majorVersion <= 5 && minorVersion <= 5) {
+          dbType += ".legacy";
+        }
+        hasSkipLocked = majorVersion >= 8;
       }
     } catch (SQLException e) {
       throw new RuntimeException("Failed to obtain mysql version", e);
@@ -80,8 +88,9 @@ public class MysqlDatabaseConfiguration extends DatabaseConfiguration {
    * @return SQL variants optimized for MySQL.
    */
   @Bean
+  @DependsOn(NFLOW_DATABASE_INITIALIZER)
   public SQLVariants sqlVariants() {
-    return new MySQLVariants();
+    return new MySQLVariants(hasSkipLocked);
   }
 
   /**
@@ -89,6 +98,23 @@ public class MysqlDatabaseConfiguration extends DatabaseConfiguration {
    */
   public static class MySQLVariants implements SQLVariants {
 
+    private final boolean hasSkipLocked;
+
+    /**
+     * Create a new instance that does not skip locked rows.
+     */
+    public MySQLVariants() {
+      this(false);
+    }
+
+    /**
+     * Create a new instance.
+     * @param hasSkipLocked True for MySQL 8.0 or newer and MariaDB 10.6 or newer.
+     */
+    public MySQLVariants(boolean hasSkipLocked) {
+      this.hasSkipLocked = hasSkipLocked;
+    }
+
     /**
      * Returns SQL representing the current database time plus given amount of seconds.
      */
@@ -179,5 +205,21 @@ public class MysqlDatabaseConfiguration extends DatabaseConfiguration {
     public boolean useBatchUpdate() {
       return true;
     }
+
+    /**
+     * Returns true for MySQL 8.0 or newer and MariaDB 10.6 or newer.
+     */
+    @Override
+    public boolean hasSkipLocked() {
+      return hasSkipLocked;
+    }
+
+    /**
+     * Returns SQL for a query with a limit of results that locks the selected rows and skips rows locked by other transactions.
+     */
+    @Override
+    public String forUpdateSkipLocked(String query, String limit) {
+      return limit(query, limit) + " for update skip locked";
+    }
   }
 }
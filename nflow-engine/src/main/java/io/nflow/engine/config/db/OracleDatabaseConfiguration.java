@@ -179,5 +179,23 @@ public class OracleDatabaseConfiguration extends DatabaseConfiguration {
     public boolean useBatchUpdate() {
       return useBatchUpdate;
     }
+
+    /**
+     * Returns true as Oracle supports skipping locked rows.
+     */
+    @Override
+    public boolean hasSkipLocked() {
+      return true;
+    }
+
+    /**
+     * Returns SQL for a query that locks the selected rows and skips rows locked by other transactions. Oracle does not allow
+     * limiting the rows in the same query, but locks the rows only when they are fetched, so the caller must read at most
+     * <code>limit</code> rows from the result set.
+     */
+    @Override
+    public String forUpdateSkipLocked(String query, String limit) {
+      return query + " for update skip locked";
+    }
   }
 }
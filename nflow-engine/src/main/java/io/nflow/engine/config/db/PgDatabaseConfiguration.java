@@ -1,14 +1,30 @@
 package io.nflow.engine.config.db;
 
 import static io.nflow.engine.config.Profiles.POSTGRESQL;
+import static org.slf4j.LoggerFactory.getLogger;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
 import java.sql.Types;
 
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Profile;
-
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.nflow.engine.config.NFlow;
+import io.nflow.engine.internal.executor.PgListenActivationNotifier;
+import io.nflow.engine.internal.storage.db.DatabaseInitializer;
 import io.nflow.engine.internal.storage.db.SQLVariants;
+import io.nflow.engine.workflow.executor.ActivationNotifier;
 import io.nflow.engine.workflow.instance.WorkflowInstance.WorkflowInstanceStatus;
 
 /**
@@ -18,6 +34,9 @@ import io.nflow.engine.workflow.instance.WorkflowInstance.WorkflowInstanceStatus
 @Configuration
 public class PgDatabaseConfiguration extends DatabaseConfiguration {
 
+  private static final Logger logger = getLogger(PgDatabaseConfiguration.class);
+  private boolean hasSkipLocked;
+
   /**
    * Create a new instance.
    */
@@ -25,13 +44,49 @@ public class PgDatabaseConfiguration extends DatabaseConfiguration {
     super("postgresql");
   }
 
+  /**
+   * Creates the nFlow database initializer.
+   * @param nflowDataSource The nFlow datasource.
+   * @param env The Spring environment.
+   * @return The database initializer.
+   */
+  @Bean
+  @Override
+  @SuppressFBWarnings(value = "WEM_WEAK_EXCEPTION_MESSAGING", justification = "exception message is ok")
+  public DatabaseInitializer nflowDatabaseInitializer(@NFlow DataSource nflowDataSource, Environment env) {
+    try (Connection c = DataSourceUtils.getConnection(nflowDataSource)) {
+      DatabaseMetaData meta = c.getMetaData();
+      int majorVersion = meta.getDatabaseMajorVersion();
+      int minorVersion = meta.getDatabaseMinorVersion();
+      logger.info("PostgreSQL {}.{}, product version {}", majorVersion, minorVersion, meta.getDatabaseProductVersion());
+      hasSkipLocked = (majorVersion > 9 || (majorVersion == 9 && minorVersion >= 5));
+    } catch (SQLException e) {
+      throw new RuntimeException("Failed to obtain postgresql version", e);
+    }
+    return super.nflowDatabaseInitializer(nflowDataSource, env);
+  }
+
   /**
    * Creates the SQL variants for PostgreSQL database.
    * @return SQL variants optimized for PostgreSQL.
    */
   @Bean
+  @DependsOn(NFLOW_DATABASE_INITIALIZER)
   public SQLVariants sqlVariants() {
-    return new PostgreSQLVariants();
+    return new PostgreSQLVariants(hasSkipLocked);
+  }
+
+  /**
+   * Creates the activation notifier of given type. In addition to the common types, supports type <code>listen</code> that uses
+   * PostgreSQL LISTEN/NOTIFY.
+   */
+  @Override
+  protected ActivationNotifier createActivationNotifier(String type, JdbcTemplate jdbcTemplate, DataSource dataSource,
+      String executorGroup, Environment env) {
+    if ("listen".equals(type)) {
+      return new PgListenActivationNotifier(jdbcTemplate, dataSource, executorGroup);
+    }
+    return super.createActivationNotifier(type, jdbcTemplate, dataSource, executorGroup, env);
   }
 
   /**
@@ -39,6 +94,23 @@ public class PgDatabaseConfiguration extends DatabaseConfiguration {
    */
   public static class PostgreSQLVariants implements SQLVariants {
 
+    private final boolean hasSkipLocked;
+
+    /**
+     * Create a new instance that does not skip locked rows.
+     */
+    public PostgreSQLVariants() {
+      this(false);
+    }
+
+    /**
+     * Create a new instance.
+     * @param hasSkipLocked True for database versions 9.5 or newer.
+     */
+    public PostgreSQLVariants(boolean hasSkipLocked) {
+      this.hasSkipLocked = hasSkipLocked;
+    }
+
     /**
      * Returns SQL representing the current database time plus given amount of seconds.
      */
@@ -129,5 +201,21 @@ public class PgDatabaseConfiguration extends DatabaseConfiguration {
     public boolean useBatchUpdate() {
       return true;
     }
+
+    /**
+     * Returns true for database versions 9.5 or newer.
+     */
+    @Override
+    public boolean hasSkipLocked() {
+      return hasSkipLocked;
+    }
+
+    /**
+     * Returns SQL for a query with a limit of results that locks the selected rows and skips rows locked by other transactions.
+     */
+    @Override
+    public String forUpdateSkipLocked(String query, String limit) {
+      return limit(query, limit) + " for update skip locked";
+    }
   }
 }
@@ -2,10 +2,12 @@ package io.nflow.engine.internal.dao;
 
 import static io.nflow.engine.internal.dao.DaoUtil.firstColumnLengthExtractor;
 import static io.nflow.engine.internal.dao.DaoUtil.toDateTime;
+import static java.lang.Math.max;
+import static java.lang.System.nanoTime;
 import static java.net.InetAddress.getLocalHost;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.lang3.StringUtils.left;
 import static org.apache.commons.lang3.StringUtils.trimToNull;
-import static org.joda.time.DateTime.now;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.springframework.transaction.support.TransactionSynchronizationManager.isActualTransactionActive;
 
@@ -25,7 +27,6 @@ import org.springframework.core.env.Environment;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
-import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
@@ -34,6 +35,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.nflow.engine.config.NFlow;
+import io.nflow.engine.internal.executor.ExecutorLoad;
 import io.nflow.engine.internal.storage.db.SQLVariants;
 import io.nflow.engine.workflow.executor.WorkflowExecutor;
 
@@ -48,7 +50,7 @@ public class ExecutorDao {
   SQLVariants sqlVariants;
 
   private int keepaliveIntervalSeconds;
-  private DateTime nextUpdate = now();
+  private volatile long leaseExpiresNanos;
 
   String executorGroup;
   String executorGroupCondition;
@@ -87,15 +89,6 @@ public class ExecutorDao {
     return "executor_group = '" + group + "'";
   }
 
-  public boolean tick() {
-    if (nextUpdate.isAfterNow()) {
-      return false;
-    }
-    nextUpdate = now().plusSeconds(keepaliveIntervalSeconds);
-    updateActiveTimestamp();
-    return true;
-  }
-
   public String getExecutorGroup() {
     return executorGroup;
   }
@@ -111,8 +104,21 @@ public class ExecutorDao {
     return executorId;
   }
 
-  public DateTime getMaxWaitUntil() {
-    return nextUpdate;
+  /**
+   * Return true if the lease of this executor is valid, i.e. other executors do not consider this executor dead. The lease is
+   * renewed by updating the active timestamp. It expires locally one keepalive interval before the expiration time seen by the
+   * other executors, measured from the start of the last successful update, so that the dispatcher has time to stop starting
+   * claimed workflow instances before they can be recovered by other executors.
+   *
+   * @return True if the lease is valid, false otherwise.
+   */
+  public boolean hasValidLease() {
+    getExecutorId();
+    return nanoTime() - leaseExpiresNanos < 0;
+  }
+
+  private void renewLease(long updateStartNanos) {
+    leaseExpiresNanos = updateStartNanos + SECONDS.toNanos(max(0, timeoutSeconds - keepaliveIntervalSeconds));
   }
 
   @Transactional
@@ -133,6 +139,7 @@ public class ExecutorDao {
     }
     logger.info("Joining executor group {}", executorGroup);
     KeyHolder keyHolder = new GeneratedKeyHolder();
+    long updateStartNanos = nanoTime();
     jdbc.update(new PreparedStatementCreator() {
       @Override
       @SuppressFBWarnings(value = { "OBL_UNSATISFIED_OBLIGATION_EXCEPTION_EDGE",
@@ -147,17 +154,37 @@ public class ExecutorDao {
         return p;
       }
     }, keyHolder);
+    renewLease(updateStartNanos);
     return keyHolder.getKey().intValue();
   }
 
-  public void updateActiveTimestamp() {
-    updateWithPreparedStatement("update nflow_executor set active=current_timestamp, expires="
-        + sqlVariants.currentTimePlusSeconds(timeoutSeconds) + " where id = " + getExecutorId());
+  /**
+   * Update the active timestamp and the published load of this executor, and renew the lease of this executor.
+   *
+   * @param load The current load of this executor.
+   */
+  public void updateActiveTimestamp(ExecutorLoad load) {
+    long updateStartNanos = nanoTime();
+    int updated = jdbc.update("update nflow_executor set active=current_timestamp, expires=" + sqlVariants.currentTimePlusSeconds(timeoutSeconds)
+        + ", thread_count = ?, busy_threads = ?, queue_size = ?, throughput = ? where id = ?", load.threadCount, load.busyThreads,
+        load.queueSize, load.throughput, getExecutorId());
+    if (updated > 0) {
+      renewLease(updateStartNanos);
+    }
   }
 
-  private void updateWithPreparedStatement(String sql) {
-    // jdbc.update(sql) won't use prepared statements, this uses.
-    jdbc.update(sql, (PreparedStatementSetter) null);
+  /**
+   * Return the last published load of the other active executors in the executor group. Executors that have not published
+   * their load are not included.
+   *
+   * @return The loads of the other executors.
+   */
+  public List<ExecutorLoad> getOtherExecutorLoads() {
+    return jdbc.query("select thread_count, busy_threads, queue_size, throughput from nflow_executor where executor_group = ?"
+        + " and id <> ? and expires > current_timestamp and thread_count is not null",
+        (rs, rowNum) -> new ExecutorLoad(rs.getInt("thread_count"), rs.getInt("busy_threads"), rs.getInt("queue_size"),
+            rs.getInt("throughput")),
+        executorGroup, getExecutorId());
   }
 
   public List<WorkflowExecutor> getExecutors() {
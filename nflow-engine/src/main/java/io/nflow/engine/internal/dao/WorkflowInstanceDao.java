@@ -9,9 +9,14 @@ import static io.nflow.engine.workflow.instance.WorkflowInstance.WorkflowInstanc
 import static io.nflow.engine.workflow.instance.WorkflowInstance.WorkflowInstanceStatus.inProgress;
 import static io.nflow.engine.workflow.instance.WorkflowInstanceAction.WorkflowActionType.recovery;
 import static java.lang.Math.min;
+import static java.lang.Thread.currentThread;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.nCopies;
 import static java.util.Collections.sort;
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.abbreviate;
 import static org.apache.commons.lang3.StringUtils.join;
@@ -30,7 +35,9 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -65,11 +72,10 @@ import org.springframework.util.Assert;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.nflow.engine.config.NFlow;
-import io.nflow.engine.internal.executor.InstanceInfo;
-import io.nflow.engine.internal.executor.WorkflowInstanceExecutor;
 import io.nflow.engine.internal.storage.db.SQLVariants;
 import io.nflow.engine.model.ModelObject;
 import io.nflow.engine.service.WorkflowInstanceInclude;
+import io.nflow.engine.workflow.executor.ActivationNotifier;
 import io.nflow.engine.workflow.instance.QueryWorkflowInstances;
 import io.nflow.engine.workflow.instance.WorkflowInstance;
 import io.nflow.engine.workflow.instance.WorkflowInstance.WorkflowInstanceStatus;
@@ -86,13 +92,14 @@ public class WorkflowInstanceDao {
 
   static final Map<Integer, Map<String, String>> EMPTY_ACTION_STATE_MAP = Collections.<Integer, Map<String, String>> emptyMap();
   static final Logger logger = getLogger(WorkflowInstanceDao.class);
+  private static final int MAX_IN_CLAUSE_SIZE = 1000;
 
   JdbcTemplate jdbc;
   private NamedParameterJdbcTemplate namedJdbc;
   private TransactionTemplate transaction;
   ExecutorDao executorInfo;
   SQLVariants sqlVariants;
-  private WorkflowInstanceExecutor workflowInstanceExecutor;
+  private ActivationNotifier activationNotifier;
   WorkflowInstanceFactory workflowInstanceFactory;
   private long workflowInstanceQueryMaxResults;
   private long workflowInstanceQueryMaxResultsDefault;
@@ -100,6 +107,8 @@ public class WorkflowInstanceDao {
   private long workflowInstanceQueryMaxActionsDefault;
   int instanceStateTextLength;
   int actionStateTextLength;
+  private int pollLookAheadSeconds;
+  private boolean lazyStateVariables;
 
   @Inject
   public void setSqlVariants(SQLVariants sqlVariants) {
@@ -137,11 +146,22 @@ public class WorkflowInstanceDao {
     // In one deployment, FirstColumnLengthExtractor returned 0 column length (H2), so allow explicit length setting.
     instanceStateTextLength = env.getProperty("nflow.workflow.instance.state.text.length", Integer.class, -1);
     actionStateTextLength = env.getProperty("nflow.workflow.action.state.text.length", Integer.class, -1);
+    pollLookAheadSeconds = env.getRequiredProperty("nflow.dispatcher.lookahead.seconds", Integer.class);
+    lazyStateVariables = env.getRequiredProperty("nflow.executor.stateVariables.lazy", Boolean.class);
+  }
+
+  /**
+   * Return how many seconds before their next activation time workflow instances are claimed by polling.
+   *
+   * @return The look-ahead in seconds, or zero when look-ahead polling is disabled.
+   */
+  public int getPollLookAheadSeconds() {
+    return pollLookAheadSeconds;
   }
 
   @Inject
-  public void setWorkflowInstanceExecutor(WorkflowInstanceExecutor workflowInstanceExecutor) {
-    this.workflowInstanceExecutor = workflowInstanceExecutor;
+  public void setActivationNotifier(@NFlow ActivationNotifier activationNotifier) {
+    this.activationNotifier = activationNotifier;
   }
 
   @Inject
@@ -171,7 +191,7 @@ public class WorkflowInstanceDao {
       id = insertWorkflowInstanceWithTransaction(instance);
     }
     if (instance.nextActivation != null && instance.nextActivation.isBeforeNow()) {
-      workflowInstanceExecutor.wakeUpDispatcherIfNeeded();
+      activationNotifier.notifyActivation();
     }
     return id;
   }
@@ -183,7 +203,7 @@ public class WorkflowInstanceDao {
       Object[] instanceValues = new Object[] { instance.type, instance.rootWorkflowId, instance.parentWorkflowId,
           instance.parentActionId, instance.businessKey, instance.externalId, executorInfo.getExecutorGroup(),
           instance.status.name(), instance.state, abbreviate(instance.stateText, getInstanceStateTextLength()),
-          toTimestamp(instance.nextActivation), instance.signal.orElse(null) };
+          toTimestamp(instance.nextActivation), instance.signal.orElse(null), instance.priority };
       int pos = instanceValues.length;
       Object[] args = Arrays.copyOf(instanceValues, pos + instance.stateVariables.size() * 2);
       for (Entry<String, String> var : instance.stateVariables.entrySet()) {
@@ -202,8 +222,8 @@ public class WorkflowInstanceDao {
 
   String insertWorkflowInstanceSql() {
     return "insert into nflow_workflow(type, root_workflow_id, parent_workflow_id, parent_action_id, business_key, external_id, "
-        + "executor_group, status, state, state_text, next_activation, workflow_signal) values (?, ?, ?, ?, ?, ?, ?, "
-        + sqlVariants.workflowStatus() + ", ?, ?, ?, ?)";
+        + "executor_group, status, state, state_text, next_activation, workflow_signal, priority) values (?, ?, ?, ?, ?, ?, ?, "
+        + sqlVariants.workflowStatus() + ", ?, ?, ?, ?, ?)";
   }
 
   String insertWorkflowInstanceStateSql() {
@@ -235,6 +255,7 @@ public class WorkflowInstanceDao {
           } else {
             ps.setNull(p++, Types.INTEGER);
           }
+          ps.setShort(p++, instance.priority);
           return ps;
         }, keyHolder);
       } catch (DuplicateKeyException e) {
@@ -356,45 +377,74 @@ public class WorkflowInstanceDao {
     });
   }
 
-  public void recoverWorkflowInstancesFromDeadNodes() {
-    WorkflowInstanceAction.Builder builder = new WorkflowInstanceAction.Builder().setExecutionStart(now()).setExecutionEnd(now())
-        .setType(recovery).setStateText("Recovered");
-    for (InstanceInfo instance : getRecoverableInstances()) {
-      WorkflowInstanceAction action = builder.setState(instance.state).setWorkflowInstanceId(instance.id).build();
-      recoverWorkflowInstance(instance.id, action);
+  /**
+   * Release workflow instances claimed by this executor but not being processed, so that any executor can poll them.
+   *
+   * @param ids The workflow instance ids.
+   * @return The number of released workflow instances.
+   */
+  public int releaseWorkflowInstances(Collection<Integer> ids) {
+    int released = 0;
+    for (List<Integer> chunk : inClauseChunks(new ArrayList<>(ids))) {
+      released += jdbc.update("update nflow_workflow set executor_id = null, status = " + sqlVariants.workflowStatus(inProgress)
+          + " where id in (" + join(chunk, ",") + ") and executor_id = " + executorInfo.getExecutorId() + " and status = "
+          + sqlVariants.workflowStatus(executing));
     }
+    return released;
   }
 
-  private List<InstanceInfo> getRecoverableInstances() {
-    String sql = "select id, state from nflow_workflow where executor_id in (select id from nflow_executor where "
-        + executorInfo.getExecutorGroupCondition() + " and id <> " + executorInfo.getExecutorId()
-        + " and expires < current_timestamp)";
-    return jdbc.query(sql, new RowMapper<InstanceInfo>() {
-      @Override
-      public InstanceInfo mapRow(ResultSet rs, int rowNum) throws SQLException {
-        InstanceInfo instance = new InstanceInfo();
-        instance.id = rs.getInt("id");
-        instance.state = rs.getString("state");
-        return instance;
-      }
-    });
+  /**
+   * Recover the workflow instances claimed by dead executors of the executor group, so that any executor can poll them, and add
+   * a recovery action to each recovered workflow instance. The workflow instances are recovered in chunks with one update and
+   * one insert statement per chunk, each chunk in a separate transaction. Stops after the current chunk if the calling thread is
+   * interrupted.
+   *
+   * @return The number of recovered workflow instances.
+   */
+  public int recoverWorkflowInstancesFromDeadNodes() {
+    int recovered = 0;
+    int chunkSize;
+    do {
+      chunkSize = transaction.execute(status -> recoverWorkflowInstanceChunk());
+      recovered += chunkSize;
+    } while (chunkSize == MAX_IN_CLAUSE_SIZE && !currentThread().isInterrupted());
+    return recovered;
   }
 
-  private void recoverWorkflowInstance(final int instanceId, final WorkflowInstanceAction action) {
-    transaction.execute(new TransactionCallbackWithoutResult() {
-      @Override
-      protected void doInTransactionWithoutResult(TransactionStatus status) {
-        int executorId = executorInfo.getExecutorId();
-        int updated = jdbc.update(
-            "update nflow_workflow set executor_id = null, status = " + sqlVariants.workflowStatus(inProgress)
-                + " where id = ? and executor_id in (select id from nflow_executor where "
-                + executorInfo.getExecutorGroupCondition() + " and id <> " + executorId + " and expires < current_timestamp)",
-            instanceId);
-        if (updated > 0) {
-          insertWorkflowInstanceAction(action);
+  private int recoverWorkflowInstanceChunk() {
+    String deadExecutorCondition = "executor_id in (select id from nflow_executor where "
+        + executorInfo.getExecutorGroupCondition() + " and id <> " + executorInfo.getExecutorId()
+        + " and expires < current_timestamp)";
+    String recoverableInstances = "select id from nflow_workflow where " + deadExecutorCondition;
+    String chunk = sqlVariants.hasSkipLocked()
+        ? sqlVariants.forUpdateSkipLocked(recoverableInstances, Integer.toString(MAX_IN_CLAUSE_SIZE))
+        : sqlVariants.limit(recoverableInstances, Integer.toString(MAX_IN_CLAUSE_SIZE));
+    String recover = "update nflow_workflow set executor_id = null, status = " + sqlVariants.workflowStatus(inProgress)
+        + " where id in (";
+    List<Integer> ids;
+    if (sqlVariants.hasUpdateReturning()) {
+      // instances recovered concurrently by another executor do not match the executor condition after the row lock is released
+      ids = jdbc.queryForList(recover + chunk + ") and " + deadExecutorCondition + " returning id", Integer.class);
+    } else {
+      // lock the chunk so that the recovery actions are inserted only for the instances recovered by this executor, and read
+      // at most MAX_IN_CLAUSE_SIZE rows, as some databases do not limit the rows in the locking query
+      ids = jdbc.query(sqlVariants.hasSkipLocked() ? chunk : chunk + " for update", rs -> {
+        List<Integer> result = new ArrayList<>(MAX_IN_CLAUSE_SIZE);
+        while (result.size() < MAX_IN_CLAUSE_SIZE && rs.next()) {
+          result.add(rs.getInt(1));
         }
+        return result;
+      });
+      if (!ids.isEmpty()) {
+        jdbc.update(recover + join(ids, ",") + ")");
       }
-    });
+    }
+    if (!ids.isEmpty()) {
+      Timestamp now = toTimestamp(now());
+      jdbc.update(insertWorkflowActionSql() + " select id, " + executorInfo.getExecutorId() + ", " + sqlVariants.actionType()
+          + ", state, ?, 0, ?, ? from nflow_workflow where id in (" + join(ids, ",") + ")", recovery.name(), "Recovered", now, now);
+    }
+    return ids.size();
   }
 
   private void updateWorkflowInstanceWithCTE(WorkflowInstance instance, final WorkflowInstanceAction action,
@@ -488,7 +538,11 @@ public class WorkflowInstanceDao {
       }
       sql.setCharAt(sql.length() - 1, ')');
     }
-    return jdbc.update(sql.toString(), args) == 1;
+    boolean updated = jdbc.update(sql.toString(), args) == 1;
+    if (updated) {
+      activationNotifier.notifyActivation();
+    }
+    return updated;
   }
 
   public WorkflowInstance getWorkflowInstance(int id, Set<WorkflowInstanceInclude> includes, Long maxActions) {
@@ -525,11 +579,184 @@ public class WorkflowInstanceDao {
     instance.originalStateVariables.putAll(instance.stateVariables);
   }
 
+  /**
+   * Return the current values of the given state variables of a workflow instance.
+   *
+   * @param workflowId The workflow instance id.
+   * @param keys The names of the state variables.
+   * @return The values of the state variables that exist by name.
+   */
+  public Map<String, String> getStateVariables(int workflowId, Collection<String> keys) {
+    Map<String, String> variables = new LinkedHashMap<>();
+    if (keys.isEmpty()) {
+      return variables;
+    }
+    List<Object> args = new ArrayList<>(keys.size() + 1);
+    args.add(workflowId);
+    args.addAll(keys);
+    jdbc.query(
+        "select outside.state_key, outside.state_value from nflow_workflow_state outside inner join "
+            + "(select workflow_id, max(action_id) action_id, state_key from nflow_workflow_state where workflow_id = ? and state_key in ("
+            + join(nCopies(keys.size(), "?"), ",") + ") group by workflow_id, state_key) inside "
+            + "on outside.workflow_id = inside.workflow_id and outside.action_id = inside.action_id and outside.state_key = inside.state_key",
+        (RowCallbackHandler) rs -> variables.put(rs.getString(1), rs.getString(2)), args.toArray());
+    return variables;
+  }
+
   public List<Integer> pollNextWorkflowInstanceIds(final int batchSize) {
+    return pollNextWorkflowInstanceIds(batchSize, "");
+  }
+
+  private List<Integer> pollNextWorkflowInstanceIds(int batchSize, String partitionCondition) {
+    if (sqlVariants.hasUpdateReturning()) {
+      return pollNextWorkflowInstanceIdsWithUpdateReturning(batchSize, partitionCondition);
+    }
+    if (sqlVariants.hasSkipLocked()) {
+      return pollNextWorkflowInstanceIdsWithSkipLocked(batchSize, partitionCondition);
+    }
+    return pollNextWorkflowInstanceIdsWithTransaction(batchSize, partitionCondition);
+  }
+
+  /**
+   * Claim the next workflow instances for execution and load them with the current state variables, child workflow ids and
+   * started timestamp using a fixed number of queries per batch.
+   *
+   * @param batchSize The maximum number of workflow instances to claim.
+   * @return The claimed workflow instances in polling order.
+   */
+  public List<WorkflowInstance> pollNextWorkflowInstances(int batchSize) {
+    return pollNextWorkflowInstances(batchSize, 0, 1);
+  }
+
+  /**
+   * Claim the next workflow instances of one partition for execution and load them like
+   * {@link #pollNextWorkflowInstances(int)}. Workflow instances are partitioned by their id modulo the number of partitions, so
+   * that dispatcher threads polling different partitions never compete for the same workflow instances.
+   *
+   * @param batchSize The maximum number of workflow instances to claim.
+   * @param partition The partition to poll, from 0 to partitionCount - 1.
+   * @param partitionCount The total number of partitions.
+   * @return The claimed workflow instances in polling order.
+   */
+  public List<WorkflowInstance> pollNextWorkflowInstances(int batchSize, int partition, int partitionCount) {
+    return pollNextWorkflowInstances(batchSize, partition, partitionCount, emptySet());
+  }
+
+  /**
+   * Claim the next workflow instances of one partition for execution like
+   * {@link #pollNextWorkflowInstances(int, int, int)}, skipping the workflow instances of the excluded workflow types.
+   *
+   * @param batchSize The maximum number of workflow instances to claim.
+   * @param partition The partition to poll, from 0 to partitionCount - 1.
+   * @param partitionCount The total number of partitions.
+   * @param excludedTypes The workflow types that are not claimed.
+   * @return The claimed workflow instances in polling order.
+   */
+  public List<WorkflowInstance> pollNextWorkflowInstances(int batchSize, int partition, int partitionCount,
+      Collection<String> excludedTypes) {
+    String condition = partitionCondition(partition, partitionCount);
+    if (!excludedTypes.isEmpty()) {
+      condition += " and type not in (" + excludedTypes.stream().map(WorkflowInstanceDao::sqlString).collect(joining(",")) + ")";
+    }
+    return pollNextWorkflowInstances(batchSize, condition);
+  }
+
+  /**
+   * Claim the next workflow instances of one workflow type and partition for execution like
+   * {@link #pollNextWorkflowInstances(int, int, int)}.
+   *
+   * @param batchSize The maximum number of workflow instances to claim.
+   * @param partition The partition to poll, from 0 to partitionCount - 1.
+   * @param partitionCount The total number of partitions.
+   * @param type The workflow type to claim.
+   * @return The claimed workflow instances in polling order.
+   */
+  public List<WorkflowInstance> pollNextWorkflowInstancesOfType(int batchSize, int partition, int partitionCount, String type) {
+    return pollNextWorkflowInstances(batchSize, partitionCondition(partition, partitionCount) + " and type = " + sqlString(type));
+  }
+
+  private static String partitionCondition(int partition, int partitionCount) {
+    return partitionCount > 1 ? " and mod(id, " + partitionCount + ") = " + partition : "";
+  }
+
+  private static String sqlString(String value) {
+    return "'" + value.replace("'", "''") + "'";
+  }
+
+  private List<WorkflowInstance> pollNextWorkflowInstances(int batchSize, String partitionCondition) {
+    Map<Integer, WorkflowInstance.Builder> builders = new LinkedHashMap<>();
+    WorkflowInstanceRowMapper rowMapper = new WorkflowInstanceRowMapper();
+    RowCallbackHandler builderCollector = rs -> builders.put(rs.getInt("id"), rowMapper.mapRow(rs, builders.size()));
+    List<Integer> ids;
     if (sqlVariants.hasUpdateReturning()) {
-      return pollNextWorkflowInstanceIdsWithUpdateReturning(batchSize);
+      String sql = updateInstanceForExecutionQuery() + " where id in ("
+          + selectNextWorkflowInstanceIdsQuery(batchSize, partitionCondition) + ") and executor_id is null returning *";
+      jdbc.query(sql, builderCollector);
+      ids = new ArrayList<>(builders.keySet());
+    } else {
+      ids = pollNextWorkflowInstanceIds(batchSize, partitionCondition);
+      for (List<Integer> chunk : inClauseChunks(ids)) {
+        jdbc.query("select * from nflow_workflow where id in (" + join(chunk, ",") + ")", builderCollector);
+      }
+    }
+    if (ids.isEmpty()) {
+      return emptyList();
+    }
+    Map<Integer, DateTime> started = new HashMap<>();
+    Map<Integer, Map<String, String>> stateVariables = new HashMap<>();
+    Map<Integer, Map<Integer, List<Integer>>> childWorkflows = new HashMap<>();
+    for (List<Integer> chunk : inClauseChunks(ids)) {
+      String idList = join(chunk, ",");
+      jdbc.query("select workflow_id, min(execution_start) from nflow_workflow_action where workflow_id in (" + idList
+          + ") group by workflow_id", (RowCallbackHandler) rs -> started.put(rs.getInt(1), toDateTime(rs.getTimestamp(2))));
+      if (!lazyStateVariables) {
+        jdbc.query("select outside.workflow_id, outside.state_key, outside.state_value from nflow_workflow_state outside inner join "
+            + "(select workflow_id, max(action_id) action_id, state_key from nflow_workflow_state where workflow_id in (" + idList
+            + ") group by workflow_id, state_key) inside "
+            + "on outside.workflow_id = inside.workflow_id and outside.action_id = inside.action_id and outside.state_key = inside.state_key",
+            (RowCallbackHandler) rs -> stateVariables.computeIfAbsent(rs.getInt(1), id -> new LinkedHashMap<>())
+                .put(rs.getString(2), rs.getString(3)));
+      }
+      jdbc.query("select parent_workflow_id, parent_action_id, id from nflow_workflow where parent_workflow_id in (" + idList + ")",
+          (RowCallbackHandler) rs -> childWorkflows.computeIfAbsent(rs.getInt(1), id -> new LinkedHashMap<>())
+              .computeIfAbsent(rs.getInt(2), actionId -> new ArrayList<>()).add(rs.getInt(3)));
+    }
+    List<WorkflowInstance> instances = new ArrayList<>(ids.size());
+    for (Integer id : ids) {
+      WorkflowInstance instance = builders.get(id).setStarted(started.get(id)).build();
+      Map<String, String> state = stateVariables.get(id);
+      if (state != null) {
+        instance.stateVariables.putAll(state);
+        instance.originalStateVariables.putAll(state);
+      }
+      Map<Integer, List<Integer>> children = childWorkflows.get(id);
+      if (children != null) {
+        instance.childWorkflows.putAll(children);
+      }
+      instances.add(instance);
+    }
+    return instances;
+  }
+
+  private static List<List<Integer>> inClauseChunks(List<Integer> ids) {
+    List<List<Integer>> chunks = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i += MAX_IN_CLAUSE_SIZE) {
+      chunks.add(ids.subList(i, min(ids.size(), i + MAX_IN_CLAUSE_SIZE)));
     }
-    return pollNextWorkflowInstanceIdsWithTransaction(batchSize);
+    return chunks;
+  }
+
+  /**
+   * Return the number of executing workflow instances of each workflow type in the executor group of this nFlow instance.
+   *
+   * @return The number of executing workflow instances by workflow type.
+   */
+  public Map<String, Integer> getExecutingWorkflowInstanceCountsByType() {
+    Map<String, Integer> counts = new HashMap<>();
+    jdbc.query("select type, count(1) from nflow_workflow where status = " + sqlVariants.workflowStatus(executing) + " and "
+        + executorInfo.getExecutorGroupCondition() + " group by type",
+        (RowCallbackHandler) rs -> counts.put(rs.getString(1), rs.getInt(2)));
+    return counts;
   }
 
   String updateInstanceForExecutionQuery() {
@@ -537,24 +764,58 @@ public class WorkflowInstanceDao {
         + sqlVariants.workflowStatus(executing) + ", " + "external_next_activation = null";
   }
 
-  String whereConditionForInstanceUpdate() {
+  String whereConditionForInstanceUpdate(String partitionCondition) {
+    String activationLimit = pollLookAheadSeconds > 0 ? sqlVariants.currentTimePlusSeconds(pollLookAheadSeconds)
+        : "current_timestamp";
     return "where executor_id is null and status in (" + sqlVariants.workflowStatus(created) + ", "
-        + sqlVariants.workflowStatus(inProgress) + ") and next_activation <= current_timestamp and "
-        + executorInfo.getExecutorGroupCondition() + " order by next_activation asc";
+        + sqlVariants.workflowStatus(inProgress) + ") and next_activation <= " + activationLimit + " and "
+        + executorInfo.getExecutorGroupCondition() + partitionCondition + " order by priority desc, next_activation asc";
+  }
+
+  private String selectNextWorkflowInstanceIdsQuery(int batchSize, String partitionCondition) {
+    String sql = "select id from nflow_workflow " + whereConditionForInstanceUpdate(partitionCondition);
+    if (sqlVariants.hasSkipLocked()) {
+      return sqlVariants.forUpdateSkipLocked(sql, Integer.toString(batchSize));
+    }
+    return sqlVariants.limit(sql, Integer.toString(batchSize));
   }
 
-  private List<Integer> pollNextWorkflowInstanceIdsWithUpdateReturning(int batchSize) {
+  private List<Integer> pollNextWorkflowInstanceIdsWithUpdateReturning(int batchSize, String partitionCondition) {
     String sql = updateInstanceForExecutionQuery() + " where id in ("
-        + sqlVariants.limit("select id from nflow_workflow " + whereConditionForInstanceUpdate(), Integer.toString(batchSize))
-        + ") and executor_id is null returning id";
+        + selectNextWorkflowInstanceIdsQuery(batchSize, partitionCondition) + ") and executor_id is null returning id";
     return jdbc.queryForList(sql, Integer.class);
   }
 
-  private List<Integer> pollNextWorkflowInstanceIdsWithTransaction(final int batchSize) {
+  private List<Integer> pollNextWorkflowInstanceIdsWithSkipLocked(final int batchSize, final String partitionCondition) {
+    return transaction.execute(new TransactionCallback<List<Integer>>() {
+      @Override
+      public List<Integer> doInTransaction(TransactionStatus transactionStatus) {
+        // read at most batchSize rows, as some databases do not limit the rows in the locking query
+        String sql = selectNextWorkflowInstanceIdsQuery(batchSize, partitionCondition);
+        List<Integer> ids = jdbc.query(sql, new ResultSetExtractor<List<Integer>>() {
+          @Override
+          public List<Integer> extractData(ResultSet rs) throws SQLException {
+            List<Integer> result = new ArrayList<>(batchSize);
+            while (result.size() < batchSize && rs.next()) {
+              result.add(rs.getInt(1));
+            }
+            return result;
+          }
+        });
+        for (List<Integer> chunk : inClauseChunks(ids)) {
+          jdbc.update(updateInstanceForExecutionQuery() + " where id in (" + join(chunk, ",") + ")");
+        }
+        return ids;
+      }
+    });
+  }
+
+  private List<Integer> pollNextWorkflowInstanceIdsWithTransaction(final int batchSize, final String partitionCondition) {
     return transaction.execute(new TransactionCallback<List<Integer>>() {
       @Override
       public List<Integer> doInTransaction(TransactionStatus transactionStatus) {
-        String sql = sqlVariants.limit("select id, modified from nflow_workflow " + whereConditionForInstanceUpdate(),
+        String sql = sqlVariants.limit(
+            "select id, modified from nflow_workflow " + whereConditionForInstanceUpdate(partitionCondition),
             Integer.toString(batchSize));
         List<OptimisticLockKey> instances = jdbc.query(sql, new RowMapper<OptimisticLockKey>() {
           @Override
@@ -799,7 +1060,8 @@ public class WorkflowInstanceDao {
           .setCreated(toDateTime(rs.getTimestamp("created"))) //
           .setModified(toDateTime(rs.getTimestamp("modified"))) //
           .setExecutorGroup(rs.getString("executor_group")) //
-          .setSignal(ofNullable(getInt(rs, "workflow_signal")));
+          .setSignal(ofNullable(getInt(rs, "workflow_signal"))) //
+          .setPriority(rs.getShort("priority"));
     }
   }
 
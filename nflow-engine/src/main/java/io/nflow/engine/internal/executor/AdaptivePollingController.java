@@ -0,0 +1,93 @@
+package io.nflow.engine.internal.executor;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Adapts the workflow dispatcher polling to the amount of available work. Consecutive empty polls double the time to wait
+ * before the next poll, up to the maximum sleep time. Polls that return workflow instances reset the wait time, and the
+ * dispatcher polls again as soon as the executor queue has room. The poll batch size is limited to the number of workflow
+ * instances this node is expected to complete during one minimum sleep time, based on the measured completion rate, so that
+ * a node does not claim work that other nodes could process sooner. When several dispatcher threads poll different partitions,
+ * each of them gets an equal share of the executor capacity.
+ */
+class AdaptivePollingController {
+
+  private static final double RATE_SMOOTHING = 0.3;
+
+  private final long minSleepMillis;
+  private final long maxSleepMillis;
+  private final int partitionCount;
+  private long sleepMillis;
+  private long lastCompletedCount = -1;
+  private long lastMeasurementNanos;
+  private double completionsPerMilli = -1;
+
+  AdaptivePollingController(long minSleepMillis, long maxSleepMillis) {
+    this(minSleepMillis, maxSleepMillis, 1);
+  }
+
+  AdaptivePollingController(long minSleepMillis, long maxSleepMillis, int partitionCount) {
+    this.minSleepMillis = minSleepMillis;
+    this.maxSleepMillis = max(minSleepMillis, maxSleepMillis);
+    this.sleepMillis = minSleepMillis;
+    this.partitionCount = max(1, partitionCount);
+  }
+
+  /**
+   * Return the number of workflow instances to poll next.
+   *
+   * @param remainingCapacity The remaining capacity of the executor queue.
+   * @param threadCount The number of executor threads.
+   * @param completedCount The total number of workflow instances processed by the executor.
+   * @return The batch size.
+   */
+  int nextBatchSize(int remainingCapacity, int threadCount, long completedCount) {
+    updateCompletionRate(completedCount);
+    int capacityShare = share(remainingCapacity);
+    if (completionsPerMilli < 0) {
+      return capacityShare;
+    }
+    int expected = (int) min(Integer.MAX_VALUE, ceil(completionsPerMilli * minSleepMillis / partitionCount));
+    return min(capacityShare, max(share(threadCount), expected));
+  }
+
+  private int share(int total) {
+    return (total + partitionCount - 1) / partitionCount;
+  }
+
+  /**
+   * Record the result of a poll that found workflow instances. Resets the wait time.
+   */
+  void workFound() {
+    sleepMillis = minSleepMillis;
+  }
+
+  /**
+   * Record the result of a poll that found no workflow instances.
+   *
+   * @return The time to wait before the next poll in milliseconds.
+   */
+  long noWorkFound() {
+    long sleep = sleepMillis;
+    sleepMillis = min(maxSleepMillis, max(1, sleepMillis * 2));
+    return sleep;
+  }
+
+  private void updateCompletionRate(long completedCount) {
+    long now = nanoTime();
+    if (lastCompletedCount >= 0) {
+      long elapsedMillis = NANOSECONDS.toMillis(now - lastMeasurementNanos);
+      if (elapsedMillis <= 0) {
+        return;
+      }
+      double rate = (double) (completedCount - lastCompletedCount) / elapsedMillis;
+      completionsPerMilli = completionsPerMilli < 0 ? rate : completionsPerMilli + RATE_SMOOTHING * (rate - completionsPerMilli);
+    }
+    lastCompletedCount = completedCount;
+    lastMeasurementNanos = now;
+  }
+}
@@ -0,0 +1,326 @@
+package io.nflow.engine.internal.executor;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded blocking queue that takes elements in the order of the optional comparator, and elements that are equal by the
+ * comparator in insertion order.
+ * <p>
+ * The queue size is kept in an atomic counter, so size and remaining capacity are read without locking, and offer and poll
+ * return without locking when the queue is full or empty. Waiting for the executor to drain is handled by InFlightTracker.
+ *
+ * @param <E> The type of the queued elements.
+ */
+public class BoundedPriorityBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+  private final int capacity;
+  private final Comparator<? super E> comparator;
+  private final PriorityQueue<Entry<E>> queue;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final LongAdder waitNanos = new LongAdder();
+  private final AtomicInteger count = new AtomicInteger();
+  private long sequence;
+
+  public BoundedPriorityBlockingQueue(int capacity) {
+    this(capacity, null);
+  }
+
+  /**
+   * Create a new queue.
+   *
+   * @param capacity The maximum number of elements in the queue.
+   * @param comparator The comparator that orders the elements, or null to order the elements by insertion order.
+   */
+  public BoundedPriorityBlockingQueue(int capacity, Comparator<? super E> comparator) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.comparator = comparator;
+    this.queue = new PriorityQueue<>(capacity, this::compare);
+  }
+
+  /**
+   * Return the total time consumers have spent waiting for elements in take and poll with timeout.
+   *
+   * @return The total waiting time in milliseconds.
+   */
+  public long getTotalWaitMillis() {
+    return NANOSECONDS.toMillis(waitNanos.sum());
+  }
+
+  @Override
+  public boolean offer(E e) {
+    checkNotNull(e);
+    if (count.get() >= capacity) {
+      return false;
+    }
+    lock.lock();
+    try {
+      if (queue.size() >= capacity) {
+        return false;
+      }
+      enqueue(e);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E poll() {
+    if (count.get() == 0) {
+      return null;
+    }
+    E o;
+    lock.lock();
+    try {
+      o = dequeue();
+    } finally {
+      lock.unlock();
+    }
+    return o;
+  }
+
+  @Override
+  public E peek() {
+    lock.lock();
+    try {
+      Entry<E> head = queue.peek();
+      return head == null ? null : head.element;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new SnapshotIterator(toList());
+  }
+
+  @Override
+  public int size() {
+    return count.get();
+  }
+
+  @Override
+  public void put(E e) throws InterruptedException {
+    checkNotNull(e);
+    lock.lockInterruptibly();
+    try {
+      while (queue.size() >= capacity) {
+        notFull.await();
+      }
+      enqueue(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    checkNotNull(e);
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (queue.size() >= capacity) {
+        if (nanos <= 0) {
+          return false;
+        }
+        nanos = notFull.awaitNanos(nanos);
+      }
+      enqueue(e);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    long start = nanoTime();
+    E o;
+    try {
+      lock.lockInterruptibly();
+      try {
+        while (queue.isEmpty()) {
+          notEmpty.await();
+        }
+        o = dequeue();
+      } finally {
+        lock.unlock();
+      }
+    } finally {
+      waitNanos.add(nanoTime() - start);
+    }
+    return o;
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long start = nanoTime();
+    E o;
+    try {
+      long nanos = unit.toNanos(timeout);
+      lock.lockInterruptibly();
+      try {
+        while (queue.isEmpty() && nanos > 0) {
+          nanos = notEmpty.awaitNanos(nanos);
+        }
+        o = dequeue();
+      } finally {
+        lock.unlock();
+      }
+    } finally {
+      waitNanos.add(nanoTime() - start);
+    }
+    return o;
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return capacity - count.get();
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    lock.lock();
+    try {
+      for (Iterator<Entry<E>> it = queue.iterator(); it.hasNext();) {
+        if (it.next().element.equals(o)) {
+          it.remove();
+          count.decrementAndGet();
+          notFull.signal();
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    int drained = 0;
+    lock.lock();
+    try {
+      while (drained < maxElements && !queue.isEmpty()) {
+        c.add(dequeue());
+        drained++;
+      }
+    } finally {
+      lock.unlock();
+    }
+    return drained;
+  }
+
+  private int compare(Entry<E> e1, Entry<E> e2) {
+    if (comparator != null) {
+      int result = comparator.compare(e1.element, e2.element);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Long.compare(e1.sequence, e2.sequence);
+  }
+
+  private void enqueue(E e) {
+    queue.add(new Entry<>(e, sequence++));
+    count.incrementAndGet();
+    notEmpty.signal();
+  }
+
+  private E dequeue() {
+    Entry<E> head = queue.poll();
+    if (head == null) {
+      return null;
+    }
+    count.decrementAndGet();
+    notFull.signal();
+    return head.element;
+  }
+
+  private List<E> toList() {
+    lock.lock();
+    try {
+      List<Entry<E>> entries = new ArrayList<>(queue);
+      entries.sort(this::compare);
+      List<E> elements = new ArrayList<>(entries.size());
+      for (Entry<E> entry : entries) {
+        elements.add(entry.element);
+      }
+      return elements;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void checkNotNull(Object e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+  }
+
+  private static class Entry<E> {
+    final E element;
+    final long sequence;
+
+    Entry(E element, long sequence) {
+      this.element = element;
+      this.sequence = sequence;
+    }
+  }
+
+  private class SnapshotIterator implements Iterator<E> {
+    private final List<E> elements;
+    private int next;
+
+    SnapshotIterator(List<E> elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < elements.size();
+    }
+
+    @Override
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return elements.get(next++);
+    }
+
+    @Override
+    public void remove() {
+      if (next == 0) {
+        throw new IllegalStateException();
+      }
+      BoundedPriorityBlockingQueue.this.remove(elements.get(next - 1));
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package io.nflow.engine.internal.executor;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.Collection;
+
+/**
+ * Limits the number of workflow instances an executor claims to its fair share of the outstanding work in the executor group,
+ * so that an executor that polls first or has a faster database connection does not hoard work while the other executors are
+ * idle. The share of each executor is proportional to its throughput when all executors have reported one, and to its thread
+ * count otherwise. The load of the other executors is read from their heartbeats and may be one heartbeat interval old, so an
+ * executor is always allowed to claim enough instances to keep its own threads busy.
+ */
+class ClusterLoadBalancer {
+
+  /**
+   * Return the batch size limited to the fair share of this executor.
+   *
+   * @param batchSize The batch size requested by the dispatcher.
+   * @param local The current load of this executor.
+   * @param others The last published load of the other active executors in the executor group.
+   * @return The limited batch size, between one and the requested batch size.
+   */
+  int limitBatchSize(int batchSize, ExecutorLoad local, Collection<ExecutorLoad> others) {
+    if (others.isEmpty() || batchSize <= 1) {
+      return batchSize;
+    }
+    boolean useThroughput = local.throughput > 0 && others.stream().allMatch(load -> load.throughput > 0);
+    long totalWeight = weight(local, useThroughput);
+    long totalOutstanding = local.getOutstanding();
+    for (ExecutorLoad load : others) {
+      totalWeight += weight(load, useThroughput);
+      totalOutstanding += load.getOutstanding();
+    }
+    if (totalWeight <= 0) {
+      return batchSize;
+    }
+    long fairShare = ((totalOutstanding + batchSize) * weight(local, useThroughput) + totalWeight - 1) / totalWeight;
+    long allowed = fairShare - local.getOutstanding();
+    int idleCapacity = local.threadCount - local.getOutstanding();
+    return (int) min(batchSize, max(max(1, idleCapacity), allowed));
+  }
+
+  private static long weight(ExecutorLoad load, boolean useThroughput) {
+    return useThroughput ? load.throughput : load.threadCount;
+  }
+}
@@ -0,0 +1,39 @@
+package io.nflow.engine.internal.executor;
+
+/**
+ * Load of one nFlow executor, published in the executor heartbeat.
+ */
+public class ExecutorLoad {
+  /**
+   * Number of state processor threads.
+   */
+  public final int threadCount;
+  /**
+   * Number of threads processing a workflow instance.
+   */
+  public final int busyThreads;
+  /**
+   * Number of workflow instances waiting in the executor queue.
+   */
+  public final int queueSize;
+  /**
+   * Number of state processors completed per minute, measured over the last heartbeat interval.
+   */
+  public final int throughput;
+
+  public ExecutorLoad(int threadCount, int busyThreads, int queueSize, int throughput) {
+    this.threadCount = threadCount;
+    this.busyThreads = busyThreads;
+    this.queueSize = queueSize;
+    this.throughput = throughput;
+  }
+
+  /**
+   * Return the number of workflow instances claimed by the executor and not yet finished.
+   *
+   * @return The number of busy threads plus the queue size.
+   */
+  public int getOutstanding() {
+    return busyThreads + queueSize;
+  }
+}
@@ -0,0 +1,68 @@
+package io.nflow.engine.internal.executor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Splits the poll batch between workflow types in proportion to their weights using deficit round robin. Each poll adds the
+ * weighted share of the batch to the deficit of each workflow type, and the whole units of the deficits are allocated. Units
+ * left over from rounding go to the workflow types with the largest remaining deficits, so that even with small batches every
+ * workflow type is polled regularly. A workflow type that has fewer ready workflow instances than allocated loses its deficit.
+ */
+class FairShareAllocator {
+
+  private final Map<String, Double> deficits = new HashMap<>();
+
+  /**
+   * Allocate the batch between the workflow types.
+   *
+   * @param batchSize The total number of workflow instances to poll.
+   * @param weights The positive weights of the workflow types to poll.
+   * @return The number of workflow instances to poll for each workflow type. The numbers add up to the batch size.
+   */
+  synchronized Map<String, Integer> allocate(int batchSize, Map<String, Integer> weights) {
+    deficits.keySet().retainAll(weights.keySet());
+    Map<String, Integer> allocation = new LinkedHashMap<>();
+    if (weights.isEmpty() || batchSize <= 0) {
+      return allocation;
+    }
+    long totalWeight = 0;
+    for (int weight : weights.values()) {
+      totalWeight += weight;
+    }
+    int allocated = 0;
+    for (Entry<String, Integer> entry : weights.entrySet()) {
+      double deficit = deficits.getOrDefault(entry.getKey(), 0.0) + (double) batchSize * entry.getValue() / totalWeight;
+      deficits.put(entry.getKey(), deficit);
+      int units = (int) Math.min(batchSize - allocated, Math.floor(deficit));
+      allocation.put(entry.getKey(), units);
+      allocated += units;
+    }
+    List<String> types = new ArrayList<>(weights.keySet());
+    types.sort((t1, t2) -> Double.compare(deficits.get(t2) - allocation.get(t2), deficits.get(t1) - allocation.get(t1)));
+    for (int i = 0; allocated < batchSize; i = (i + 1) % types.size()) {
+      allocation.merge(types.get(i), 1, Integer::sum);
+      allocated++;
+    }
+    return allocation;
+  }
+
+  /**
+   * Record the number of workflow instances claimed for a workflow type.
+   *
+   * @param type The workflow type.
+   * @param allocated The number of workflow instances allocated to the workflow type.
+   * @param claimed The number of workflow instances claimed.
+   */
+  synchronized void claimed(String type, int allocated, int claimed) {
+    if (claimed < allocated) {
+      deficits.put(type, 0.0);
+    } else {
+      deficits.computeIfPresent(type, (t, deficit) -> deficit - claimed);
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package io.nflow.engine.internal.executor;
+
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.lang.Math.max;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+
+/**
+ * Hashed timing wheel that runs scheduled tasks with tick precision. Scheduling a task takes constant time regardless of the
+ * number of scheduled tasks: the task is hashed to the wheel bucket of its deadline tick, and tasks whose deadline is more than
+ * one wheel revolution away wait in the bucket for the remaining rounds. Tasks are run in the timer thread, so they must be
+ * short, for example submitting work to an executor. A cancelled task releases its reference immediately and is removed from
+ * the wheel when its bucket is next visited.
+ */
+class HashedTimerWheel {
+  private static final Logger logger = getLogger(HashedTimerWheel.class);
+
+  private final long tickNanos;
+  private final List<List<Timeout>> wheel;
+  private final int mask;
+  private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+  private final Thread worker;
+  private final long startNanos = nanoTime();
+  private volatile boolean stopped;
+  private long tick;
+
+  /**
+   * Create and start a new timer wheel.
+   *
+   * @param threadName The name of the timer thread.
+   * @param tickMillis The tick duration in milliseconds.
+   * @param wheelSize The number of buckets in the wheel, rounded up to a power of two.
+   */
+  HashedTimerWheel(String threadName, long tickMillis, int wheelSize) {
+    this.tickNanos = MILLISECONDS.toNanos(max(1, tickMillis));
+    int size = 1 << (64 - numberOfLeadingZeros(max(1, wheelSize) - 1L));
+    this.wheel = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      wheel.add(new ArrayList<>());
+    }
+    this.mask = size - 1;
+    this.worker = new Thread(this::run, threadName);
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Run the task after the delay.
+   *
+   * @param task The task.
+   * @param delayMillis The delay in milliseconds.
+   * @return The handle for cancelling the task.
+   * @throws RejectedExecutionException If the timer is stopped.
+   */
+  Timeout schedule(Runnable task, long delayMillis) {
+    if (stopped) {
+      throw new RejectedExecutionException("Timer is stopped");
+    }
+    Timeout timeout = new Timeout(task, nanoTime() - startNanos + MILLISECONDS.toNanos(max(0, delayMillis)));
+    pending.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * Stop the timer. Tasks that have not been run are discarded.
+   */
+  void stop() {
+    stopped = true;
+    worker.interrupt();
+  }
+
+  private void run() {
+    while (!stopped) {
+      long now = waitForNextTick();
+      if (now < 0) {
+        break;
+      }
+      transferPending();
+      expire(wheel.get((int) (tick & mask)), now);
+      tick++;
+    }
+    pending.clear();
+  }
+
+  private long waitForNextTick() {
+    long deadline = tickNanos * (tick + 1);
+    while (true) {
+      long now = nanoTime() - startNanos;
+      long sleepMillis = (deadline - now + 999_999) / 1_000_000;
+      if (sleepMillis <= 0) {
+        return now;
+      }
+      try {
+        Thread.sleep(sleepMillis);
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        if (stopped) {
+          return -1;
+        }
+      }
+    }
+  }
+
+  private void transferPending() {
+    Timeout timeout;
+    while ((timeout = pending.poll()) != null) {
+      long deadlineTick = timeout.deadlineNanos / tickNanos;
+      timeout.remainingRounds = (deadlineTick - tick) / wheel.size();
+      wheel.get((int) (max(deadlineTick, tick) & mask)).add(timeout);
+    }
+  }
+
+  private void expire(List<Timeout> bucket, long now) {
+    for (Iterator<Timeout> it = bucket.iterator(); it.hasNext();) {
+      Timeout timeout = it.next();
+      Runnable task = timeout.task;
+      if (task == null) {
+        it.remove();
+      } else if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= now) {
+        it.remove();
+        timeout.task = null;
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          logger.error("Timer task failed", e);
+        }
+      } else if (timeout.remainingRounds > 0) {
+        timeout.remainingRounds--;
+      }
+    }
+  }
+
+  /**
+   * Handle of a scheduled task.
+   */
+  static final class Timeout {
+    volatile Runnable task;
+    final long deadlineNanos;
+    long remainingRounds;
+
+    Timeout(Runnable task, long deadlineNanos) {
+      this.task = task;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Cancel the task if it has not been run yet. The timer no longer references the task after this.
+     */
+    void cancel() {
+      task = null;
+    }
+  }
+}
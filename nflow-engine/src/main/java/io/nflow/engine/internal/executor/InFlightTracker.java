@@ -0,0 +1,118 @@
+package io.nflow.engine.internal.executor;
+
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.locks.LockSupport.parkNanos;
+import static java.util.concurrent.locks.LockSupport.unpark;
+import static org.joda.time.DateTimeUtils.currentTimeMillis;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.joda.time.DateTime;
+
+/**
+ * Counts the tasks that have been submitted to the executor but have not finished yet, and lets a producer wait until the
+ * in-flight count drops to the notify threshold. The count is kept in an atomic counter and waiting producers are only
+ * unparked when the count crosses the threshold. This replaces waiting for the executor queue size, so that the same
+ * back-pressure works with application provided executor services.
+ */
+class InFlightTracker {
+  private final int maxInFlight;
+  private final int notifyThreshold;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder completed = new LongAdder();
+  private final Set<Thread> thresholdWaiters = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Create a new tracker.
+   *
+   * @param maxInFlight The number of in-flight tasks at which the executor is considered full.
+   * @param notifyThreshold The number of in-flight tasks at which waiting producers are notified.
+   */
+  InFlightTracker(int maxInFlight, int notifyThreshold) {
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("Maximum in-flight count must be positive");
+    }
+    this.maxInFlight = maxInFlight;
+    this.notifyThreshold = notifyThreshold;
+  }
+
+  void acquire() {
+    inFlight.incrementAndGet();
+  }
+
+  /**
+   * Release the slot of a task that was not run.
+   */
+  void discard() {
+    if (inFlight.decrementAndGet() <= notifyThreshold && !thresholdWaiters.isEmpty()) {
+      for (Thread waiter : thresholdWaiters) {
+        unpark(waiter);
+      }
+    }
+  }
+
+  /**
+   * Release the slot of a task that was run.
+   */
+  void complete() {
+    completed.increment();
+    discard();
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  int getRemainingCapacity() {
+    return Math.max(0, maxInFlight - inFlight.get());
+  }
+
+  int getRemainingCapacityAtThreshold() {
+    return maxInFlight - notifyThreshold;
+  }
+
+  long getCompletedCount() {
+    return completed.sum();
+  }
+
+  /**
+   * Wait until all in-flight tasks have finished.
+   *
+   * @param timeoutMillis The maximum time to wait in milliseconds.
+   * @return True if no tasks are in flight, false if the wait timed out.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  boolean awaitNoneInFlight(long timeoutMillis) throws InterruptedException {
+    long deadline = currentTimeMillis() + timeoutMillis;
+    while (inFlight.get() > 0) {
+      if (currentTimeMillis() >= deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+
+  void waitUntilInFlightLowerThanThreshold(DateTime waitUntil) throws InterruptedException {
+    Thread current = currentThread();
+    thresholdWaiters.add(current);
+    try {
+      while (inFlight.get() > notifyThreshold) {
+        long sleep = waitUntil.getMillis() - currentTimeMillis();
+        if (sleep <= 0) {
+          break;
+        }
+        parkNanos(this, MILLISECONDS.toNanos(sleep));
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+    } finally {
+      thresholdWaiters.remove(current);
+    }
+  }
+}
@@ -1,6 +0,0 @@
-package io.nflow.engine.internal.executor;
-
-public class InstanceInfo {
-  public int id;
-  public String state;
-}
\ No newline at end of file
@@ -0,0 +1,92 @@
+package io.nflow.engine.internal.executor;
+
+import static io.nflow.engine.internal.executor.WorkflowStateProcessor.logger;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import io.nflow.engine.listener.AbstractWorkflowExecutorListener;
+import io.nflow.engine.listener.ListenerChain;
+import io.nflow.engine.listener.WorkflowExecutorListener;
+import io.nflow.engine.listener.WorkflowExecutorListener.ListenerContext;
+import io.nflow.engine.workflow.definition.AbstractWorkflowDefinition;
+
+/**
+ * The executor listeners that are called for the state executions of one workflow definition. Listeners that do not listen
+ * to the workflow type are left out, and a listener is only called for the hooks that it overrides, so that no-op hooks of
+ * AbstractWorkflowExecutorListener are skipped.
+ */
+class ListenerPipeline {
+  final AbstractWorkflowDefinition<?> definition;
+  final WorkflowExecutorListener[] processors;
+  private final WorkflowExecutorListener[] beforeProcessing;
+  private final WorkflowExecutorListener[] afterProcessing;
+  private final WorkflowExecutorListener[] afterFailure;
+
+  ListenerPipeline(AbstractWorkflowDefinition<?> definition, WorkflowExecutorListener... listeners) {
+    this.definition = definition;
+    List<WorkflowExecutorListener> applicable = new ArrayList<>(listeners.length);
+    for (WorkflowExecutorListener listener : listeners) {
+      Set<String> workflowTypes = listener.getWorkflowTypes();
+      if (workflowTypes == null || workflowTypes.isEmpty() || workflowTypes.contains(definition.getType())) {
+        applicable.add(listener);
+      }
+    }
+    beforeProcessing = overriding(applicable, "beforeProcessing", ListenerContext.class);
+    processors = overriding(applicable, "process", ListenerContext.class, ListenerChain.class);
+    afterProcessing = overriding(applicable, "afterProcessing", ListenerContext.class);
+    afterFailure = overriding(applicable, "afterFailure", ListenerContext.class, Throwable.class);
+  }
+
+  private static WorkflowExecutorListener[] overriding(List<WorkflowExecutorListener> listeners, String methodName,
+      Class<?>... parameterTypes) {
+    List<WorkflowExecutorListener> overriding = new ArrayList<>(listeners.size());
+    for (WorkflowExecutorListener listener : listeners) {
+      if (overrides(listener, methodName, parameterTypes)) {
+        overriding.add(listener);
+      }
+    }
+    return overriding.toArray(new WorkflowExecutorListener[overriding.size()]);
+  }
+
+  private static boolean overrides(WorkflowExecutorListener listener, String methodName, Class<?>... parameterTypes) {
+    try {
+      Method method = listener.getClass().getMethod(methodName, parameterTypes);
+      return !AbstractWorkflowExecutorListener.class.equals(method.getDeclaringClass());
+    } catch (@SuppressWarnings("unused") NoSuchMethodException e) {
+      return true;
+    }
+  }
+
+  void beforeProcessing(ListenerContext listenerContext) {
+    for (WorkflowExecutorListener listener : beforeProcessing) {
+      try {
+        listener.beforeProcessing(listenerContext);
+      } catch (Throwable t) {
+        logger.error("Error in " + listener.getClass().getName() + ".beforeProcessing (" + t.getMessage() + ")", t);
+      }
+    }
+  }
+
+  void afterProcessing(ListenerContext listenerContext) {
+    for (WorkflowExecutorListener listener : afterProcessing) {
+      try {
+        listener.afterProcessing(listenerContext);
+      } catch (Throwable t) {
+        logger.error("Error in " + listener.getClass().getName() + ".afterProcessing (" + t.getMessage() + ")", t);
+      }
+    }
+  }
+
+  void afterFailure(ListenerContext listenerContext, Throwable ex) {
+    for (WorkflowExecutorListener listener : afterFailure) {
+      try {
+        listener.afterFailure(listenerContext, ex);
+      } catch (Throwable t) {
+        logger.error("Error in " + listener.getClass().getName() + ".afterFailure (" + t.getMessage() + ")", t);
+      }
+    }
+  }
+}
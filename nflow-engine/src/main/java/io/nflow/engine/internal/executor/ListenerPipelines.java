@@ -0,0 +1,33 @@
+package io.nflow.engine.internal.executor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.nflow.engine.listener.WorkflowExecutorListener;
+import io.nflow.engine.workflow.definition.AbstractWorkflowDefinition;
+
+/**
+ * Listener pipelines by workflow type. A pipeline is compiled when the first state of the workflow definition is executed, and
+ * recompiled if the workflow definition of the type is replaced.
+ */
+class ListenerPipelines {
+  private final WorkflowExecutorListener[] listeners;
+  private final Map<String, ListenerPipeline> pipelines = new ConcurrentHashMap<>();
+
+  ListenerPipelines(WorkflowExecutorListener... listeners) {
+    this.listeners = listeners;
+  }
+
+  boolean isFor(WorkflowExecutorListener... executorListeners) {
+    return listeners == executorListeners;
+  }
+
+  ListenerPipeline get(AbstractWorkflowDefinition<?> definition) {
+    ListenerPipeline pipeline = pipelines.get(definition.getType());
+    if (pipeline == null || pipeline.definition != definition) {
+      pipeline = new ListenerPipeline(definition, listeners);
+      pipelines.put(definition.getType(), pipeline);
+    }
+    return pipeline;
+  }
+}
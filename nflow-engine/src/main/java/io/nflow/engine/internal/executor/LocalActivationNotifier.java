@@ -0,0 +1,76 @@
+package io.nflow.engine.internal.executor;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+
+import io.nflow.engine.workflow.executor.ActivationNotifier;
+
+/**
+ * Activation notifier that wakes up the dispatcher of this nFlow instance only. Dispatchers of other nFlow instances notice the
+ * activations on their next poll. When called inside a transaction, the dispatcher is woken up after the transaction is
+ * committed.
+ */
+public class LocalActivationNotifier implements ActivationNotifier {
+
+  private final ThreadLocal<long[]> seenActivations = ThreadLocal.withInitial(() -> new long[1]);
+  private long activations;
+  private boolean shutdown;
+
+  @Override
+  public void notifyActivation() {
+    if (isSynchronizationActive()) {
+      registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          signalActivation();
+        }
+      });
+    } else {
+      signalActivation();
+    }
+  }
+
+  @Override
+  public synchronized boolean awaitActivation(long timeoutMillis) throws InterruptedException {
+    long[] seen = seenActivations.get();
+    long waitUntil = nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+    while (seen[0] == activations && !shutdown) {
+      long sleep = NANOSECONDS.toMillis(waitUntil - nanoTime());
+      if (sleep <= 0) {
+        return false;
+      }
+      wait(sleep);
+    }
+    boolean wasActivated = seen[0] != activations;
+    seen[0] = activations;
+    return wasActivated;
+  }
+
+  @Override
+  public synchronized void shutdown() {
+    shutdown = true;
+    notifyAll();
+  }
+
+  /**
+   * Wake up the threads waiting for activation.
+   */
+  protected synchronized void signalActivation() {
+    activations++;
+    notifyAll();
+  }
+
+  /**
+   * Return true if shutdown has been requested.
+   *
+   * @return True after shutdown.
+   */
+  protected synchronized boolean isShutdown() {
+    return shutdown;
+  }
+}
@@ -0,0 +1,190 @@
+package io.nflow.engine.internal.executor;
+
+import static java.util.Collections.singletonList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+
+import io.nflow.engine.internal.dao.ExecutorDao;
+import io.nflow.engine.internal.dao.WorkflowInstanceDao;
+import io.nflow.engine.internal.executor.HashedTimerWheel.Timeout;
+import io.nflow.engine.internal.executor.WorkflowTypeBulkheads.Slot;
+
+/**
+ * Starts state processors of workflow instances that are claimed by this nFlow instance before their next activation time:
+ * instances kept claimed during a short transition delay, and instances claimed by look-ahead polling. The state processor is
+ * submitted to the workflow instance executor from a hashed timer wheel when the next activation time is reached, without
+ * polling and loading the workflow instance again. State processors waiting for an asynchronous state method are resumed the
+ * same way when the state method completes or times out, using the concurrency slot of the workflow type that they hold while
+ * waiting. Workflow instances that can not be started because the executor is
+ * shutting down or the lease of the executor has expired are released for other nFlow instances.
+ */
+class LocalContinuationScheduler {
+  private static final Logger logger = getLogger(LocalContinuationScheduler.class);
+  private static final long TICK_MILLIS = 10;
+  private static final int WHEEL_SIZE = 512;
+
+  private final WorkflowInstanceExecutor executor;
+  private final WorkflowInstanceDao workflowInstanceDao;
+  private final ExecutorDao executorDao;
+  private final Map<Integer, WorkflowStateProcessor> scheduled = new ConcurrentHashMap<>();
+  private final Map<Integer, CompletionStage<?>> waiting = new ConcurrentHashMap<>();
+  private HashedTimerWheel timer;
+  private boolean shutdown;
+
+  LocalContinuationScheduler(WorkflowInstanceExecutor executor, WorkflowInstanceDao workflowInstanceDao,
+      ExecutorDao executorDao) {
+    this.executor = executor;
+    this.workflowInstanceDao = workflowInstanceDao;
+    this.executorDao = executorDao;
+  }
+
+  /**
+   * Submit the state processor to the executor after the delay.
+   *
+   * @param processor The state processor of the claimed workflow instance.
+   * @param workflowType The workflow type of the workflow instance.
+   * @param maxConcurrentExecutions The maximum number of concurrent executions of the workflow type, or zero for no limit.
+   * @param delayMillis The delay in milliseconds.
+   */
+  void schedule(WorkflowStateProcessor processor, String workflowType, int maxConcurrentExecutions, long delayMillis) {
+    int instanceId = processor.getInstanceId();
+    scheduled.put(instanceId, processor);
+    try {
+      getTimer().schedule(() -> {
+        if (scheduled.remove(instanceId) != null) {
+          resume(processor, workflowType, maxConcurrentExecutions);
+        }
+      }, delayMillis);
+    } catch (RejectedExecutionException e) {
+      scheduled.remove(instanceId);
+      release(instanceId, e.getMessage());
+    }
+  }
+
+  /**
+   * Submit the state processor to the executor when the asynchronous state method completes, or when the timeout expires.
+   * The timeout is cancelled when the state method completes, so that the timer does not keep the state processor reachable.
+   *
+   * @param processor The state processor waiting for the state method.
+   * @param stage The completion stage returned by the state method.
+   * @param workflowType The workflow type of the workflow instance.
+   * @param maxConcurrentExecutions The maximum number of concurrent executions of the workflow type, or zero for no limit.
+   * @param timeoutMillis The maximum time to wait for the state method in milliseconds.
+   */
+  void resumeWhenComplete(WorkflowStateProcessor processor, CompletionStage<?> stage, String workflowType,
+      int maxConcurrentExecutions, long timeoutMillis) {
+    int instanceId = processor.getInstanceId();
+    waiting.put(instanceId, stage);
+    Timeout timeout;
+    try {
+      timeout = getTimer().schedule(() -> {
+        if (waiting.remove(instanceId, stage)) {
+          processor.asyncStateMethodTimedOut(timeoutMillis);
+          resume(processor, workflowType, maxConcurrentExecutions);
+        }
+      }, timeoutMillis);
+    } catch (RejectedExecutionException e) {
+      waiting.remove(instanceId);
+      releaseSlot(processor.takeHeldSlot());
+      release(instanceId, e.getMessage());
+      return;
+    }
+    stage.whenComplete((result, failure) -> {
+      timeout.cancel();
+      if (waiting.remove(instanceId, stage)) {
+        processor.asyncStateMethodCompleted(result, failure);
+        resume(processor, workflowType, maxConcurrentExecutions);
+      }
+    });
+  }
+
+  /**
+   * Return the number of workflow instances waiting for their next activation time.
+   *
+   * @return The number of scheduled workflow instances.
+   */
+  int getScheduledCount() {
+    return scheduled.size();
+  }
+
+  /**
+   * Return the number of workflow instances waiting for an asynchronous state method.
+   *
+   * @return The number of suspended workflow instances.
+   */
+  int getSuspendedCount() {
+    return waiting.size();
+  }
+
+  /**
+   * Stop the timer and return the workflow instances that have not been started yet or are waiting for an asynchronous state
+   * method. Results of state methods that complete later are ignored.
+   *
+   * @return The ids of the workflow instances that were not started.
+   */
+  List<Integer> shutdown() {
+    synchronized (this) {
+      shutdown = true;
+      if (timer != null) {
+        timer.stop();
+      }
+    }
+    List<Integer> ids = new ArrayList<>(scheduled.keySet());
+    scheduled.keySet().removeAll(ids);
+    List<Integer> waitingIds = new ArrayList<>(waiting.keySet());
+    waiting.keySet().removeAll(waitingIds);
+    ids.addAll(waitingIds);
+    return ids;
+  }
+
+  private synchronized HashedTimerWheel getTimer() {
+    if (shutdown) {
+      throw new RejectedExecutionException("Local continuation scheduler is shut down");
+    }
+    if (timer == null) {
+      timer = new HashedTimerWheel("nflow-continuation-timer", TICK_MILLIS, WHEEL_SIZE);
+    }
+    return timer;
+  }
+
+  private void resume(WorkflowStateProcessor processor, String workflowType, int maxConcurrentExecutions) {
+    Slot slot = processor.takeHeldSlot();
+    if (!executorDao.hasValidLease()) {
+      releaseSlot(slot);
+      release(processor.getInstanceId(), "Executor lease has expired");
+      return;
+    }
+    try {
+      if (slot != null) {
+        slot.resume(processor);
+      } else {
+        executor.execute(processor, workflowType, maxConcurrentExecutions);
+      }
+    } catch (RejectedExecutionException e) {
+      release(processor.getInstanceId(), e.getMessage());
+    }
+  }
+
+  private static void releaseSlot(Slot slot) {
+    if (slot != null) {
+      slot.release();
+    }
+  }
+
+  private void release(int instanceId, String reason) {
+    logger.info("Releasing workflow instance {} waiting for local continuation: {}", instanceId, reason);
+    try {
+      workflowInstanceDao.releaseWorkflowInstances(singletonList(instanceId));
+    } catch (RuntimeException ex) {
+      logger.warn("Failed to release workflow instance {}, it will be recovered by other executors.", instanceId, ex);
+    }
+  }
+}
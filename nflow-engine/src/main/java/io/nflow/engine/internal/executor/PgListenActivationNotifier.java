@@ -0,0 +1,115 @@
+package io.nflow.engine.internal.executor;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Activation notifier that uses PostgreSQL LISTEN/NOTIFY. Activations are sent with <code>pg_notify</code>, which delivers the
+ * notification only when the surrounding transaction is committed. A background thread keeps one connection of the nFlow
+ * connection pool reserved for listening to the notifications.
+ */
+public class PgListenActivationNotifier extends LocalActivationNotifier {
+
+  static final String CHANNEL = "nflow_activation";
+  private static final Logger logger = getLogger(PgListenActivationNotifier.class);
+  private static final int LISTEN_TIMEOUT_MILLIS = 1000;
+  private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+  private final JdbcTemplate jdbc;
+  private final DataSource dataSource;
+  private final String executorGroup;
+  private Thread listener;
+
+  /**
+   * Create a new instance.
+   *
+   * @param jdbc The nFlow JDBC template.
+   * @param dataSource The nFlow data source used for the listening connection.
+   * @param executorGroup The executor group of this nFlow instance.
+   */
+  public PgListenActivationNotifier(JdbcTemplate jdbc, DataSource dataSource, String executorGroup) {
+    this.jdbc = jdbc;
+    this.dataSource = dataSource;
+    this.executorGroup = executorGroup;
+  }
+
+  @Override
+  public void notifyActivation() {
+    jdbc.queryForRowSet("select pg_notify(?, ?)", CHANNEL, executorGroup);
+  }
+
+  @Override
+  public boolean awaitActivation(long timeoutMillis) throws InterruptedException {
+    startListener();
+    return super.awaitActivation(timeoutMillis);
+  }
+
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    Thread t;
+    synchronized (this) {
+      t = listener;
+    }
+    if (t != null) {
+      t.interrupt();
+    }
+  }
+
+  private synchronized void startListener() {
+    if (listener == null && !isShutdown()) {
+      listener = new Thread(this::listen, "nflow-activation-listener");
+      listener.setDaemon(true);
+      listener.start();
+    }
+  }
+
+  private void listen() {
+    while (!isShutdown()) {
+      try (Connection connection = dataSource.getConnection()) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN " + CHANNEL);
+        }
+        // wake up the dispatcher in case activations were missed while not listening
+        signalActivation();
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        while (!isShutdown()) {
+          PGNotification[] notifications = pgConnection.getNotifications(LISTEN_TIMEOUT_MILLIS);
+          if (notifications != null && isActivationOfOwnGroup(notifications)) {
+            signalActivation();
+          }
+        }
+      } catch (SQLException | RuntimeException e) {
+        if (isShutdown()) {
+          break;
+        }
+        logger.warn("Listening to activations failed, retrying in {} ms: {}", RECONNECT_DELAY_MILLIS, e.getMessage());
+        try {
+          Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (@SuppressWarnings("unused") InterruptedException ie) {
+          break;
+        }
+      }
+    }
+    logger.info("Activation listener stopped.");
+  }
+
+  private boolean isActivationOfOwnGroup(PGNotification[] notifications) {
+    for (PGNotification notification : notifications) {
+      if (executorGroup.equals(notification.getParameter())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
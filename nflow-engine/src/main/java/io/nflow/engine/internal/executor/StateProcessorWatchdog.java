@@ -0,0 +1,99 @@
+package io.nflow.engine.internal.executor;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static org.joda.time.DateTimeUtils.currentTimeMillis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.joda.time.DateTime;
+
+import io.nflow.engine.workflow.executor.LongRunningStateProcessor;
+import io.nflow.engine.workflow.executor.ProcessingTimeHistogram;
+
+/**
+ * Checks the processing times of the running state processors. The check is run periodically by a watchdog thread, so that
+ * iterating the state processors and sampling thread stacks does not delay polling. The stack of a state processor is sampled
+ * and logged once when its processing time exceeds the stuck thread threshold, not again on later checks of the same
+ * execution. The long running state processors found by the latest check are published for monitoring. The processing time
+ * of each state processor execution is recorded in a cumulative histogram when the execution finishes.
+ */
+class StateProcessorWatchdog {
+  private static final List<Long> BUCKET_UPPER_BOUNDS_MILLIS = unmodifiableList(
+      asList(10L, 50L, 100L, 500L, 1_000L, 5_000L, 30_000L, 60_000L, 300_000L));
+
+  private final Map<Integer, WorkflowStateProcessor> processingInstances;
+  private final int stuckThreadThresholdSeconds;
+  private Map<Integer, LongRunningStateProcessor> longRunning = new HashMap<>();
+  private volatile List<LongRunningStateProcessor> longRunningSnapshot = emptyList();
+  private final LongAdder[] processingTimeCounts = new LongAdder[BUCKET_UPPER_BOUNDS_MILLIS.size() + 1];
+
+  StateProcessorWatchdog(Map<Integer, WorkflowStateProcessor> processingInstances, int stuckThreadThresholdSeconds) {
+    this.processingInstances = processingInstances;
+    this.stuckThreadThresholdSeconds = stuckThreadThresholdSeconds;
+    for (int i = 0; i < processingTimeCounts.length; i++) {
+      processingTimeCounts[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Check the processing times of the running state processors, and sample the stacks of the state processors that have
+   * exceeded the stuck thread threshold since the previous check.
+   *
+   * @return The number of state processors that have been processing longer than the stuck thread threshold.
+   */
+  synchronized int check() {
+    long currentTimeSeconds = currentTimeMillis() / 1000;
+    Map<Integer, LongRunningStateProcessor> current = new HashMap<>();
+    for (Entry<Integer, WorkflowStateProcessor> entry : processingInstances.entrySet()) {
+      WorkflowStateProcessor processor = entry.getValue();
+      long startTimeSeconds = processor.getStartTimeSeconds();
+      long processingTimeSeconds = currentTimeSeconds - startTimeSeconds;
+      if (processingTimeSeconds > stuckThreadThresholdSeconds) {
+        DateTime started = new DateTime(startTimeSeconds * 1000);
+        LongRunningStateProcessor previous = longRunning.get(entry.getKey());
+        String stackTrace = previous != null && previous.started.equals(started) ? previous.stackTrace
+            : processor.logPotentiallyStuck(processingTimeSeconds);
+        current.put(entry.getKey(), new LongRunningStateProcessor(entry.getKey(), started, processingTimeSeconds, stackTrace));
+      }
+    }
+    longRunning = current;
+    longRunningSnapshot = unmodifiableList(new ArrayList<>(current.values()));
+    return current.size();
+  }
+
+  List<LongRunningStateProcessor> getLongRunningStateProcessors() {
+    return longRunningSnapshot;
+  }
+
+  /**
+   * Record the processing time of a finished state processor execution.
+   *
+   * @param processingTimeMillis The time the state processor was running in milliseconds.
+   */
+  void recordProcessingTime(long processingTimeMillis) {
+    processingTimeCounts[bucket(processingTimeMillis)].increment();
+  }
+
+  ProcessingTimeHistogram getProcessingTimeHistogram() {
+    List<Long> counts = new ArrayList<>(processingTimeCounts.length);
+    for (LongAdder count : processingTimeCounts) {
+      counts.add(count.sum());
+    }
+    return new ProcessingTimeHistogram(BUCKET_UPPER_BOUNDS_MILLIS, counts);
+  }
+
+  private static int bucket(long processingTimeMillis) {
+    int i = 0;
+    while (i < BUCKET_UPPER_BOUNDS_MILLIS.size() && processingTimeMillis > BUCKET_UPPER_BOUNDS_MILLIS.get(i)) {
+      i++;
+    }
+    return i;
+  }
+}
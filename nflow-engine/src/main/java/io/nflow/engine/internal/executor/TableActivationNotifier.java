@@ -0,0 +1,149 @@
+package io.nflow.engine.internal.executor;
+
+import static java.lang.Boolean.TRUE;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.bindResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.hasResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.unbindResourceIfPossible;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+
+/**
+ * Activation notifier that works with all supported databases. Activations are written to the <code>nflow_activation</code>
+ * table, and one background thread per nFlow instance checks the table for new rows at short intervals and wakes up all waiting
+ * dispatcher threads. When called inside a transaction, one row is inserted in the same transaction, so that it becomes
+ * visible to other nFlow instances together with the activated workflow instances and disappears if the transaction is rolled
+ * back. When called outside a transaction, the row is inserted by the background thread before its next check, so that the
+ * caller does not need a database connection. Activations of the same transaction or the same check interval are coalesced
+ * into one row.
+ */
+public class TableActivationNotifier extends LocalActivationNotifier {
+
+  private static final Logger logger = getLogger(TableActivationNotifier.class);
+
+  private final JdbcTemplate jdbc;
+  private final String executorGroup;
+  private final long pollMillis;
+  private final AtomicBoolean insertPending = new AtomicBoolean();
+  private long lastSeenId;
+  private Thread checker;
+
+  /**
+   * Create a new instance.
+   *
+   * @param jdbc The nFlow JDBC template.
+   * @param executorGroup The executor group of this nFlow instance.
+   * @param pollMillis The interval for checking new activations from the database in milliseconds.
+   */
+  public TableActivationNotifier(JdbcTemplate jdbc, String executorGroup, long pollMillis) {
+    this.jdbc = jdbc;
+    this.executorGroup = executorGroup;
+    this.pollMillis = pollMillis;
+    try {
+      this.lastSeenId = queryMaxId();
+    } catch (DataAccessException e) {
+      logger.warn("Failed to check for activations: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  public void notifyActivation() {
+    super.notifyActivation();
+    if (!isSynchronizationActive()) {
+      insertPending.set(true);
+      startChecker();
+    } else if (!hasResource(this)) {
+      insertActivation();
+      bindResource(this, TRUE);
+      registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCompletion(int status) {
+          unbindResourceIfPossible(TableActivationNotifier.this);
+        }
+      });
+    }
+  }
+
+  private void insertActivation() {
+    try {
+      jdbc.update("insert into nflow_activation(executor_group) values (?)", executorGroup);
+    } catch (DataAccessException e) {
+      logger.warn("Failed to insert activation: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  public boolean awaitActivation(long timeoutMillis) throws InterruptedException {
+    startChecker();
+    return super.awaitActivation(timeoutMillis);
+  }
+
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    Thread t;
+    synchronized (this) {
+      t = checker;
+    }
+    if (t != null) {
+      t.interrupt();
+    }
+  }
+
+  private synchronized void startChecker() {
+    if (checker == null && !isShutdown()) {
+      checker = new Thread(this::check, "nflow-activation-checker");
+      checker.setDaemon(true);
+      checker.start();
+    }
+  }
+
+  private void check() {
+    while (!isShutdown()) {
+      try {
+        Thread.sleep(pollMillis);
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        break;
+      }
+      if (insertPending.getAndSet(false)) {
+        insertActivation();
+      }
+      if (hasNewActivations()) {
+        signalActivation();
+      }
+    }
+    if (insertPending.getAndSet(false)) {
+      insertActivation();
+    }
+    logger.info("Activation checker stopped.");
+  }
+
+  private boolean hasNewActivations() {
+    try {
+      long maxId = queryMaxId();
+      if (maxId <= lastSeenId) {
+        lastSeenId = maxId;
+        return false;
+      }
+      lastSeenId = maxId;
+      // keep the latest row so that other nFlow instances still notice it
+      jdbc.update("delete from nflow_activation where executor_group = ? and id < ?", executorGroup, maxId);
+      return true;
+    } catch (DataAccessException e) {
+      logger.warn("Failed to check for new activations: {}", e.getMessage());
+      return false;
+    }
+  }
+
+  private long queryMaxId() {
+    Long id = jdbc.queryForObject("select max(id) from nflow_activation where executor_group = ?", Long.class, executorGroup);
+    return id == null ? 0 : id;
+  }
+}
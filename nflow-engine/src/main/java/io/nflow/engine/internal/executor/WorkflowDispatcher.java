@@ -1,25 +1,55 @@
 package io.nflow.engine.internal.executor;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.joda.time.DateTime.now;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
 
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
 import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.nflow.engine.config.NFlow;
 import io.nflow.engine.internal.dao.ExecutorDao;
 import io.nflow.engine.internal.dao.PollingRaceConditionException;
 import io.nflow.engine.internal.dao.WorkflowInstanceDao;
 import io.nflow.engine.internal.util.PeriodicLogger;
 import io.nflow.engine.service.WorkflowDefinitionService;
+import io.nflow.engine.workflow.definition.AbstractWorkflowDefinition;
+import io.nflow.engine.workflow.definition.WorkflowSettings;
+import io.nflow.engine.workflow.executor.ActivationNotifier;
+import io.nflow.engine.workflow.instance.WorkflowInstance;
 
 @Component
 @SuppressFBWarnings(value = "MDM_RANDOM_SEED", justification = "rand does not need to be secure")
@@ -27,6 +57,10 @@ public class WorkflowDispatcher implements Runnable {
 
   private static final Logger logger = getLogger(WorkflowDispatcher.class);
   private static final PeriodicLogger periodicLogger = new PeriodicLogger(logger, 60);
+  private static final long PREFETCH_WAIT_SECONDS = 10;
+  private static final long SHUTDOWN_GRACE_SECONDS = 10;
+  private static final long WATCHDOG_INTERVAL_SECONDS = 1;
+  private static final PeriodicLogger stuckLogger = new PeriodicLogger(logger, 60);
 
   private volatile boolean shutdownRequested;
   private final CountDownLatch shutdownDone = new CountDownLatch(1);
@@ -36,25 +70,65 @@ public class WorkflowDispatcher implements Runnable {
   private final WorkflowStateProcessorFactory stateProcessorFactory;
   private final WorkflowDefinitionService workflowDefinitions;
   private final ExecutorDao executorDao;
+  private final ActivationNotifier activationNotifier;
   private final long sleepTimeMillis;
+  private final long maxSleepTimeMillis;
   private final int stuckThreadThresholdSeconds;
   private final Random rand = new Random();
   private final boolean autoInit;
+  private final boolean pipelined;
+  private final boolean fairShare;
+  private final boolean loadBalancing;
+  private final int maxSuspendedInstances;
+  private final ClusterLoadBalancer loadBalancer = new ClusterLoadBalancer();
+  private volatile List<ExecutorLoad> otherExecutorLoads = emptyList();
+  private volatile int throughput;
+  private long lastCompletedTaskCount;
+  private long lastLoadMeasurementNanos = nanoTime();
+  private final int keepaliveSeconds;
+  private ScheduledExecutorService heartbeat;
+  private ExecutorService recoveryExecutor;
+  private ScheduledExecutorService watchdog;
+  private Future<?> recovery;
+  private final List<Partition> partitions = new ArrayList<>();
+  private final Queue<Integer> unstartedInstanceIds = new ConcurrentLinkedQueue<>();
+  private final int awaitTerminationSeconds;
 
   @Inject
   @SuppressFBWarnings(value = "WEM_WEAK_EXCEPTION_MESSAGING", justification = "Transaction support exception message is fine")
   public WorkflowDispatcher(WorkflowInstanceExecutor executor, WorkflowInstanceDao workflowInstances,
       WorkflowStateProcessorFactory stateProcessorFactory, WorkflowDefinitionService workflowDefinitions, ExecutorDao executorDao,
-      Environment env) {
+      @NFlow ActivationNotifier activationNotifier, Environment env) {
     this.executor = executor;
     this.workflowInstances = workflowInstances;
     this.stateProcessorFactory = stateProcessorFactory;
     this.workflowDefinitions = workflowDefinitions;
     this.executorDao = executorDao;
+    this.activationNotifier = activationNotifier;
     this.sleepTimeMillis = env.getRequiredProperty("nflow.dispatcher.sleep.ms", Long.class);
+    this.maxSleepTimeMillis = env.getProperty("nflow.dispatcher.sleep.max.ms", Long.class, sleepTimeMillis);
     this.stuckThreadThresholdSeconds = env.getRequiredProperty("nflow.executor.stuckThreadThreshold.seconds", Integer.class);
     this.autoInit = env.getRequiredProperty("nflow.autoinit", Boolean.class);
+    this.pipelined = env.getRequiredProperty("nflow.dispatcher.pipelined", Boolean.class);
+    this.fairShare = env.getRequiredProperty("nflow.dispatcher.fairshare", Boolean.class);
+    this.loadBalancing = env.getRequiredProperty("nflow.dispatcher.loadbalancing", Boolean.class);
+    this.awaitTerminationSeconds = env.getRequiredProperty("nflow.dispatcher.await.termination.seconds", Integer.class);
+    this.maxSuspendedInstances = env.getRequiredProperty("nflow.executor.asyncState.maxSuspended", Integer.class);
+    int threadCount = env.getRequiredProperty("nflow.dispatcher.threads", Integer.class);
+    for (int i = 0; i < threadCount; i++) {
+      partitions.add(new Partition(i, threadCount));
+    }
 
+    int timeoutSeconds = env.getRequiredProperty("nflow.executor.timeout.seconds", Integer.class);
+    this.keepaliveSeconds = env.getRequiredProperty("nflow.executor.keepalive.seconds", Integer.class);
+    if (keepaliveSeconds <= 0 || keepaliveSeconds >= timeoutSeconds) {
+      throw new BeanCreationException(
+          "nflow.executor.keepalive.seconds must be positive and less than nflow.executor.timeout.seconds");
+    }
+    int lookAheadSeconds = workflowInstances.getPollLookAheadSeconds();
+    if (lookAheadSeconds > 0 && lookAheadSeconds >= timeoutSeconds) {
+      throw new BeanCreationException("nflow.dispatcher.lookahead.seconds must be less than nflow.executor.timeout.seconds");
+    }
     if (!executorDao.isTransactionSupportEnabled()) {
       throw new BeanCreationException("Transaction support must be enabled");
     }
@@ -63,38 +137,43 @@ public class WorkflowDispatcher implements Runnable {
   @Override
   public void run() {
     logger.info("Starting.");
+    List<Thread> partitionThreads = new ArrayList<>();
     try {
+      recoveryExecutor = newSingleThreadExecutor(new CustomizableThreadFactory("nflow-recovery-"));
+      heartbeat = newSingleThreadScheduledExecutor(new CustomizableThreadFactory("nflow-heartbeat-"));
+      heartbeat.scheduleWithFixedDelay(this::heartbeat, 0, keepaliveSeconds, SECONDS);
+      watchdog = newSingleThreadScheduledExecutor(new CustomizableThreadFactory("nflow-watchdog-"));
+      watchdog.scheduleWithFixedDelay(this::checkStuckProcessors, WATCHDOG_INTERVAL_SECONDS, WATCHDOG_INTERVAL_SECONDS,
+          SECONDS);
       if (!autoInit) {
         workflowDefinitions.postProcessWorkflowDefinitions();
       }
-      while (!shutdownRequested) {
-        try {
-          executor.waitUntilQueueSizeLowerThanThreshold(executorDao.getMaxWaitUntil());
-
-          if (!shutdownRequested) {
-            if (executorDao.tick()) {
-              workflowInstances.recoverWorkflowInstancesFromDeadNodes();
-            }
-            int potentiallyStuckProcessors = stateProcessorFactory.getPotentiallyStuckProcessors();
-            if (potentiallyStuckProcessors > 0) {
-              periodicLogger.warn("{} of {} state processor threads are potentially stuck (processing longer than {} seconds)",
-                  potentiallyStuckProcessors, executor.getThreadCount(), stuckThreadThresholdSeconds);
-            }
-            dispatch(getNextInstanceIds());
-          }
-        } catch (PollingRaceConditionException pex) {
-          logger.info(pex.getMessage());
-          sleep(true);
-        } catch (@SuppressWarnings("unused") InterruptedException dropThrough) {
-        } catch (Exception e) {
-          logger.error("Exception in executing dispatcher - retrying after sleep period (" + e.getMessage() + ")", e);
-          sleep(false);
-        }
+      if (partitions.size() > 1) {
+        logger.info("Polling {} partitions with separate dispatcher threads.", partitions.size());
       }
+      for (Partition partition : partitions.subList(1, partitions.size())) {
+        Thread thread = new Thread(partition, "nflow-dispatcher-" + partition.index);
+        thread.start();
+        partitionThreads.add(thread);
+      }
+      partitions.get(0).run();
     } catch (IOException | ReflectiveOperationException e) {
       logger.error("Fetching workflow definitions failed", e);
     } finally {
+      activationNotifier.shutdown();
+      joinPartitionThreads(partitionThreads);
       shutdownPool();
+      unstartedInstanceIds.addAll(stateProcessorFactory.stopLocalContinuations());
+      if (heartbeat != null) {
+        heartbeat.shutdownNow();
+      }
+      if (recoveryExecutor != null) {
+        recoveryExecutor.shutdownNow();
+      }
+      if (watchdog != null) {
+        watchdog.shutdownNow();
+      }
+      releaseUnstartedInstances();
       executorDao.markShutdown();
       logger.info("Shutdown finished.");
       shutdownDone.countDown();
@@ -103,39 +182,161 @@ public class WorkflowDispatcher implements Runnable {
 
   public void shutdown() {
     shutdownRequested = true;
+    activationNotifier.shutdown();
     logger.info("Shutdown requested.");
     try {
-      // TODO use timeout?
-      shutdownDone.await();
+      if (!shutdownDone.await(awaitTerminationSeconds + SHUTDOWN_GRACE_SECONDS, SECONDS)) {
+        logger.warn("Timed out while waiting for shutdown to finish.");
+      }
     } catch (@SuppressWarnings("unused") InterruptedException e) {
       logger.info("Shutdown interrupted.");
     }
   }
 
+  private void joinPartitionThreads(List<Thread> partitionThreads) {
+    for (Thread thread : partitionThreads) {
+      try {
+        thread.join();
+      } catch (@SuppressWarnings("unused") InterruptedException e) {
+        logger.warn("Interrupted while waiting for dispatcher thread {} to finish.", thread.getName());
+      }
+    }
+  }
+
   private void shutdownPool() {
     try {
-      executor.shutdown();
+      unstartedInstanceIds.addAll(executor.shutdown());
     } catch (Exception e) {
       logger.error("Error in shutting down thread pool.", e);
     }
   }
 
-  private void dispatch(List<Integer> nextInstanceIds) {
-    if (nextInstanceIds.isEmpty()) {
-      logger.debug("Found no workflow instances, sleeping.");
-      sleep(false);
+  /**
+   * Release the workflow instances that were claimed by this executor but not started, so that other executors can process
+   * them immediately instead of waiting for this executor to expire. Workflow instances that have already been recovered by
+   * other executors are not affected.
+   */
+  private void releaseUnstartedInstances() {
+    List<Integer> ids = new ArrayList<>();
+    Integer id;
+    while ((id = unstartedInstanceIds.poll()) != null) {
+      ids.add(id);
+    }
+    if (ids.isEmpty()) {
       return;
     }
-    logger.debug("Found {} workflow instances, dispatching executors.", nextInstanceIds.size());
-    for (Integer instanceId : nextInstanceIds) {
-      executor.execute(stateProcessorFactory.createProcessor(instanceId));
+    try {
+      int released = workflowInstances.releaseWorkflowInstances(ids);
+      logger.info("Released {} claimed workflow instances that were not started.", released);
+    } catch (Exception e) {
+      unstartedInstanceIds.addAll(ids);
+      logger.error("Failed to release claimed workflow instances, they will be recovered by other executors.", e);
     }
   }
 
-  private List<Integer> getNextInstanceIds() {
-    int nextBatchSize = executor.getQueueRemainingCapacity();
-    logger.debug("Polling next {} workflow instances.", nextBatchSize);
-    return workflowInstances.pollNextWorkflowInstanceIds(nextBatchSize);
+  /**
+   * Check the processing times of the running state processors in the watchdog thread, so that sampling the stacks of
+   * potentially stuck state processors does not delay polling.
+   */
+  private void checkStuckProcessors() {
+    try {
+      int potentiallyStuckProcessors = stateProcessorFactory.getPotentiallyStuckProcessors();
+      if (potentiallyStuckProcessors > 0) {
+        stuckLogger.warn("{} of {} state processor threads are potentially stuck (processing longer than {} seconds)",
+            potentiallyStuckProcessors, executor.getThreadCount(), stuckThreadThresholdSeconds);
+      }
+    } catch (Exception e) {
+      logger.error("Failed to check state processors.", e);
+    }
+  }
+
+  /**
+   * Update the executor heartbeat, which renews the lease of this executor, in a separate thread, so that slow polling or a
+   * full executor queue does not delay it. Workflow instances that were not started while the lease was expired are released
+   * after the lease is renewed.
+   */
+  private void heartbeat() {
+    try {
+      executorDao.updateActiveTimestamp(measureLoad());
+      releaseUnstartedInstances();
+      if (loadBalancing) {
+        otherExecutorLoads = executorDao.getOtherExecutorLoads();
+      }
+      recoverWorkflowInstancesFromDeadNodes();
+    } catch (Exception e) {
+      logger.error("Failed to update executor heartbeat.", e);
+    }
+  }
+
+  /**
+   * Recover the workflow instances of dead executors in a background thread, so that recovering a large number of workflow
+   * instances does not delay the heartbeat. A new recovery is not started before the previous one has finished.
+   */
+  private void recoverWorkflowInstancesFromDeadNodes() {
+    if (recovery != null && !recovery.isDone()) {
+      return;
+    }
+    recovery = recoveryExecutor.submit(() -> {
+      try {
+        int recovered = workflowInstances.recoverWorkflowInstancesFromDeadNodes();
+        if (recovered > 0) {
+          logger.info("Recovered {} workflow instances from dead executors.", recovered);
+        }
+      } catch (Exception e) {
+        logger.error("Failed to recover workflow instances from dead executors.", e);
+      }
+    });
+  }
+
+  /**
+   * Return the workflow types that must not be polled, because the workflow type has reached the maximum number of concurrent
+   * executions in this nFlow instance or in the executor group.
+   */
+  private Set<String> getSaturatedWorkflowTypes() {
+    Set<String> saturated = executor.getSaturatedWorkflowTypes();
+    Map<String, Integer> executingCounts = null;
+    for (AbstractWorkflowDefinition<?> definition : workflowDefinitions.getWorkflowDefinitions()) {
+      int maxClusterConcurrentExecutions = definition.getSettings().maxClusterConcurrentExecutions;
+      if (maxClusterConcurrentExecutions > 0) {
+        if (executingCounts == null) {
+          executingCounts = workflowInstances.getExecutingWorkflowInstanceCountsByType();
+        }
+        if (executingCounts.getOrDefault(definition.getType(), 0) >= maxClusterConcurrentExecutions) {
+          saturated.add(definition.getType());
+        }
+      }
+    }
+    return saturated;
+  }
+
+  private int getMaxConcurrentExecutions(String type) {
+    AbstractWorkflowDefinition<?> definition = workflowDefinitions.getWorkflowDefinition(type);
+    if (definition == null) {
+      return 0;
+    }
+    WorkflowSettings settings = definition.getSettings();
+    return settings.maxConcurrentExecutions;
+  }
+
+  /**
+   * Return the current load of this executor, with the throughput measured since the previous call. Called by the heartbeat
+   * thread.
+   */
+  private ExecutorLoad measureLoad() {
+    long completedTaskCount = executor.getCompletedTaskCount();
+    long now = nanoTime();
+    long elapsedNanos = now - lastLoadMeasurementNanos;
+    if (elapsedNanos > 0) {
+      throughput = (int) ((completedTaskCount - lastCompletedTaskCount) * MINUTES.toNanos(1) / elapsedNanos);
+    }
+    lastCompletedTaskCount = completedTaskCount;
+    lastLoadMeasurementNanos = now;
+    return currentLoad();
+  }
+
+  private ExecutorLoad currentLoad() {
+    int threadCount = executor.getThreadCount();
+    return new ExecutorLoad(threadCount, threadCount - executor.getIdleThreadCount(), executor.getQueueSize(), throughput);
   }
 
   @SuppressFBWarnings(value = "MDM_THREAD_YIELD", justification = "Intentionally masking race condition")
@@ -149,4 +350,229 @@ public class WorkflowDispatcher implements Runnable {
     } catch (@SuppressWarnings("unused") InterruptedException ok) {
     }
   }
+
+  /**
+   * Polls and dispatches the workflow instances whose id modulo the number of dispatcher threads equals the partition index.
+   * The first partition is run by the main dispatcher thread. The executor heartbeat, recovery of workflow instances from dead
+   * executors and stuck state processor checks are run in separate threads.
+   */
+  private class Partition implements Runnable {
+    final int index;
+    private final int partitionCount;
+    private final AdaptivePollingController pollingController;
+    private final List<WorkflowInstance> pendingInstances = new ArrayList<>();
+    private final FairShareAllocator fairShareAllocator = new FairShareAllocator();
+    private ExecutorService poller;
+    private Future<List<WorkflowInstance>> prefetchedInstances;
+    private boolean lastPollFoundWork;
+
+    Partition(int index, int partitionCount) {
+      this.index = index;
+      this.partitionCount = partitionCount;
+      this.pollingController = new AdaptivePollingController(sleepTimeMillis, maxSleepTimeMillis, partitionCount);
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!shutdownRequested) {
+          try {
+            executor.waitUntilInFlightLowerThanThreshold(now().plusSeconds(keepaliveSeconds));
+
+            if (!shutdownRequested) {
+              if (!executorDao.hasValidLease()) {
+                suspendUntilLeaseIsRenewed();
+                continue;
+              }
+              executor.resubmitDeferred();
+              dispatch(getNextInstances());
+              if (pipelined) {
+                prefetchNextInstances();
+              }
+            }
+          } catch (PollingRaceConditionException pex) {
+            logger.info(pex.getMessage());
+            sleep(true);
+          } catch (@SuppressWarnings("unused") InterruptedException dropThrough) {
+          } catch (Exception e) {
+            logger.error("Exception in executing dispatcher - retrying after sleep period (" + e.getMessage() + ")", e);
+            sleep(false);
+          }
+        }
+      } finally {
+        collectUnstartedInstances();
+        if (poller != null) {
+          poller.shutdown();
+        }
+      }
+    }
+
+    /**
+     * Stop starting claimed workflow instances while the lease of this executor is expired, because other executors may
+     * recover and process them. The claimed workflow instances that were not started are released when the lease is renewed.
+     */
+    private void suspendUntilLeaseIsRenewed() {
+      periodicLogger.warn("Executor lease has expired, not starting workflow instances until the executor heartbeat succeeds.");
+      collectUnstartedInstances();
+      unstartedInstanceIds.addAll(executor.drainUnstarted());
+      sleep(false);
+    }
+
+    private void collectUnstartedInstances() {
+      for (WorkflowInstance instance : pendingInstances) {
+        unstartedInstanceIds.add(instance.id);
+      }
+      pendingInstances.clear();
+      if (prefetchedInstances != null) {
+        try {
+          for (WorkflowInstance instance : prefetchedInstances.get(PREFETCH_WAIT_SECONDS, SECONDS)) {
+            unstartedInstanceIds.add(instance.id);
+          }
+        } catch (@SuppressWarnings("unused") InterruptedException e) {
+          currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+          // instances claimed by an unfinished prefetch are recovered by other executors after this executor is marked expired
+          logger.warn("Failed to get prefetched workflow instances: {}", e.getMessage());
+        }
+        prefetchedInstances = null;
+      }
+    }
+
+    private void dispatch(List<WorkflowInstance> nextInstances) {
+      logger.debug("Found {} workflow instances, dispatching executors.", nextInstances.size());
+      // with several dispatcher threads, other partitions may fill the executor concurrently
+      int remainingCapacity = pipelined || partitionCount > 1 ? executor.getRemainingCapacity() : nextInstances.size();
+      int dueInstances = 0;
+      for (WorkflowInstance instance : nextInstances) {
+        if (instance.nextActivation != null && instance.nextActivation.isAfterNow()) {
+          // claimed by look-ahead polling, started by a timer at the next activation time
+          stateProcessorFactory.scheduleProcessor(instance, getMaxConcurrentExecutions(instance.type));
+          continue;
+        }
+        dueInstances++;
+        if (remainingCapacity-- > 0 && execute(instance)) {
+          continue;
+        }
+        remainingCapacity = 0;
+        pendingInstances.add(instance);
+      }
+      // instances claimed by look-ahead polling only do not count as work, so that the next poll is not started immediately
+      lastPollFoundWork = dueInstances > 0;
+      if (!lastPollFoundWork) {
+        logger.debug("Found no workflow instances to start now, waiting for activations.");
+        awaitActivation(pollingController.noWorkFound());
+        return;
+      }
+      pollingController.workFound();
+    }
+
+    private boolean execute(WorkflowInstance instance) {
+      try {
+        executor.execute(stateProcessorFactory.createProcessor(instance), instance.type,
+            getMaxConcurrentExecutions(instance.type));
+        return true;
+      } catch (@SuppressWarnings("unused") RejectedExecutionException e) {
+        return false;
+      }
+    }
+
+    private List<WorkflowInstance> getNextInstances() throws InterruptedException {
+      if (!pendingInstances.isEmpty()) {
+        List<WorkflowInstance> instances = new ArrayList<>(pendingInstances);
+        pendingInstances.clear();
+        return instances;
+      }
+      if (prefetchedInstances != null) {
+        Future<List<WorkflowInstance>> prefetched = prefetchedInstances;
+        prefetchedInstances = null;
+        try {
+          return prefetched.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+      }
+      return pollNextInstances(executor.getRemainingCapacity());
+    }
+
+    private List<WorkflowInstance> pollNextInstances(int remainingCapacity) {
+      // workflow instances waiting in the timer wheel are submitted to the executor later, so they use executor capacity too,
+      // and any polled workflow instance may suspend waiting for an asynchronous state method
+      int capacity = max(0, min(remainingCapacity - stateProcessorFactory.getLocalContinuationCount(),
+          maxSuspendedInstances - stateProcessorFactory.getSuspendedCount()));
+      int nextBatchSize = pollingController.nextBatchSize(capacity, executor.getThreadCount(),
+          executor.getCompletedTaskCount());
+      if (loadBalancing) {
+        nextBatchSize = loadBalancer.limitBatchSize(nextBatchSize, currentLoad(), otherExecutorLoads);
+      }
+      if (nextBatchSize <= 0) {
+        return emptyList();
+      }
+      logger.debug("Polling next {} workflow instances.", nextBatchSize);
+      Set<String> excludedTypes = getSaturatedWorkflowTypes();
+      if (fairShare) {
+        return pollFairShare(nextBatchSize, excludedTypes);
+      }
+      return workflowInstances.pollNextWorkflowInstances(nextBatchSize, index, partitionCount, excludedTypes);
+    }
+
+    /**
+     * Poll the share of the batch allocated to each workflow type separately, so that a flood of one workflow type does not
+     * block the other types. Capacity left unused by workflow types that ran out of ready instances is filled by polling the
+     * remaining workflow types in normal order.
+     */
+    private List<WorkflowInstance> pollFairShare(int batchSize, Set<String> excludedTypes) {
+      Map<String, Integer> weights = new LinkedHashMap<>();
+      for (AbstractWorkflowDefinition<?> definition : workflowDefinitions.getWorkflowDefinitions()) {
+        if (!excludedTypes.contains(definition.getType())) {
+          weights.put(definition.getType(), definition.getSettings().pollingWeight);
+        }
+      }
+      List<WorkflowInstance> instances = new ArrayList<>();
+      Set<String> drainedTypes = new HashSet<>(excludedTypes);
+      for (Entry<String, Integer> allocation : fairShareAllocator.allocate(batchSize, weights).entrySet()) {
+        int allocated = allocation.getValue();
+        if (allocated > 0) {
+          List<WorkflowInstance> polled = workflowInstances.pollNextWorkflowInstancesOfType(allocated, index, partitionCount,
+              allocation.getKey());
+          fairShareAllocator.claimed(allocation.getKey(), allocated, polled.size());
+          instances.addAll(polled);
+          if (polled.size() < allocated) {
+            drainedTypes.add(allocation.getKey());
+          }
+        }
+      }
+      int remaining = batchSize - instances.size();
+      if (remaining > 0) {
+        instances.addAll(workflowInstances.pollNextWorkflowInstances(remaining, index, partitionCount, drainedTypes));
+      }
+      return instances;
+    }
+
+    /**
+     * Start polling the next batch in the background while the executor threads process the queued workflow instances. The
+     * batch is sized to fit in the executor when the in-flight count drops to the notify threshold, so that the results can be
+     * dispatched as soon as the dispatcher wakes up. No prefetch is started after an empty poll.
+     */
+    private void prefetchNextInstances() {
+      if (!lastPollFoundWork || prefetchedInstances != null || !pendingInstances.isEmpty() || shutdownRequested) {
+        return;
+      }
+      if (poller == null) {
+        poller = newSingleThreadExecutor(new CustomizableThreadFactory("nflow-dispatcher-poller-"));
+      }
+      int batchSize = executor.getRemainingCapacityAtThreshold();
+      prefetchedInstances = poller.submit(() -> pollNextInstances(batchSize));
+    }
+
+    private void awaitActivation(long timeoutMillis) {
+      try {
+        if (activationNotifier.awaitActivation(timeoutMillis)) {
+          logger.debug("Workflow instance activation notified.");
+          pollingController.workFound();
+        }
+      } catch (@SuppressWarnings("unused") InterruptedException ok) {
+      }
+    }
+  }
 }
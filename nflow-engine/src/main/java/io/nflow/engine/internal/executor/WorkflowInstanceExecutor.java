@@ -1,62 +1,331 @@
 package io.nflow.engine.internal.executor;
 
+import static java.lang.Math.max;
 import static java.lang.Thread.currentThread;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 
+/**
+ * Executes workflow state processors and tracks the number of submitted state processors that have not finished yet. By
+ * default the state processors are run by a fixed size thread pool with a bounded priority queue. Alternatively, any
+ * application provided executor service can be used, for example a fork-join pool or a virtual-thread-per-task executor. In
+ * both cases the workflow dispatcher uses the in-flight count for back-pressure.
+ */
 public class WorkflowInstanceExecutor {
   private static final Logger logger = getLogger(WorkflowInstanceExecutor.class);
+  private static final Comparator<Runnable> HIGHER_PRIORITY_FIRST = (r1, r2) -> Integer.compare(priority(r2), priority(r1));
 
   private final int awaitTerminationSeconds;
   private final int threadCount;
   final ThreadPoolExecutor executor;
-  final ThresholdBlockingQueue<Runnable> queue;
+  final BoundedPriorityBlockingQueue<Runnable> queue;
+  private final ExecutorService executorService;
+  private final InFlightTracker inFlight;
+  private final Set<InFlightTask> unstarted;
+  private final WorkflowTypeBulkheads bulkheads;
+  private volatile boolean shutdown;
 
+  /**
+   * Create an executor that runs the state processors in a fixed size thread pool. State processors wait for a thread in a
+   * bounded queue, higher priority first.
+   *
+   * @param maxQueueSize The maximum number of queued state processors.
+   * @param threadCount The number of threads.
+   * @param notifyThreshold The queue size at which the waiting dispatcher is notified.
+   * @param awaitTerminationSeconds The maximum time to wait for running state processors on shutdown.
+   * @param keepAliveSeconds The time after which idle threads are stopped, or zero to keep the threads alive.
+   * @param threadFactory The thread factory.
+   */
   public WorkflowInstanceExecutor(int maxQueueSize, int threadCount, int notifyThreshold, int awaitTerminationSeconds,
       int keepAliveSeconds,
       ThreadFactory threadFactory) {
-    queue = new ThresholdBlockingQueue<>(maxQueueSize, notifyThreshold);
+    queue = new BoundedPriorityBlockingQueue<>(maxQueueSize, HIGHER_PRIORITY_FIRST);
     executor = new ThreadPoolExecutor(threadCount, threadCount, keepAliveSeconds, SECONDS, queue, threadFactory);
     executor.allowCoreThreadTimeOut(keepAliveSeconds > 0);
+    this.executorService = executor;
+    this.inFlight = new InFlightTracker(threadCount + maxQueueSize, threadCount + notifyThreshold);
+    this.unstarted = null;
     this.awaitTerminationSeconds = awaitTerminationSeconds;
     this.threadCount = threadCount;
+    this.bulkheads = new WorkflowTypeBulkheads(this::submit);
   }
 
+  /**
+   * Create an executor that runs the state processors in an application provided executor service. The executor service is
+   * not shut down by nFlow. The maximum in-flight count limits how many state processors the dispatcher submits, so it also
+   * bounds the concurrency of executor services that start a thread per task.
+   *
+   * @param executorService The executor service.
+   * @param maxInFlight The number of submitted but unfinished state processors at which the executor is considered full.
+   * @param notifyThreshold The in-flight count at which the waiting dispatcher is notified.
+   * @param awaitTerminationSeconds The maximum time to wait for running state processors on shutdown.
+   */
+  public WorkflowInstanceExecutor(ExecutorService executorService, int maxInFlight, int notifyThreshold,
+      int awaitTerminationSeconds) {
+    this.queue = null;
+    this.executor = null;
+    this.executorService = executorService;
+    this.inFlight = new InFlightTracker(maxInFlight, notifyThreshold);
+    this.unstarted = ConcurrentHashMap.newKeySet();
+    this.awaitTerminationSeconds = awaitTerminationSeconds;
+    this.threadCount = maxInFlight;
+    this.bulkheads = new WorkflowTypeBulkheads(this::submit);
+  }
+
+  /**
+   * Return the number of executor threads, or the maximum in-flight count when an application provided executor service is
+   * used.
+   *
+   * @return The thread count.
+   */
   public int getThreadCount() {
     return threadCount;
   }
 
-  public void waitUntilQueueSizeLowerThanThreshold(DateTime waitUntil) throws InterruptedException {
-    queue.waitUntilQueueSizeLowerThanThreshold(waitUntil);
+  public void waitUntilInFlightLowerThanThreshold(DateTime waitUntil) throws InterruptedException {
+    inFlight.waitUntilInFlightLowerThanThreshold(waitUntil);
+  }
+
+  public void execute(Runnable runnable) {
+    submit(runnable);
   }
 
-  public void wakeUpDispatcherIfNeeded() {
-    queue.notifyIfNotFull();
+  /**
+   * Execute the runnable, or defer it until a runnable of the same workflow type finishes if the workflow type already has the
+   * maximum number of queued and running executions. Deferred runnables do not occupy executor threads or queue capacity.
+   *
+   * @param runnable The runnable to execute.
+   * @param workflowType The workflow type of the runnable.
+   * @param maxConcurrentExecutions The maximum number of concurrent executions of the workflow type, or zero for no limit.
+   */
+  public void execute(Runnable runnable, String workflowType, int maxConcurrentExecutions) {
+    if (maxConcurrentExecutions <= 0) {
+      submit(runnable);
+    } else {
+      bulkheads.execute(runnable, workflowType, maxConcurrentExecutions);
+    }
   }
 
-  public void execute(Runnable runnable) {
-    executor.execute(runnable);
+  private void submit(Runnable runnable) {
+    if (shutdown) {
+      throw new RejectedExecutionException("Workflow instance executor is shut down");
+    }
+    InFlightTask task = new InFlightTask(runnable);
+    inFlight.acquire();
+    if (unstarted != null) {
+      unstarted.add(task);
+    }
+    try {
+      executorService.execute(task);
+    } catch (RejectedExecutionException e) {
+      task.cancel();
+      throw e;
+    }
+  }
+
+  /**
+   * Return the workflow types that have reached their maximum number of concurrent executions.
+   *
+   * @return The saturated workflow types.
+   */
+  public Set<String> getSaturatedWorkflowTypes() {
+    return bulkheads.getSaturatedWorkflowTypes();
+  }
+
+  public int getDeferredCount() {
+    return bulkheads.getDeferredCount();
+  }
+
+  /**
+   * Submit again the deferred state processors that could not be submitted when a state processor of the same workflow type
+   * finished, because the executor was full.
+   */
+  public void resubmitDeferred() {
+    bulkheads.resubmitStalled();
+  }
+
+  /**
+   * Return the number of state processors that can be submitted before the executor is full, based on the number of submitted
+   * state processors that have not finished yet.
+   *
+   * @return The remaining in-flight capacity.
+   */
+  public int getRemainingCapacity() {
+    return inFlight.getRemainingCapacity();
+  }
+
+  /**
+   * Return the number of state processors that can be submitted when the in-flight count has dropped to the notify threshold.
+   *
+   * @return The remaining in-flight capacity at the notify threshold.
+   */
+  public int getRemainingCapacityAtThreshold() {
+    return inFlight.getRemainingCapacityAtThreshold();
+  }
+
+  public int getInFlightCount() {
+    return inFlight.getInFlight();
   }
 
   public int getQueueRemainingCapacity() {
-    return queue.remainingCapacity();
+    return queue != null ? queue.remainingCapacity() : getRemainingCapacity();
   }
 
-  public void shutdown() {
-    executor.shutdown();
+  public int getQueueSize() {
+    return queue != null ? queue.size() : 0;
+  }
+
+  public long getCompletedTaskCount() {
+    return inFlight.getCompletedCount();
+  }
+
+  public int getIdleThreadCount() {
+    if (executor != null) {
+      return executor.getPoolSize() - executor.getActiveCount();
+    }
+    return max(0, threadCount - inFlight.getInFlight());
+  }
+
+  public long getTotalIdleTimeMillis() {
+    return queue != null ? queue.getTotalWaitMillis() : 0;
+  }
+
+  /**
+   * Stop accepting new state processors, remove the queued and deferred state processors that have not been started, and wait
+   * for the running state processors to finish, at most for the configured await termination time.
+   *
+   * @return The workflow instance ids of the state processors that were not started.
+   */
+  public List<Integer> shutdown() {
+    shutdown = true;
+    List<Runnable> unstartedTasks = new ArrayList<>();
     try {
-      if (!executor.awaitTermination(awaitTerminationSeconds, SECONDS)) {
-        logger.warn("Timed out while waiting for executor to terminate");
+      if (executor != null) {
+        executor.shutdown();
+        queue.drainTo(unstartedTasks);
+        if (!executor.awaitTermination(awaitTerminationSeconds, SECONDS)) {
+          logger.warn("Timed out while waiting for executor to terminate");
+        }
+      } else {
+        unstartedTasks.addAll(cancelUnstarted());
+        if (!inFlight.awaitNoneInFlight(SECONDS.toMillis(awaitTerminationSeconds))) {
+          logger.warn("Timed out while waiting for running state processors to finish");
+        }
       }
     } catch (@SuppressWarnings("unused") InterruptedException ex) {
       logger.warn("Interrupted while waiting for executor to terminate");
       currentThread().interrupt();
     }
+    unstartedTasks.addAll(bulkheads.drainDeferred());
+    return instanceIds(unstartedTasks);
+  }
+
+  /**
+   * Remove the queued and deferred state processors that have not been started, without stopping the executor.
+   *
+   * @return The workflow instance ids of the removed state processors.
+   */
+  public List<Integer> drainUnstarted() {
+    List<Runnable> unstartedTasks = bulkheads.drainDeferred();
+    List<Runnable> queued;
+    if (queue != null) {
+      queued = new ArrayList<>();
+      queue.drainTo(queued);
+      for (Runnable task : queued) {
+        ((InFlightTask) task).cancel();
+      }
+    } else {
+      queued = cancelUnstarted();
+    }
+    for (Runnable task : queued) {
+      WorkflowTypeBulkheads.discard(((InFlightTask) task).delegate);
+    }
+    unstartedTasks.addAll(queued);
+    return instanceIds(unstartedTasks);
+  }
+
+  private List<Runnable> cancelUnstarted() {
+    List<Runnable> cancelled = new ArrayList<>();
+    for (InFlightTask task : unstarted) {
+      if (task.cancel()) {
+        cancelled.add(task);
+      }
+    }
+    return cancelled;
+  }
+
+  private static List<Integer> instanceIds(List<Runnable> tasks) {
+    List<Integer> instanceIds = new ArrayList<>(tasks.size());
+    for (Runnable task : tasks) {
+      Runnable runnable = unwrap(task);
+      if (runnable instanceof WorkflowStateProcessor) {
+        instanceIds.add(((WorkflowStateProcessor) runnable).getInstanceId());
+      }
+    }
+    return instanceIds;
+  }
+
+  private static Runnable unwrap(Runnable task) {
+    Runnable runnable = task instanceof InFlightTask ? ((InFlightTask) task).delegate : task;
+    return WorkflowTypeBulkheads.unwrap(runnable);
+  }
+
+  private static int priority(Runnable task) {
+    Runnable runnable = unwrap(task);
+    return runnable instanceof WorkflowStateProcessor ? ((WorkflowStateProcessor) runnable).getPriority() : 0;
+  }
+
+  /**
+   * Releases the in-flight slot when the state processor finishes. A task that has been cancelled before it was started is not
+   * run, so state processors that were handed to an application provided executor service can be taken back.
+   */
+  private class InFlightTask implements Runnable {
+    final Runnable delegate;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    InFlightTask(Runnable delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void run() {
+      if (!claimed.compareAndSet(false, true)) {
+        return;
+      }
+      if (unstarted != null) {
+        unstarted.remove(this);
+      }
+      try {
+        delegate.run();
+      } finally {
+        inFlight.complete();
+        bulkheads.resubmitStalled();
+      }
+    }
+
+    boolean cancel() {
+      if (!claimed.compareAndSet(false, true)) {
+        return false;
+      }
+      if (unstarted != null) {
+        unstarted.remove(this);
+      }
+      inFlight.discard();
+      return true;
+    }
   }
 }
@@ -6,22 +6,27 @@ import static io.nflow.engine.workflow.instance.WorkflowInstance.WorkflowInstanc
 import static io.nflow.engine.workflow.instance.WorkflowInstance.WorkflowInstanceStatus.inProgress;
 import static io.nflow.engine.workflow.instance.WorkflowInstanceAction.WorkflowActionType.stateExecution;
 import static io.nflow.engine.workflow.instance.WorkflowInstanceAction.WorkflowActionType.stateExecutionFailed;
+import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
-import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.lang3.exception.ExceptionUtils.getStackTrace;
 import static org.joda.time.DateTime.now;
 import static org.joda.time.DateTimeUtils.currentTimeMillis;
 import static org.joda.time.Duration.standardMinutes;
 import static org.slf4j.LoggerFactory.getLogger;
-import static org.springframework.util.ReflectionUtils.invokeMethod;
+import static org.springframework.util.ReflectionUtils.rethrowRuntimeException;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
@@ -31,12 +36,13 @@ import org.springframework.core.env.Environment;
 import org.springframework.util.Assert;
 
 import io.nflow.engine.internal.dao.WorkflowInstanceDao;
+import io.nflow.engine.internal.executor.WorkflowTypeBulkheads.Slot;
 import io.nflow.engine.internal.util.PeriodicLogger;
+import io.nflow.engine.internal.workflow.LazyStateVariables;
 import io.nflow.engine.internal.workflow.ObjectStringMapper;
 import io.nflow.engine.internal.workflow.StateExecutionImpl;
 import io.nflow.engine.internal.workflow.WorkflowInstancePreProcessor;
 import io.nflow.engine.internal.workflow.WorkflowStateMethod;
-import io.nflow.engine.listener.AbstractWorkflowExecutorListener;
 import io.nflow.engine.listener.ListenerChain;
 import io.nflow.engine.listener.WorkflowExecutorListener;
 import io.nflow.engine.listener.WorkflowExecutorListener.ListenerContext;
@@ -56,22 +62,32 @@ class WorkflowStateProcessor implements Runnable {
 
   static final Logger logger = getLogger(WorkflowStateProcessor.class);
   private static final PeriodicLogger laggingLogger = new PeriodicLogger(logger, 30);
-  private static final PeriodicLogger threadStuckLogger = new PeriodicLogger(logger, 60);
   private static final String MDC_KEY = "workflowInstanceId";
 
   private final int instanceId;
+  private final short priority;
+  private WorkflowInstance loadedInstance;
   private final WorkflowDefinitionService workflowDefinitions;
   private final WorkflowInstanceService workflowInstances;
   private final WorkflowInstancePreProcessor workflowInstancePreProcessor;
   final ObjectStringMapper objectMapper;
   private final WorkflowInstanceDao workflowInstanceDao;
-  private final List<WorkflowExecutorListener> executorListeners;
+  private final ListenerPipelines listenerPipelines;
   final String illegalStateChangeAction;
   private final int unknownWorkflowTypeRetryDelay;
   private final int unknownWorkflowStateRetryDelay;
   private final int stateSaveRetryDelay;
   private boolean stateSaveRetryEnabled = true;
   private final Map<Integer, WorkflowStateProcessor> processingInstances;
+  private final LocalContinuationScheduler localContinuations;
+  private final StateProcessorWatchdog watchdog;
+  private final long localContinuationMaxMillis;
+  private final long asyncStateTimeoutMillis;
+  private final LazyStateVariables lazyStateVariables;
+  private int maxConcurrentExecutions;
+  private boolean continueLocally;
+  private StateIteration suspended;
+  private Slot heldSlot;
   private long startTimeSeconds;
   private Thread thread;
 
@@ -79,22 +95,50 @@ class WorkflowStateProcessor implements Runnable {
       WorkflowInstanceService workflowInstances, WorkflowInstanceDao workflowInstanceDao,
       WorkflowInstancePreProcessor workflowInstancePreProcessor, Environment env,
       Map<Integer, WorkflowStateProcessor> processingInstances, WorkflowExecutorListener... executorListeners) {
+    this(instanceId, null, objectMapper, workflowDefinitions, workflowInstances, workflowInstanceDao,
+        workflowInstancePreProcessor, env, processingInstances, null, executorListeners);
+  }
+
+  WorkflowStateProcessor(int instanceId, WorkflowInstance loadedInstance, ObjectStringMapper objectMapper,
+      WorkflowDefinitionService workflowDefinitions, WorkflowInstanceService workflowInstances,
+      WorkflowInstanceDao workflowInstanceDao, WorkflowInstancePreProcessor workflowInstancePreProcessor, Environment env,
+      Map<Integer, WorkflowStateProcessor> processingInstances, LocalContinuationScheduler localContinuations,
+      WorkflowExecutorListener... executorListeners) {
+    this(instanceId, loadedInstance, objectMapper, workflowDefinitions, workflowInstances, workflowInstanceDao,
+        workflowInstancePreProcessor, env, processingInstances, localContinuations, null,
+        new ListenerPipelines(executorListeners));
+  }
+
+  WorkflowStateProcessor(int instanceId, WorkflowInstance loadedInstance, ObjectStringMapper objectMapper,
+      WorkflowDefinitionService workflowDefinitions, WorkflowInstanceService workflowInstances,
+      WorkflowInstanceDao workflowInstanceDao, WorkflowInstancePreProcessor workflowInstancePreProcessor, Environment env,
+      Map<Integer, WorkflowStateProcessor> processingInstances, LocalContinuationScheduler localContinuations,
+      StateProcessorWatchdog watchdog, ListenerPipelines listenerPipelines) {
     this.instanceId = instanceId;
+    this.priority = loadedInstance == null ? 0 : loadedInstance.priority;
+    this.loadedInstance = loadedInstance;
     this.objectMapper = objectMapper;
     this.workflowDefinitions = workflowDefinitions;
     this.workflowInstances = workflowInstances;
     this.workflowInstanceDao = workflowInstanceDao;
     this.processingInstances = processingInstances;
-    this.executorListeners = asList(executorListeners);
+    this.localContinuations = localContinuations;
+    this.watchdog = watchdog;
+    this.listenerPipelines = listenerPipelines;
     this.workflowInstancePreProcessor = workflowInstancePreProcessor;
     illegalStateChangeAction = env.getRequiredProperty("nflow.illegal.state.change.action");
     unknownWorkflowTypeRetryDelay = env.getRequiredProperty("nflow.unknown.workflow.type.retry.delay.minutes", Integer.class);
     unknownWorkflowStateRetryDelay = env.getRequiredProperty("nflow.unknown.workflow.state.retry.delay.minutes", Integer.class);
     stateSaveRetryDelay = env.getRequiredProperty("nflow.executor.stateSaveRetryDelay.seconds", Integer.class);
+    localContinuationMaxMillis = env.getRequiredProperty("nflow.executor.localContinuation.max.ms", Long.class);
+    asyncStateTimeoutMillis = SECONDS.toMillis(env.getRequiredProperty("nflow.executor.asyncState.timeout.seconds", Long.class));
+    lazyStateVariables = env.getRequiredProperty("nflow.executor.stateVariables.lazy", Boolean.class)
+        ? new LazyStateVariables(workflowInstanceDao) : null;
   }
 
   @Override
   public void run() {
+    long startNanos = nanoTime();
     try {
       MDC.put(MDC_KEY, String.valueOf(instanceId));
       startTimeSeconds = currentTimeMillis() / 1000;
@@ -105,60 +149,128 @@ class WorkflowStateProcessor implements Runnable {
       logger.error("Unexpected failure occurred", ex);
     } finally {
       processingInstances.remove(instanceId);
+      if (watchdog != null) {
+        watchdog.recordProcessingTime(NANOSECONDS.toMillis(nanoTime() - startNanos));
+      }
       MDC.remove(MDC_KEY);
     }
+    if (continueLocally) {
+      continueLocally = false;
+      localContinuations.schedule(this, loadedInstance.type, maxConcurrentExecutions,
+          loadedInstance.nextActivation.getMillis() - currentTimeMillis());
+    } else if (suspended != null) {
+      StateIteration iteration = suspended;
+      localContinuations.resumeWhenComplete(this, iteration.stage, iteration.instance.type, maxConcurrentExecutions,
+          asyncStateTimeoutMillis);
+    }
   }
 
   private void runImpl() {
     logger.debug("Starting.");
-    WorkflowInstance instance = workflowInstances.getWorkflowInstance(instanceId,
-        EnumSet.of(WorkflowInstanceInclude.CHILD_WORKFLOW_IDS, WorkflowInstanceInclude.CURRENT_STATE_VARIABLES,
-            WorkflowInstanceInclude.STARTED),
-        null);
-    logIfLagging(instance);
-    AbstractWorkflowDefinition<? extends WorkflowState> definition = workflowDefinitions.getWorkflowDefinition(instance.type);
-    if (definition == null) {
-      rescheduleUnknownWorkflowType(instance);
-      return;
-    }
-    WorkflowSettings settings = definition.getSettings();
+    StateIteration iteration = suspended;
+    suspended = null;
+    WorkflowInstance instance;
+    AbstractWorkflowDefinition<? extends WorkflowState> definition;
     int subsequentStateExecutions = 0;
-    while (instance.status == executing) {
-      StateExecutionImpl execution = new StateExecutionImpl(instance, objectMapper, workflowInstanceDao,
-          workflowInstancePreProcessor, workflowInstances);
-      ListenerContext listenerContext = new ListenerContext(definition, instance, execution);
-      WorkflowInstanceAction.Builder actionBuilder = new WorkflowInstanceAction.Builder(instance);
-      WorkflowState state;
-      try {
-        state = definition.getState(instance.state);
-      } catch (@SuppressWarnings("unused") IllegalStateException e) {
-        rescheduleUnknownWorkflowState(instance);
+    if (iteration != null) {
+      logger.debug("Resuming after asynchronous state method.");
+      instance = iteration.instance;
+      definition = iteration.definition;
+      subsequentStateExecutions = iteration.subsequentStateExecutions;
+    } else {
+      instance = loadedInstance;
+      loadedInstance = null;
+      if (instance == null) {
+        EnumSet<WorkflowInstanceInclude> includes = EnumSet.of(WorkflowInstanceInclude.CHILD_WORKFLOW_IDS,
+            WorkflowInstanceInclude.CURRENT_STATE_VARIABLES, WorkflowInstanceInclude.STARTED);
+        if (lazyStateVariables != null) {
+          includes.remove(WorkflowInstanceInclude.CURRENT_STATE_VARIABLES);
+        }
+        instance = workflowInstances.getWorkflowInstance(instanceId, includes, null);
+      }
+      logIfLagging(instance);
+      definition = workflowDefinitions.getWorkflowDefinition(instance.type);
+      if (definition == null) {
+        rescheduleUnknownWorkflowType(instance);
         return;
       }
-
-      try {
-        processBeforeListeners(listenerContext);
-        listenerContext.nextAction = processWithListeners(listenerContext, instance, definition, execution, state);
-      } catch (Throwable t) {
-        execution.setFailed(t);
-        logger.error("Handler threw exception, trying again later.", t);
-        execution.setRetry(true);
-        execution.setNextState(state);
-        execution.setNextStateReason(getStackTrace(t));
-        handleRetry(execution, definition);
-      } finally {
-        if (execution.isFailed()) {
-          processAfterFailureListeners(listenerContext, execution.getThrown());
-        } else {
-          processAfterListeners(listenerContext);
+    }
+    WorkflowSettings settings = definition.getSettings();
+    while (instance.status == executing) {
+      if (iteration != null) {
+        iteration.resume();
+      } else {
+        WorkflowState state;
+        try {
+          state = definition.getState(instance.state);
+        } catch (@SuppressWarnings("unused") IllegalStateException e) {
+          rescheduleUnknownWorkflowState(instance);
+          return;
+        }
+        iteration = new StateIteration(instance, definition, state);
+        if (!iteration.start()) {
+          if (localContinuations == null) {
+            iteration.awaitCompletion(asyncStateTimeoutMillis);
+            iteration.resume();
+          } else {
+            logger.debug("Waiting for asynchronous state method to complete.");
+            iteration.subsequentStateExecutions = subsequentStateExecutions;
+            maxConcurrentExecutions = settings.maxConcurrentExecutions;
+            // keep the concurrency slot of the workflow type while the state method is running
+            heldSlot = WorkflowTypeBulkheads.holdCurrentSlot();
+            suspended = iteration;
+            return;
+          }
         }
-        subsequentStateExecutions = busyLoopPrevention(state, settings, subsequentStateExecutions, execution);
-        instance = saveWorkflowInstanceState(execution, instance, definition, actionBuilder);
+      }
+      iteration.afterProcessing();
+      subsequentStateExecutions = busyLoopPrevention(iteration.state, settings, subsequentStateExecutions,
+          iteration.execution);
+      instance = saveWorkflowInstanceState(iteration.execution, instance, definition, iteration.actionBuilder);
+      iteration = null;
+      if (instance.status == executing && instance.nextActivation != null && instance.nextActivation.isAfterNow()) {
+        logger.debug("Continuing locally at {}.", instance.nextActivation);
+        loadedInstance = instance;
+        maxConcurrentExecutions = settings.maxConcurrentExecutions;
+        continueLocally = true;
+        return;
       }
     }
     logger.debug("Finished.");
   }
 
+  /**
+   * Return the concurrency slot that this state processor holds while waiting for an asynchronous state method, and stop
+   * holding it.
+   *
+   * @return The held slot, or null if the workflow type has no concurrency limit.
+   */
+  Slot takeHeldSlot() {
+    Slot slot = heldSlot;
+    heldSlot = null;
+    return slot;
+  }
+
+  /**
+   * Called when the asynchronous state method that suspended this state processor completes.
+   *
+   * @param result The value of the completion stage.
+   * @param failure The exception that completed the completion stage, or null if the stage completed normally.
+   */
+  void asyncStateMethodCompleted(Object result, Throwable failure) {
+    suspended.complete(result, failure);
+  }
+
+  /**
+   * Called when the asynchronous state method that suspended this state processor did not complete in time. The completion
+   * stage is cancelled if possible, and the state execution fails.
+   *
+   * @param timeoutMillis The timeout in milliseconds.
+   */
+  void asyncStateMethodTimedOut(long timeoutMillis) {
+    suspended.timedOut(timeoutMillis);
+  }
+
   void logIfLagging(WorkflowInstance instance) {
     Duration executionLag = new Duration(instance.nextActivation, now());
     if (executionLag.isLongerThan(standardMinutes(1))) {
@@ -271,12 +383,24 @@ class WorkflowStateProcessor implements Runnable {
   }
 
   private WorkflowInstanceStatus getStatus(StateExecutionImpl execution, WorkflowState nextState) {
-    if (isNextActivationImmediately(execution)) {
+    if (isNextActivationImmediately(execution) || isContinuedLocally(execution, nextState)) {
       return executing;
     }
     return nextState.getType().getStatus(execution.getNextActivation());
   }
 
+  /**
+   * Workflow instances scheduled to continue within the local continuation window are kept claimed by this executor and
+   * resumed from a local timer. Instances that created child workflows are released, because finishing child workflows wake up
+   * the parent workflow through the database.
+   */
+  private boolean isContinuedLocally(StateExecutionImpl execution, WorkflowState nextState) {
+    DateTime nextActivation = execution.getNextActivation();
+    return localContinuations != null && localContinuationMaxMillis > 0 && execution.isStateProcessInvoked()
+        && !execution.isFailed() && nextActivation != null && nextActivation.isBefore(now().plus(localContinuationMaxMillis))
+        && nextState.getType().getStatus(nextActivation) == inProgress && execution.getNewChildWorkflows().isEmpty();
+  }
+
   private WorkflowActionType getActionType(StateExecutionImpl execution) {
     return execution.isFailed() || execution.isRetryCountExceeded() ? stateExecutionFailed : stateExecution;
   }
@@ -286,65 +410,200 @@ class WorkflowStateProcessor implements Runnable {
         && !execution.getNextActivation().isAfterNow();
   }
 
-  private NextAction processWithListeners(ListenerContext listenerContext, WorkflowInstance instance,
-      AbstractWorkflowDefinition<? extends WorkflowState> definition, StateExecutionImpl execution, WorkflowState state) {
-    ProcessingExecutorListener processingListener = new ProcessingExecutorListener(instance, definition, execution, state);
-    List<WorkflowExecutorListener> chain = new ArrayList<>(executorListeners.size() + 1);
-    chain.addAll(executorListeners);
-    chain.add(processingListener);
-    NextAction nextAction = new ExecutorListenerChain(chain).next(listenerContext);
-    if (execution.isStateProcessInvoked()) {
+  private NextAction processWithListeners(StateIteration iteration) {
+    NextAction nextAction = iteration.next(iteration.listenerContext);
+    if (iteration.execution.isStateProcessInvoked()) {
       return nextAction;
     }
-    return new SkippedStateHandler(nextAction, instance, definition, execution, state).processState();
+    return new SkippedStateHandler(nextAction, iteration.instance, iteration.definition, iteration.execution, iteration.state)
+        .processState();
   }
 
-  static class ExecutorListenerChain implements ListenerChain {
-    private final Iterator<WorkflowExecutorListener> chain;
+  /**
+   * Execution of one workflow state. If the state method is asynchronous, the state execution is suspended until the returned
+   * completion stage completes, and the executor thread is released. The workflow instance stays claimed by this executor
+   * while the state execution is suspended. The state iteration is also the listener chain of the state execution.
+   */
+  private class StateIteration implements ListenerChain {
+    final WorkflowInstance instance;
+    final AbstractWorkflowDefinition<? extends WorkflowState> definition;
+    final WorkflowState state;
+    final StateExecutionImpl execution;
+    final ListenerContext listenerContext;
+    final ListenerPipeline listeners;
+    final WorkflowInstanceAction.Builder actionBuilder;
+    int subsequentStateExecutions;
+    int chainPosition;
+    CompletionStage<?> stage;
+    Object[] args;
+    Object result;
+    Throwable failure;
+
+    StateIteration(WorkflowInstance instance, AbstractWorkflowDefinition<? extends WorkflowState> definition,
+        WorkflowState state) {
+      this.instance = instance;
+      this.definition = definition;
+      this.state = state;
+      this.execution = new StateExecutionImpl(instance, objectMapper, workflowInstanceDao, workflowInstancePreProcessor,
+          workflowInstances, lazyStateVariables);
+      this.listenerContext = new ListenerContext(definition, instance, execution);
+      this.listeners = listenerPipelines.get(definition);
+      this.actionBuilder = new WorkflowInstanceAction.Builder(instance);
+    }
 
-    ExecutorListenerChain(List<WorkflowExecutorListener> chain) {
-      this.chain = chain.iterator();
+    /**
+     * Process the state with the listeners.
+     *
+     * @return True if the state execution finished, false if it is waiting for an asynchronous state method.
+     */
+    boolean start() {
+      try {
+        if (lazyStateVariables != null) {
+          lazyStateVariables.prefetch(instance, definition.getMethod(state.name()));
+        }
+        listeners.beforeProcessing(listenerContext);
+        listenerContext.nextAction = processWithListeners(this);
+      } catch (Throwable t) {
+        stage = null;
+        fail(t);
+      }
+      if (stage instanceof Future && ((Future<?>) stage).isDone()) {
+        awaitCompletion(0);
+        resume();
+      }
+      return stage == null;
     }
 
+    /**
+     * Call the next listener in the chain, or process the state after the last listener.
+     */
     @Override
     public NextAction next(ListenerContext context) {
-      Assert.isTrue(chain.hasNext(), "Ran out of listeners in listener chain. The last listener must not call "
-          + this.getClass().getSimpleName() + ".next().");
-      return chain.next().process(context, this);
+      int position = chainPosition++;
+      if (position < listeners.processors.length) {
+        return listeners.processors[position].process(context, this);
+      }
+      Assert.isTrue(position == listeners.processors.length,
+          "Ran out of listeners in listener chain. The last listener must not call ListenerChain.next().");
+      return new NormalStateHandler(this).processState();
     }
-  }
 
-  private class ProcessingExecutorListener extends AbstractWorkflowExecutorListener {
-    private final WorkflowInstance instance;
-    private final AbstractWorkflowDefinition<? extends WorkflowState> definition;
-    private final StateExecutionImpl execution;
-    private final WorkflowState state;
+    void suspend(CompletionStage<?> completionStage, Object[] arguments) {
+      stage = completionStage;
+      args = arguments;
+    }
 
-    public ProcessingExecutorListener(WorkflowInstance instance, AbstractWorkflowDefinition<? extends WorkflowState> definition,
-        StateExecutionImpl execution, WorkflowState state) {
-      this.instance = instance;
-      this.definition = definition;
-      this.execution = execution;
-      this.state = state;
+    void complete(Object value, Throwable thrown) {
+      result = value;
+      failure = thrown instanceof CompletionException && thrown.getCause() != null ? thrown.getCause() : thrown;
     }
 
-    @Override
-    public NextAction process(ListenerContext listenerContext, ListenerChain chain) {
-      return new NormalStateHandler(instance, definition, execution, state).processState();
+    void timedOut(long timeoutMillis) {
+      if (stage instanceof Future) {
+        ((Future<?>) stage).cancel(true);
+      }
+      complete(null, new IllegalStateException("Asynchronous state method did not complete in " + timeoutMillis + " ms"));
+    }
+
+    /**
+     * Wait for the asynchronous state method in the current thread.
+     */
+    void awaitCompletion(long timeoutMillis) {
+      try {
+        complete(stage.toCompletableFuture().get(timeoutMillis, MILLISECONDS), null);
+      } catch (ExecutionException e) {
+        complete(null, e.getCause());
+      } catch (@SuppressWarnings("unused") TimeoutException e) {
+        timedOut(timeoutMillis);
+      } catch (InterruptedException e) {
+        currentThread().interrupt();
+        complete(null, e);
+      } catch (RuntimeException e) {
+        complete(null, e);
+      }
+    }
+
+    /**
+     * Process the result of the asynchronous state method.
+     */
+    void resume() {
+      stage = null;
+      try {
+        listenerContext.nextAction = new AsyncResultStateHandler(this).processState();
+      } catch (Throwable t) {
+        fail(t);
+      }
+    }
+
+    void afterProcessing() {
+      if (execution.isFailed()) {
+        listeners.afterFailure(listenerContext, execution.getThrown());
+      } else {
+        listeners.afterProcessing(listenerContext);
+      }
+    }
+
+    private void fail(Throwable t) {
+      execution.setFailed(t);
+      logger.error("Handler threw exception, trying again later.", t);
+      execution.setRetry(true);
+      execution.setNextState(state);
+      execution.setNextStateReason(getStackTrace(t));
+      handleRetry(execution, definition);
     }
   }
 
   private class NormalStateHandler extends StateHandler {
+    private final StateIteration iteration;
 
-    public NormalStateHandler(WorkflowInstance instance, AbstractWorkflowDefinition<?> definition, StateExecutionImpl execution,
-        WorkflowState currentState) {
-      super(instance, definition, execution, currentState);
+    public NormalStateHandler(StateIteration iteration) {
+      super(iteration.instance, iteration.definition, iteration.execution, iteration.state);
+      this.iteration = iteration;
+    }
+
+    /**
+     * Invoke an asynchronous state method and suspend the state execution without processing the next action. The next action
+     * is processed by AsyncResultStateHandler when the completion stage completes.
+     */
+    @Override
+    public NextAction processState() {
+      WorkflowStateMethod method = definition.getMethod(instance.state);
+      if (method == null || !method.async) {
+        return super.processState();
+      }
+      Object[] args = objectMapper.createArguments(execution, method);
+      execution.setStateProcessInvoked(true);
+      CompletionStage<?> stage = (CompletionStage<?>) method.invoke(definition, args);
+      iteration.suspend(stage == null ? completedFuture(null) : stage, args);
+      return null;
     }
 
     @Override
     protected NextAction getNextAction(WorkflowStateMethod method, Object... args) {
       execution.setStateProcessInvoked(true);
-      return (NextAction) invokeMethod(method.method, definition, args);
+      return (NextAction) method.invoke(definition, args);
+    }
+  }
+
+  private class AsyncResultStateHandler extends StateHandler {
+    private final StateIteration iteration;
+
+    public AsyncResultStateHandler(StateIteration iteration) {
+      super(iteration.instance, iteration.definition, iteration.execution, iteration.state);
+      this.iteration = iteration;
+    }
+
+    @Override
+    protected Object[] createArguments(WorkflowStateMethod method) {
+      return iteration.args;
+    }
+
+    @Override
+    protected NextAction getNextAction(WorkflowStateMethod method, Object... args) {
+      if (iteration.failure != null) {
+        rethrowRuntimeException(iteration.failure);
+      }
+      return iteration.result instanceof NextAction ? (NextAction) iteration.result : null;
     }
   }
 
@@ -379,6 +638,10 @@ class WorkflowStateProcessor implements Runnable {
 
     protected abstract NextAction getNextAction(WorkflowStateMethod method, Object... args);
 
+    protected Object[] createArguments(WorkflowStateMethod method) {
+      return objectMapper.createArguments(execution, method);
+    }
+
     public NextAction processState() {
       WorkflowStateMethod method = definition.getMethod(instance.state);
       if (method == null) {
@@ -386,7 +649,7 @@ class WorkflowStateProcessor implements Runnable {
         return stopInState(currentState, "Execution finished.");
       }
       NextAction nextAction;
-      Object[] args = objectMapper.createArguments(execution, method);
+      Object[] args = createArguments(method);
       if (currentState.getType().isFinal()) {
         getNextAction(method, args);
         nextAction = stopInState(currentState, "Stopped in final state");
@@ -497,43 +760,34 @@ class WorkflowStateProcessor implements Runnable {
     }
   }
 
-  private void processBeforeListeners(ListenerContext listenerContext) {
-    for (WorkflowExecutorListener listener : executorListeners) {
-      try {
-        listener.beforeProcessing(listenerContext);
-      } catch (Throwable t) {
-        logger.error("Error in " + listener.getClass().getName() + ".beforeProcessing (" + t.getMessage() + ")", t);
-      }
-    }
-  }
-
-  private void processAfterListeners(ListenerContext listenerContext) {
-    for (WorkflowExecutorListener listener : executorListeners) {
-      try {
-        listener.afterProcessing(listenerContext);
-      } catch (Throwable t) {
-        logger.error("Error in " + listener.getClass().getName() + ".afterProcessing (" + t.getMessage() + ")", t);
-      }
-    }
-  }
-
-  private void processAfterFailureListeners(ListenerContext listenerContext, Throwable ex) {
-    for (WorkflowExecutorListener listener : executorListeners) {
-      try {
-        listener.afterFailure(listenerContext, ex);
-      } catch (Throwable t) {
-        logger.error("Error in " + listener.getClass().getName() + ".afterFailure (" + t.getMessage() + ")", t);
-      }
-    }
+  int getInstanceId() {
+    return instanceId;
   }
 
   public long getStartTimeSeconds() {
     return startTimeSeconds;
   }
 
-  public void logPotentiallyStuck(long processingTimeSeconds) {
-    threadStuckLogger.warn("Workflow instance {} has been processed for {} seconds, it may be stuck.\n{}", instanceId,
-        processingTimeSeconds, getStackTraceAsString());
+  /**
+   * Return the priority of the workflow instance, if it was loaded before the processor was created.
+   *
+   * @return The priority of the workflow instance, or 0 if the instance was not loaded.
+   */
+  public short getPriority() {
+    return priority;
+  }
+
+  /**
+   * Log a warning with the stack trace of the state processor thread.
+   *
+   * @param processingTimeSeconds The processing time of the workflow instance.
+   * @return The stack trace of the state processor thread.
+   */
+  public String logPotentiallyStuck(long processingTimeSeconds) {
+    String stackTrace = getStackTraceAsString().toString();
+    logger.warn("Workflow instance {} has been processed for {} seconds, it may be stuck.\n{}", instanceId,
+        processingTimeSeconds, stackTrace);
+    return stackTrace;
   }
 
   private StringBuilder getStackTraceAsString() {
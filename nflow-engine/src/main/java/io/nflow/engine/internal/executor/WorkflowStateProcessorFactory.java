@@ -2,6 +2,7 @@ package io.nflow.engine.internal.executor;
 
 import static org.joda.time.DateTimeUtils.currentTimeMillis;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -11,12 +12,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+import io.nflow.engine.internal.dao.ExecutorDao;
 import io.nflow.engine.internal.dao.WorkflowInstanceDao;
 import io.nflow.engine.internal.workflow.ObjectStringMapper;
 import io.nflow.engine.internal.workflow.WorkflowInstancePreProcessor;
 import io.nflow.engine.listener.WorkflowExecutorListener;
 import io.nflow.engine.service.WorkflowDefinitionService;
 import io.nflow.engine.service.WorkflowInstanceService;
+import io.nflow.engine.workflow.executor.LongRunningStateProcessor;
+import io.nflow.engine.workflow.executor.ProcessingTimeHistogram;
+import io.nflow.engine.workflow.instance.WorkflowInstance;
 
 @Component
 public class WorkflowStateProcessorFactory {
@@ -29,37 +34,105 @@ public class WorkflowStateProcessorFactory {
   @Autowired(required = false)
   protected WorkflowExecutorListener[] listeners = new WorkflowExecutorListener[0];
   final Map<Integer, WorkflowStateProcessor> processingInstances = new ConcurrentHashMap<>();
-  private final int stuckThreadThresholdSeconds;
+  private final LocalContinuationScheduler localContinuations;
+  private final StateProcessorWatchdog watchdog;
+  private volatile ListenerPipelines listenerPipelines;
 
   @Inject
   public WorkflowStateProcessorFactory(WorkflowDefinitionService workflowDefinitions, WorkflowInstanceService workflowInstances,
       ObjectStringMapper objectMapper, WorkflowInstanceDao workflowInstanceDao,
-      WorkflowInstancePreProcessor workflowInstancePreProcessor, Environment env) {
+      WorkflowInstancePreProcessor workflowInstancePreProcessor, WorkflowInstanceExecutor executor, ExecutorDao executorDao,
+      Environment env) {
     this.workflowDefinitions = workflowDefinitions;
     this.workflowInstances = workflowInstances;
     this.objectMapper = objectMapper;
     this.workflowInstanceDao = workflowInstanceDao;
     this.workflowInstancePreProcessor = workflowInstancePreProcessor;
-    this.stuckThreadThresholdSeconds = env.getRequiredProperty("nflow.executor.stuckThreadThreshold.seconds", Integer.class);
+    this.watchdog = new StateProcessorWatchdog(processingInstances,
+        env.getRequiredProperty("nflow.executor.stuckThreadThreshold.seconds", Integer.class));
     this.env = env;
+    this.localContinuations = new LocalContinuationScheduler(executor, workflowInstanceDao, executorDao);
   }
 
   public WorkflowStateProcessor createProcessor(int instanceId) {
-    return new WorkflowStateProcessor(instanceId, objectMapper, workflowDefinitions, workflowInstances, workflowInstanceDao,
-        workflowInstancePreProcessor, env, processingInstances, listeners);
+    return new WorkflowStateProcessor(instanceId, null, objectMapper, workflowDefinitions, workflowInstances,
+        workflowInstanceDao, workflowInstancePreProcessor, env, processingInstances, null, watchdog, listenerPipelines());
   }
 
-  public int getPotentiallyStuckProcessors() {
-    long currentTimeSeconds = currentTimeMillis() / 1000;
-    int potentiallyStuck = 0;
-    for (WorkflowStateProcessor processor : processingInstances.values()) {
-      long processingTimeSeconds = currentTimeSeconds - processor.getStartTimeSeconds();
-      if (processingTimeSeconds > stuckThreadThresholdSeconds) {
-        potentiallyStuck++;
-        processor.logPotentiallyStuck(processingTimeSeconds);
-      }
+  public WorkflowStateProcessor createProcessor(WorkflowInstance instance) {
+    return new WorkflowStateProcessor(instance.id, instance, objectMapper, workflowDefinitions, workflowInstances,
+        workflowInstanceDao, workflowInstancePreProcessor, env, processingInstances, localContinuations,
+        watchdog, listenerPipelines());
+  }
+
+  private ListenerPipelines listenerPipelines() {
+    ListenerPipelines pipelines = listenerPipelines;
+    if (pipelines == null || !pipelines.isFor(listeners)) {
+      pipelines = new ListenerPipelines(listeners);
+      listenerPipelines = pipelines;
     }
-    return potentiallyStuck;
+    return pipelines;
+  }
+
+  /**
+   * Create a state processor for a workflow instance claimed before its next activation time, and submit it to the executor
+   * when the next activation time is reached.
+   *
+   * @param instance The claimed workflow instance.
+   * @param maxConcurrentExecutions The maximum number of concurrent executions of the workflow type, or zero for no limit.
+   */
+  public void scheduleProcessor(WorkflowInstance instance, int maxConcurrentExecutions) {
+    localContinuations.schedule(createProcessor(instance), instance.type, maxConcurrentExecutions,
+        instance.nextActivation.getMillis() - currentTimeMillis());
+  }
+
+  /**
+   * Stop starting workflow instances that wait for their next activation in this nFlow instance.
+   *
+   * @return The ids of the claimed workflow instances that were not started.
+   */
+  public List<Integer> stopLocalContinuations() {
+    return localContinuations.shutdown();
+  }
+
+  public int getLocalContinuationCount() {
+    return localContinuations.getScheduledCount();
   }
 
+  /**
+   * Return the number of workflow instances that wait for an asynchronous state method in this nFlow instance.
+   *
+   * @return The number of suspended workflow instances.
+   */
+  public int getSuspendedCount() {
+    return localContinuations.getSuspendedCount();
+  }
+
+  /**
+   * Check the processing times of the running state processors. Called periodically by the watchdog thread of the workflow
+   * dispatcher.
+   *
+   * @return The number of state processors that have been processing longer than the stuck thread threshold.
+   */
+  public int getPotentiallyStuckProcessors() {
+    return watchdog.check();
+  }
+
+  /**
+   * Return the state processors that were processing longer than the stuck thread threshold in the latest watchdog check.
+   *
+   * @return The long running state processors.
+   */
+  public List<LongRunningStateProcessor> getLongRunningStateProcessors() {
+    return watchdog.getLongRunningStateProcessors();
+  }
+
+  /**
+   * Return the processing times of the state processor executions that have finished since this factory was created.
+   *
+   * @return The processing time histogram.
+   */
+  public ProcessingTimeHistogram getProcessingTimeHistogram() {
+    return watchdog.getProcessingTimeHistogram();
+  }
 }
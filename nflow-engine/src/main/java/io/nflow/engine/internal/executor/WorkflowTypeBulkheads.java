@@ -0,0 +1,300 @@
+package io.nflow.engine.internal.executor;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+
+/**
+ * Limits the number of queued and running state processors of each workflow type. Processors that exceed the limit of their
+ * workflow type are deferred without occupying executor threads or queue slots, and they are submitted to the executor when a
+ * processor of the same workflow type finishes. If the executor rejects a deferred processor, the concurrency slot stays reserved
+ * for it and it is submitted again when executor capacity is freed. A state processor that suspends while waiting for an
+ * asynchronous state method can hold its slot until it is resumed.
+ */
+class WorkflowTypeBulkheads {
+  private static final Logger logger = getLogger(WorkflowTypeBulkheads.class);
+  private static final ThreadLocal<BulkheadTask> currentTask = new ThreadLocal<>();
+
+  private final Executor executor;
+  private final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+  private final AtomicInteger stalledCount = new AtomicInteger();
+
+  WorkflowTypeBulkheads(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Submit the runnable to the executor, or defer it if the workflow type already has the maximum number of queued and running
+   * state processors.
+   *
+   * @param runnable The state processor.
+   * @param workflowType The workflow type of the state processor.
+   * @param maxConcurrentExecutions The maximum number of concurrent executions of the workflow type.
+   * @throws RejectedExecutionException If the executor does not accept the runnable. The runnable is not deferred in this case.
+   */
+  void execute(Runnable runnable, String workflowType, int maxConcurrentExecutions) {
+    bulkheads.computeIfAbsent(workflowType, type -> new Bulkhead()).execute(runnable, maxConcurrentExecutions);
+  }
+
+  /**
+   * Return the workflow types whose queued, running and deferred state processors have reached the limit of the workflow type.
+   *
+   * @return The saturated workflow types.
+   */
+  Set<String> getSaturatedWorkflowTypes() {
+    Set<String> saturated = new HashSet<>();
+    for (Entry<String, Bulkhead> entry : bulkheads.entrySet()) {
+      if (entry.getValue().isSaturated()) {
+        saturated.add(entry.getKey());
+      }
+    }
+    return saturated;
+  }
+
+  /**
+   * Submit again the deferred state processors that the executor rejected when a processor of the same workflow type finished.
+   * Called when executor capacity is freed.
+   */
+  void resubmitStalled() {
+    if (stalledCount.get() == 0) {
+      return;
+    }
+    for (Bulkhead bulkhead : bulkheads.values()) {
+      bulkhead.resubmit();
+    }
+  }
+
+  /**
+   * Return the number of deferred state processors.
+   *
+   * @return The number of deferred state processors.
+   */
+  int getDeferredCount() {
+    int count = 0;
+    for (Bulkhead bulkhead : bulkheads.values()) {
+      count += bulkhead.getDeferredCount();
+    }
+    return count;
+  }
+
+  /**
+   * Remove and return the deferred state processors.
+   *
+   * @return The deferred state processors.
+   */
+  List<Runnable> drainDeferred() {
+    List<Runnable> drained = new ArrayList<>();
+    for (Bulkhead bulkhead : bulkheads.values()) {
+      bulkhead.drainTo(drained);
+    }
+    return drained;
+  }
+
+  /**
+   * Release the concurrency slot of a task that was removed from the executor queue without running it.
+   *
+   * @param runnable The removed task.
+   */
+  static void discard(Runnable runnable) {
+    if (runnable instanceof BulkheadTask) {
+      ((BulkheadTask) runnable).bulkhead.discard();
+    }
+  }
+
+  /**
+   * Keep the concurrency slot of the state processor that is running in the current thread after the processor returns. The
+   * slot must be used for resuming the processor or released.
+   *
+   * @return The held slot, or null if the workflow type of the current state processor has no concurrency limit.
+   */
+  static Slot holdCurrentSlot() {
+    BulkheadTask task = currentTask.get();
+    if (task == null) {
+      return null;
+    }
+    task.held = true;
+    return new Slot(task.bulkhead);
+  }
+
+  static Runnable unwrap(Runnable runnable) {
+    return runnable instanceof BulkheadTask ? ((BulkheadTask) runnable).delegate : runnable;
+  }
+
+  private class Bulkhead {
+    private final Deque<Runnable> deferred = new ArrayDeque<>();
+    private int active;
+    private int maxConcurrentExecutions;
+    private boolean stalled;
+
+    void execute(Runnable runnable, int maxConcurrent) {
+      synchronized (this) {
+        maxConcurrentExecutions = maxConcurrent;
+        if (active >= maxConcurrentExecutions) {
+          deferred.add(runnable);
+          return;
+        }
+        active++;
+      }
+      try {
+        submit(runnable);
+      } catch (RejectedExecutionException e) {
+        synchronized (this) {
+          active--;
+        }
+        throw e;
+      }
+    }
+
+    void submit(Runnable runnable) {
+      executor.execute(new BulkheadTask(runnable, this));
+    }
+
+    void release() {
+      Runnable next;
+      synchronized (this) {
+        next = active <= maxConcurrentExecutions ? deferred.poll() : null;
+        if (next == null) {
+          active--;
+          return;
+        }
+      }
+      submitDeferred(next);
+    }
+
+    void resubmit() {
+      Runnable next;
+      synchronized (this) {
+        if (!stalled) {
+          return;
+        }
+        unstall();
+        next = deferred.poll();
+        if (next == null) {
+          active--;
+          return;
+        }
+      }
+      submitDeferred(next);
+    }
+
+    private void submitDeferred(Runnable next) {
+      try {
+        submit(next);
+      } catch (RejectedExecutionException e) {
+        logger.debug("Executor rejected deferred state processor: {}", e.getMessage());
+        synchronized (this) {
+          // keep the concurrency slot, otherwise no finishing processor of this type would submit the deferred processors
+          deferred.addFirst(next);
+          if (!stalled) {
+            stalled = true;
+            stalledCount.incrementAndGet();
+          }
+        }
+      }
+    }
+
+    private void unstall() {
+      stalled = false;
+      stalledCount.decrementAndGet();
+    }
+
+    synchronized void discard() {
+      active--;
+    }
+
+    synchronized boolean isSaturated() {
+      // the slot of a stalled bulkhead is reserved for the first deferred processor
+      return active + deferred.size() - (stalled ? 1 : 0) >= maxConcurrentExecutions;
+    }
+
+    synchronized int getDeferredCount() {
+      return deferred.size();
+    }
+
+    synchronized void drainTo(List<Runnable> drained) {
+      drained.addAll(deferred);
+      deferred.clear();
+      if (stalled) {
+        unstall();
+        active--;
+      }
+    }
+  }
+
+  /**
+   * Concurrency slot held by a suspended state processor.
+   */
+  static final class Slot {
+    private final Bulkhead bulkhead;
+    private final AtomicBoolean used = new AtomicBoolean();
+
+    Slot(Bulkhead bulkhead) {
+      this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Submit the state processor to the executor using the held slot.
+     *
+     * @param runnable The state processor.
+     * @throws RejectedExecutionException If the executor does not accept the runnable. The slot is released in this case.
+     */
+    void resume(Runnable runnable) {
+      if (!used.compareAndSet(false, true)) {
+        throw new IllegalStateException("Concurrency slot has already been used");
+      }
+      try {
+        bulkhead.submit(runnable);
+      } catch (RejectedExecutionException e) {
+        bulkhead.release();
+        throw e;
+      }
+    }
+
+    /**
+     * Release the held slot without resuming the state processor.
+     */
+    void release() {
+      if (used.compareAndSet(false, true)) {
+        bulkhead.release();
+      }
+    }
+  }
+
+  private static class BulkheadTask implements Runnable {
+    final Runnable delegate;
+    private final Bulkhead bulkhead;
+    boolean held;
+
+    BulkheadTask(Runnable delegate, Bulkhead bulkhead) {
+      this.delegate = delegate;
+      this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public void run() {
+      currentTask.set(this);
+      try {
+        delegate.run();
+      } finally {
+        currentTask.remove();
+        if (!held) {
+          bulkhead.release();
+        }
+      }
+    }
+  }
+}
@@ -24,4 +24,8 @@ public interface SQLVariants {
   int longTextType();
 
   boolean useBatchUpdate();
+
+  boolean hasSkipLocked();
+
+  String forUpdateSkipLocked(String query, String limit);
 }
@@ -0,0 +1,77 @@
+package io.nflow.engine.internal.workflow;
+
+import static java.util.Collections.singletonList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import io.nflow.engine.internal.dao.WorkflowInstanceDao;
+import io.nflow.engine.internal.workflow.WorkflowStateMethod.StateParameter;
+import io.nflow.engine.workflow.instance.WorkflowInstance;
+
+/**
+ * Loads the current state variables of a workflow instance on demand, when the workflow instance was loaded without state
+ * variables. Loaded values are added to both the state variables and the original state variables of the workflow instance, so
+ * that only the state variables changed by the state execution are saved. Each state variable is loaded at most once, also
+ * when it does not exist.
+ */
+public class LazyStateVariables {
+  private final WorkflowInstanceDao workflowInstanceDao;
+  private final Set<String> loadedKeys = new HashSet<>();
+
+  public LazyStateVariables(WorkflowInstanceDao workflowInstanceDao) {
+    this.workflowInstanceDao = workflowInstanceDao;
+  }
+
+  /**
+   * Load the state variables that are declared as parameters of the state method in one query.
+   *
+   * @param instance The workflow instance.
+   * @param method The state method, or null if the state has no state method.
+   */
+  public void prefetch(WorkflowInstance instance, WorkflowStateMethod method) {
+    if (method == null) {
+      return;
+    }
+    List<String> keys = new ArrayList<>(method.params.length);
+    for (StateParameter param : method.params) {
+      if (!isLoaded(instance, param.key)) {
+        keys.add(param.key);
+      }
+    }
+    load(instance, keys);
+  }
+
+  /**
+   * Load a state variable unless it has already been loaded or set.
+   *
+   * @param instance The workflow instance.
+   * @param key The name of the state variable.
+   */
+  public void load(WorkflowInstance instance, String key) {
+    if (!isLoaded(instance, key)) {
+      load(instance, singletonList(key));
+    }
+  }
+
+  private boolean isLoaded(WorkflowInstance instance, String key) {
+    return loadedKeys.contains(key) || instance.stateVariables.containsKey(key);
+  }
+
+  private void load(WorkflowInstance instance, Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return;
+    }
+    Map<String, String> values = workflowInstanceDao.getStateVariables(instance.id, keys);
+    for (Entry<String, String> value : values.entrySet()) {
+      instance.stateVariables.putIfAbsent(value.getKey(), value.getValue());
+      instance.originalStateVariables.putIfAbsent(value.getKey(), value.getValue());
+    }
+    loadedKeys.addAll(keys);
+  }
+}
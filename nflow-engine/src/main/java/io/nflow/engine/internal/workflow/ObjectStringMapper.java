@@ -4,14 +4,17 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Inject;
 
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.nflow.engine.config.NFlow;
@@ -19,9 +22,15 @@ import io.nflow.engine.internal.workflow.WorkflowStateMethod.StateParameter;
 import io.nflow.engine.workflow.definition.Mutable;
 import io.nflow.engine.workflow.definition.StateExecution;
 
+/**
+ * Converts state variables between strings and objects. The Jackson readers and writers are resolved once per type and
+ * reused, so that the Java type and the root (de)serializer are not looked up again for every state variable.
+ */
 @Component
 public class ObjectStringMapper {
   private final ObjectMapper mapper;
+  private final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
 
   @Inject
   public ObjectStringMapper(@NFlow ObjectMapper nflowObjectMapper) {
@@ -55,16 +64,15 @@ public class ObjectStringMapper {
         args[i] = convertToObject(param.type, param.key, value);
       }
       if (param.mutable) {
-        args[i] = new Mutable<>(args[i]);
+        args[i] = param.identityTracked && value != null ? new TrackedMutable<>(args[i], value) : new Mutable<>(args[i]);
       }
     }
     return args;
   }
 
   public Object convertToObject(Type type, String key, String value) {
-    JavaType javaType = mapper.getTypeFactory().constructType(type);
     try {
-      return mapper.readValue(value, javaType);
+      return reader(type).readValue(value);
     } catch (IOException e) {
       throw new RuntimeException("Failed to deserialize value for " + key, e);
     }
@@ -85,10 +93,15 @@ public class ObjectStringMapper {
       }
       String sVal;
       if (param.mutable) {
-        value = ((Mutable<Object>) value).val;
+        Mutable<Object> mutable = (Mutable<Object>) value;
+        value = mutable.val;
         if (value == null) {
           continue;
         }
+        if (mutable instanceof TrackedMutable && ((TrackedMutable<Object>) mutable).original == value) {
+          execution.setVariable(param.key, ((TrackedMutable<Object>) mutable).originalValue);
+          continue;
+        }
       }
       if (String.class.equals(param.type)) {
         sVal = (String) value;
@@ -101,10 +114,43 @@ public class ObjectStringMapper {
 
   public String convertFromObject(String key, Object value) {
     try {
-      return mapper.writeValueAsString(value);
+      if (value == null) {
+        return mapper.writeValueAsString(null);
+      }
+      return writer(value.getClass()).writeValueAsString(value);
     } catch (JsonProcessingException e) {
       throw new RuntimeException("Failed to serialize value for " + key, e);
     }
   }
 
+  private ObjectReader reader(Type type) {
+    ObjectReader reader = readers.get(type);
+    if (reader == null) {
+      reader = readers.computeIfAbsent(type, t -> mapper.readerFor(mapper.getTypeFactory().constructType(t)));
+    }
+    return reader;
+  }
+
+  private ObjectWriter writer(Class<?> type) {
+    ObjectWriter writer = writers.get(type);
+    if (writer == null) {
+      writer = writers.computeIfAbsent(type, mapper::writerFor);
+    }
+    return writer;
+  }
+
+  /**
+   * Mutable state method parameter that remembers the original value and its serialized form, so that the variable does not
+   * have to be serialized again when the state method did not replace the value.
+   */
+  private static class TrackedMutable<T> extends Mutable<T> {
+    final T original;
+    final String originalValue;
+
+    TrackedMutable(T original, String originalValue) {
+      super(original);
+      this.original = original;
+      this.originalValue = originalValue;
+    }
+  }
 }
@@ -31,6 +31,7 @@ public class StateExecutionImpl extends ModelObject implements StateExecution {
   private final WorkflowInstanceDao workflowDao;
   private final WorkflowInstancePreProcessor workflowInstancePreProcessor;
   private final WorkflowInstanceService workflowInstanceService;
+  private final LazyStateVariables lazyStateVariables;
   private DateTime nextActivation;
   private String nextState;
   private String nextStateReason;
@@ -46,11 +47,18 @@ public class StateExecutionImpl extends ModelObject implements StateExecution {
 
   public StateExecutionImpl(WorkflowInstance instance, ObjectStringMapper objectMapper, WorkflowInstanceDao workflowDao,
       WorkflowInstancePreProcessor workflowInstancePreProcessor, WorkflowInstanceService workflowInstanceService) {
+    this(instance, objectMapper, workflowDao, workflowInstancePreProcessor, workflowInstanceService, null);
+  }
+
+  public StateExecutionImpl(WorkflowInstance instance, ObjectStringMapper objectMapper, WorkflowInstanceDao workflowDao,
+      WorkflowInstancePreProcessor workflowInstancePreProcessor, WorkflowInstanceService workflowInstanceService,
+      LazyStateVariables lazyStateVariables) {
     this.instance = instance;
     this.objectMapper = objectMapper;
     this.workflowDao = workflowDao;
     this.workflowInstancePreProcessor = workflowInstancePreProcessor;
     this.workflowInstanceService = workflowInstanceService;
+    this.lazyStateVariables = lazyStateVariables;
   }
 
   public DateTime getNextActivation() {
@@ -102,6 +110,7 @@ public class StateExecutionImpl extends ModelObject implements StateExecution {
   @Override
   @SuppressWarnings("unchecked")
   public <T> T getVariable(String name, Class<T> type, T defaultValue) {
+    loadVariable(name);
     if (instance.stateVariables.containsKey(name)) {
       return (T) objectMapper.convertToObject(type, name, instance.stateVariables.get(name));
     }
@@ -110,12 +119,19 @@ public class StateExecutionImpl extends ModelObject implements StateExecution {
 
   @Override
   public String getVariable(String name, String defaultValue) {
+    loadVariable(name);
     if (instance.stateVariables.containsKey(name)) {
       return instance.stateVariables.get(name);
     }
     return defaultValue;
   }
 
+  private void loadVariable(String name) {
+    if (lazyStateVariables != null) {
+      lazyStateVariables.load(instance, name);
+    }
+  }
+
   @Override
   public void setVariable(String name, String value) {
     instance.stateVariables.put(name, value);
@@ -3,6 +3,7 @@ package io.nflow.engine.internal.workflow;
 import static java.lang.reflect.Modifier.isPublic;
 import static java.lang.reflect.Modifier.isStatic;
 import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableMap;
 import static org.apache.commons.lang3.ClassUtils.primitiveToWrapper;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.springframework.util.ReflectionUtils.doWithMethods;
@@ -23,6 +24,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 
 import org.slf4j.Logger;
 import org.springframework.util.ReflectionUtils.MethodFilter;
@@ -39,11 +41,30 @@ public class WorkflowDefinitionScanner {
   private static final Logger logger = getLogger(WorkflowDefinitionScanner.class);
 
   private static final Set<Type> knownImmutableTypes = new LinkedHashSet<>();
-  {
+  static {
     knownImmutableTypes.addAll(asList(Boolean.TYPE, Boolean.class, Byte.TYPE, Byte.class, Character.TYPE, Character.class, Short.TYPE, Short.class, Integer.TYPE, Integer.class, Long.TYPE, Long.class, Float.TYPE, Float.class, Double.TYPE, Double.class, String.class, BigDecimal.class, BigInteger.class, Enum.class));
   }
 
+  private static final ClassValue<Map<String, WorkflowStateMethod>> stateMethodCache =
+      new ClassValue<Map<String, WorkflowStateMethod>>() {
+        @Override
+        protected Map<String, WorkflowStateMethod> computeValue(Class<?> definition) {
+          return unmodifiableMap(new WorkflowDefinitionScanner().scanStateMethods(definition));
+        }
+      };
+
+  /**
+   * Return the state methods of a workflow definition class. The class is scanned only once, and the result is shared by all
+   * instances of the workflow definition.
+   *
+   * @param definition The workflow definition class.
+   * @return The state methods by state name.
+   */
   public Map<String, WorkflowStateMethod> getStateMethods(Class<?> definition) {
+    return stateMethodCache.get(definition);
+  }
+
+  Map<String, WorkflowStateMethod> scanStateMethods(Class<?> definition) {
     final Map<String, WorkflowStateMethod> methods = new LinkedHashMap<>();
     doWithMethods(definition, method -> {
       List<StateParameter> params = new ArrayList<>();
@@ -64,8 +85,9 @@ public class WorkflowDefinitionScanner {
               readOnly = false;
               mutable = true;
             }
+            boolean identityTracked = stateInfo.detectChangesByIdentity() || isReadOnly(type);
             params.add(new StateParameter(stateInfo.value(), type, defaultValue(stateInfo, clazz),
-                readOnly || stateInfo.readOnly(), mutable));
+                readOnly || stateInfo.readOnly() || (identityTracked && !mutable), mutable, identityTracked));
             break;
           }
         }
@@ -113,7 +135,8 @@ public class WorkflowDefinitionScanner {
     }
 
     private boolean hasValidReturnType(Class<?> returnType) {
-      return NextAction.class.equals(returnType) || Void.TYPE.equals(returnType);
+      return NextAction.class.equals(returnType) || Void.TYPE.equals(returnType)
+          || CompletionStage.class.isAssignableFrom(returnType);
     }
 
     private boolean hasStateExecutionParameter(Class<?>... parameterTypes) {
@@ -1,7 +1,14 @@
 package io.nflow.engine.internal.workflow;
 
+import static java.lang.invoke.MethodHandles.publicLookup;
+import static java.lang.invoke.MethodType.methodType;
+import static org.springframework.util.ReflectionUtils.invokeMethod;
+
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.CompletionStage;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.nflow.engine.model.ModelObject;
@@ -9,7 +16,9 @@ import io.nflow.engine.model.ModelObject;
 @SuppressFBWarnings(value="EI_EXPOSE_REP2", justification = "internal class, not important for security")
 public class WorkflowStateMethod extends ModelObject {
   public final Method method;
+  public final boolean async;
   final StateParameter[] params;
+  private final MethodHandle invoker;
 
   static class StateParameter extends ModelObject {
     final String key;
@@ -17,18 +26,54 @@ public class WorkflowStateMethod extends ModelObject {
     final Object nullValue;
     final boolean readOnly;
     final boolean mutable;
+    final boolean identityTracked;
 
-    public StateParameter(String key, Type type, Object nullValue, boolean readOnly, boolean mutable) {
+    public StateParameter(String key, Type type, Object nullValue, boolean readOnly, boolean mutable,
+        boolean identityTracked) {
       this.key = key;
       this.type = type;
       this.nullValue = nullValue;
       this.readOnly = readOnly;
       this.mutable = mutable;
+      this.identityTracked = identityTracked;
     }
   }
 
   public WorkflowStateMethod(Method method, StateParameter... params) {
     this.method = method;
+    this.async = CompletionStage.class.isAssignableFrom(method.getReturnType());
     this.params = params;
+    this.invoker = createInvoker(method);
+  }
+
+  /**
+   * Invoke the state method. The method is invoked through a method handle that is created when the workflow definition is
+   * scanned, so that the access checks and argument validation of reflective invocation are not repeated for every state
+   * execution. Methods of classes that are not public are invoked reflectively.
+   *
+   * @param target The workflow definition.
+   * @param args The state method arguments.
+   * @return The value returned by the state method, or null for void methods.
+   */
+  public Object invoke(Object target, Object... args) {
+    if (invoker == null) {
+      return invokeMethod(method, target, args);
+    }
+    try {
+      return (Object) invoker.invokeExact(target, args);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new UndeclaredThrowableException(e);
+    }
+  }
+
+  private static MethodHandle createInvoker(Method method) {
+    try {
+      return publicLookup().unreflect(method).asSpreader(Object[].class, method.getParameterCount())
+          .asType(methodType(Object.class, Object.class, Object[].class));
+    } catch (@SuppressWarnings("unused") IllegalAccessException e) {
+      return null;
+    }
   }
 }
@@ -5,6 +5,7 @@ import io.nflow.engine.workflow.definition.NextAction;
 /**
  * AbstractWorkflowExecutorListener implement WorkflowExecutorListener with no-op/defaults
  * method implementations. A subclasses can override just the methods it is interested in.
+ * The methods that are not overridden are not called by the workflow executor.
  */
 public abstract class AbstractWorkflowExecutorListener implements WorkflowExecutorListener {
 
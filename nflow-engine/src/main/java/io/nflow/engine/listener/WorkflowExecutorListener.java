@@ -1,9 +1,11 @@
 package io.nflow.engine.listener;
 
+import static java.util.Collections.emptySet;
 import static org.joda.time.DateTime.now;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.joda.time.DateTime;
 
@@ -77,6 +79,16 @@ public interface WorkflowExecutorListener {
     }
   }
 
+  /**
+   * Return the types of the workflows for which this listener is called. The types are read once per workflow definition,
+   * when the listener pipeline of the workflow definition is compiled. Default implementation returns an empty set, which
+   * means that the listener is called for all workflow types.
+   * @return The workflow types.
+   */
+  default Set<String> getWorkflowTypes() {
+    return emptySet();
+  }
+
   /**
    * Executed before state is processed. Exceptions are logged but they do not
    * affect workflow processing.
@@ -99,6 +111,13 @@ public interface WorkflowExecutorListener {
    *     return chain.next(listenerContext);
    *   }
    * </code>
+   * <p>
+   * When the state method is asynchronous (returns <code>CompletionStage</code>), <code>chain.next</code> returns null and
+   * this method returns before the state method completes. <code>afterProcessing</code> or <code>afterFailure</code> is
+   * called later, when the completion stage has completed, possibly in a different thread. Listeners that measure or wrap
+   * the processing in this method, or that keep state in thread locals between the listener methods, do not work correctly
+   * with asynchronous state methods.
+   * </p>
    *
    * @param listenerContext The listener context.
    * @param chain The listener chain.
@@ -7,6 +7,9 @@ import javax.inject.Inject;
 import org.springframework.stereotype.Component;
 
 import io.nflow.engine.internal.dao.ExecutorDao;
+import io.nflow.engine.internal.executor.WorkflowStateProcessorFactory;
+import io.nflow.engine.workflow.executor.LongRunningStateProcessor;
+import io.nflow.engine.workflow.executor.ProcessingTimeHistogram;
 import io.nflow.engine.workflow.executor.WorkflowExecutor;
 
 /**
@@ -16,10 +19,12 @@ import io.nflow.engine.workflow.executor.WorkflowExecutor;
 public class WorkflowExecutorService {
 
   private final ExecutorDao executorDao;
+  private final WorkflowStateProcessorFactory stateProcessorFactory;
 
   @Inject
-  public WorkflowExecutorService(ExecutorDao executorDao) {
+  public WorkflowExecutorService(ExecutorDao executorDao, WorkflowStateProcessorFactory stateProcessorFactory) {
     this.executorDao = executorDao;
+    this.stateProcessorFactory = stateProcessorFactory;
   }
 
   /**
@@ -29,4 +34,23 @@ public class WorkflowExecutorService {
   public List<WorkflowExecutor> getWorkflowExecutors() {
     return executorDao.getExecutors();
   }
+
+  /**
+   * Return the state processors of this nFlow instance that have been processing a workflow instance longer than
+   * <code>nflow.executor.stuckThreadThreshold.seconds</code>, as seen by the latest check of the watchdog thread. The stack
+   * trace of each state processor is sampled once, when the threshold is exceeded.
+   * @return The long running state processors.
+   */
+  public List<LongRunningStateProcessor> getLongRunningStateProcessors() {
+    return stateProcessorFactory.getLongRunningStateProcessors();
+  }
+
+  /**
+   * Return the cumulative histogram of the processing times of the state processor executions that have finished in this
+   * nFlow instance since it was started.
+   * @return The processing time histogram.
+   */
+  public ProcessingTimeHistogram getProcessingTimeHistogram() {
+    return stateProcessorFactory.getProcessingTimeHistogram();
+  }
 }
@@ -7,7 +7,6 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 
 import org.springframework.util.Assert;
@@ -28,9 +27,20 @@ public abstract class AbstractWorkflowDefinition<S extends WorkflowState> extend
   private final S initialState;
   private final S errorState;
   private final WorkflowSettings settings;
+  /**
+   * Allowed transitions from origin state names to target state names. Use <code>permit</code> to add transitions. Modifying
+   * the map directly is not supported, because the state index used by <code>getState</code> and
+   * <code>isAllowedNextAction</code> is only rebuilt when <code>permit</code> is called.
+   */
   protected final Map<String, List<String>> allowedTransitions = new LinkedHashMap<>();
+  /**
+   * Failure transitions from origin state names to failure states. Use <code>permit</code> to add transitions. Modifying the
+   * map directly is not supported, because the state index used by <code>getState</code> and
+   * <code>isAllowedNextAction</code> is only rebuilt when <code>permit</code> is called.
+   */
   protected final Map<String, WorkflowState> failureTransitions = new LinkedHashMap<>();
   private Map<String, WorkflowStateMethod> stateMethods;
+  private volatile StateIndex stateIndex;
 
   protected AbstractWorkflowDefinition(String type, S initialState, S errorState) {
     this(type, initialState, errorState, new WorkflowSettings.Builder().build());
@@ -146,6 +156,7 @@ public abstract class AbstractWorkflowDefinition<S extends WorkflowState> extend
     requireStateMethodExists(originState);
     requireStateMethodExists(targetState);
     allowedTransitionsFor(originState).add(targetState.name());
+    stateIndex = null;
     return this;
   }
 
@@ -194,9 +205,10 @@ public abstract class AbstractWorkflowDefinition<S extends WorkflowState> extend
     if (stateMethod != null) {
       WorkflowStateType stateType = state.getType();
       Class<?> returnType = stateMethod.method.getReturnType();
-      if (!stateType.isFinal() && !NextAction.class.equals(returnType)) {
-        String msg = format("Class '%s' has a non-final state method '%s' that does not return NextAction", this.getClass()
-            .getName(), state.name());
+      if (!stateType.isFinal() && !NextAction.class.equals(returnType) && !stateMethod.async) {
+        String msg = format(
+            "Class '%s' has a non-final state method '%s' that does not return NextAction or CompletionStage<NextAction>",
+            this.getClass().getName(), state.name());
         throw new IllegalArgumentException(msg);
       }
       if (stateType.isFinal() && !Void.TYPE.equals(returnType)) {
@@ -223,10 +235,9 @@ public abstract class AbstractWorkflowDefinition<S extends WorkflowState> extend
    * @throws IllegalStateException when a matching state can not be found.
    */
   public WorkflowState getState(String state) {
-    for (WorkflowState s : getStates()) {
-      if (Objects.equals(s.name(), state)) {
-        return s;
-      }
+    WorkflowState s = stateIndex().getState(state);
+    if (s != null) {
+      return s;
     }
     throw new IllegalStateException("No state '" + state + "' in workflow definiton " + getType());
   }
@@ -251,14 +262,23 @@ public abstract class AbstractWorkflowDefinition<S extends WorkflowState> extend
     if (nextAction.isRetry()) {
       return true;
     }
-    List<String> allowedNextStates = allowedTransitions.get(instance.state);
-    if (allowedNextStates != null && allowedNextStates.contains(nextAction.getNextState().name())) {
+    if (nextAction.getNextState() == getErrorState()) {
       return true;
     }
-    if (nextAction.getNextState() == failureTransitions.get(instance.state)) {
-      return true;
+    return stateIndex().isAllowedTransition(instance.state, nextAction.getNextState());
+  }
+
+  /**
+   * Return the index of the states and transitions of this workflow definition. The index is built on first use after the
+   * workflow definition has been constructed, and rebuilt if more transitions are permitted.
+   */
+  private StateIndex stateIndex() {
+    StateIndex index = stateIndex;
+    if (index == null) {
+      index = new StateIndex(getStates(), allowedTransitions, failureTransitions);
+      stateIndex = index;
     }
-    return nextAction.getNextState() == getErrorState();
+    return index;
   }
 
   /**
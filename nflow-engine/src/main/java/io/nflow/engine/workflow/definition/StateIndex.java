@@ -0,0 +1,71 @@
+package io.nflow.engine.workflow.definition;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Immutable index of the states and transitions of a workflow definition. States are resolved by name with one hash lookup,
+ * and allowed transitions are stored in a bit matrix indexed by state number, so that resolving states and validating
+ * transitions during state processing does not iterate the states or the transition lists.
+ */
+final class StateIndex {
+  private final Map<String, WorkflowState> states = new HashMap<>();
+  private final Map<String, Integer> numbers = new HashMap<>();
+  private final BitSet[] allowedTransitions;
+  private final WorkflowState[] failureTransitions;
+
+  StateIndex(Iterable<? extends WorkflowState> allStates, Map<String, List<String>> allowedTransitions,
+      Map<String, WorkflowState> failureTransitions) {
+    for (WorkflowState state : allStates) {
+      states.putIfAbsent(state.name(), state);
+      number(state.name());
+    }
+    for (Entry<String, List<String>> entry : allowedTransitions.entrySet()) {
+      number(entry.getKey());
+      for (String target : entry.getValue()) {
+        number(target);
+      }
+    }
+    for (String origin : failureTransitions.keySet()) {
+      number(origin);
+    }
+    this.allowedTransitions = new BitSet[numbers.size()];
+    this.failureTransitions = new WorkflowState[numbers.size()];
+    for (Entry<String, List<String>> entry : allowedTransitions.entrySet()) {
+      BitSet targets = new BitSet(numbers.size());
+      for (String target : entry.getValue()) {
+        targets.set(numbers.get(target));
+      }
+      this.allowedTransitions[numbers.get(entry.getKey())] = targets;
+    }
+    for (Entry<String, WorkflowState> entry : failureTransitions.entrySet()) {
+      this.failureTransitions[numbers.get(entry.getKey())] = entry.getValue();
+    }
+  }
+
+  private void number(String stateName) {
+    numbers.putIfAbsent(stateName, numbers.size());
+  }
+
+  WorkflowState getState(String stateName) {
+    return states.get(stateName);
+  }
+
+  boolean isAllowedTransition(String originState, WorkflowState nextState) {
+    Integer origin = numbers.get(originState);
+    if (origin == null) {
+      return false;
+    }
+    BitSet targets = allowedTransitions[origin];
+    if (targets != null) {
+      Integer target = numbers.get(nextState.name());
+      if (target != null && targets.get(target)) {
+        return true;
+      }
+    }
+    return nextState == failureTransitions[origin];
+  }
+}
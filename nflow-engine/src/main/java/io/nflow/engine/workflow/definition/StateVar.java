@@ -36,4 +36,15 @@ public @interface StateVar {
    * @return True if non-existing variables should be initialized, false otherwise.
    */
   boolean instantiateIfNotExists() default false;
+
+  /**
+   * Detects changes of the variable by object identity. The variable is stored after processing the state handler method
+   * only when the method replaces the value of the {@link Mutable} parameter with another object. Modifications made to
+   * the value object itself are not stored, and variables that are not wrapped in {@link Mutable} are never stored. Use
+   * this to avoid serializing large variables that the state handler method did not change. Variables of immutable types,
+   * like strings and primitive wrappers, are always compared by identity.
+   *
+   * @return True if the variable should be stored only when the value is replaced, false otherwise.
+   */
+  boolean detectChangesByIdentity() default false;
 }
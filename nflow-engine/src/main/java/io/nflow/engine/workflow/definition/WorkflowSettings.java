@@ -49,6 +49,20 @@ public class WorkflowSettings extends ModelObject {
    * Maximum number of subsequent state executions before forcing a short transition delay, per state.
    */
   public final Map<WorkflowState, Integer> maxSubsequentStateExecutionsPerState;
+  /**
+   * Maximum number of concurrently executing workflow instances of this type in one nFlow instance. Zero means no limit.
+   */
+  public final int maxConcurrentExecutions;
+  /**
+   * Maximum number of concurrently executing workflow instances of this type in all nFlow instances of the executor group. Zero
+   * means no limit. The limit is checked before polling, so it may be exceeded briefly when several nFlow instances poll at the
+   * same time.
+   */
+  public final int maxClusterConcurrentExecutions;
+  /**
+   * Relative share of polled workflow instances given to this type when fair share polling is enabled.
+   */
+  public final int pollingWeight;
 
   WorkflowSettings(Builder builder) {
     this.minErrorTransitionDelay = builder.minErrorTransitionDelay;
@@ -58,6 +72,9 @@ public class WorkflowSettings extends ModelObject {
     this.maxRetries = builder.maxRetries;
     this.maxSubsequentStateExecutions = builder.maxSubsequentStateExecutions;
     this.maxSubsequentStateExecutionsPerState = new HashMap<>(builder.maxSubsequentStateExecutionsPerState);
+    this.maxConcurrentExecutions = builder.maxConcurrentExecutions;
+    this.maxClusterConcurrentExecutions = builder.maxClusterConcurrentExecutions;
+    this.pollingWeight = builder.pollingWeight;
   }
 
   /**
@@ -72,6 +89,9 @@ public class WorkflowSettings extends ModelObject {
     int maxRetries = 17;
     int maxSubsequentStateExecutions = 100;
     Map<WorkflowState, Integer> maxSubsequentStateExecutionsPerState = new HashMap<>();
+    int maxConcurrentExecutions = 0;
+    int maxClusterConcurrentExecutions = 0;
+    int pollingWeight = 1;
 
     /**
      * Set the maximum delay on execution retry after an error.
@@ -159,6 +179,45 @@ public class WorkflowSettings extends ModelObject {
       return this;
     }
 
+    /**
+     * Set maximum number of concurrently executing workflow instances of this type in one nFlow instance.
+     *
+     * @param maxConcurrentExecutions
+     *          Maximum number of concurrent executions, or zero for no limit.
+     * @return this.
+     */
+    public Builder setMaxConcurrentExecutions(int maxConcurrentExecutions) {
+      this.maxConcurrentExecutions = maxConcurrentExecutions;
+      return this;
+    }
+
+    /**
+     * Set maximum number of concurrently executing workflow instances of this type in all nFlow instances of the executor group.
+     *
+     * @param maxClusterConcurrentExecutions
+     *          Maximum number of concurrent executions, or zero for no limit.
+     * @return this.
+     */
+    public Builder setMaxClusterConcurrentExecutions(int maxClusterConcurrentExecutions) {
+      this.maxClusterConcurrentExecutions = maxClusterConcurrentExecutions;
+      return this;
+    }
+
+    /**
+     * Set the relative share of polled workflow instances given to this type when fair share polling is enabled.
+     *
+     * @param pollingWeight
+     *          Positive weight.
+     * @return this.
+     */
+    public Builder setPollingWeight(int pollingWeight) {
+      if (pollingWeight <= 0) {
+        throw new IllegalArgumentException("Polling weight must be positive");
+      }
+      this.pollingWeight = pollingWeight;
+      return this;
+    }
+
     /**
      * Create workflow settings object.
      *
@@ -0,0 +1,36 @@
+package io.nflow.engine.workflow.executor;
+
+/**
+ * Notifies workflow dispatchers when workflow instances become ready for execution. This allows idle dispatchers to wait for
+ * a long time between polls without delaying the processing of new or woken up workflow instances.
+ * <p>
+ * The implementation is selected with the <code>nflow.dispatcher.activation.notifier</code> property. Custom implementations
+ * can be used by overriding the <code>nflowActivationNotifier</code> bean of the database configuration.
+ * </p>
+ */
+public interface ActivationNotifier {
+
+  /**
+   * Notify dispatchers that a workflow instance is ready for execution. Called when a workflow instance is inserted or woken up.
+   * When called inside a transaction, dispatchers of other nFlow instances may be notified only after the transaction is
+   * committed.
+   */
+  void notifyActivation();
+
+  /**
+   * Wait until a workflow instance activation is notified or the timeout expires. An activation that was notified after the
+   * previous call of the same thread returned causes this method to return immediately. When several dispatcher threads are
+   * waiting, each of them is woken up by an activation.
+   *
+   * @param timeoutMillis Maximum time to wait in milliseconds.
+   * @return True if an activation was notified, false if the timeout expired.
+   * @throws InterruptedException If the waiting thread is interrupted.
+   */
+  boolean awaitActivation(long timeoutMillis) throws InterruptedException;
+
+  /**
+   * Stop listening to activation notifications and wake up threads waiting for activation. After shutdown, awaitActivation
+   * returns immediately.
+   */
+  void shutdown();
+}
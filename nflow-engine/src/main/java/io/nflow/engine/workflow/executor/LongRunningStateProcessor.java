@@ -0,0 +1,45 @@
+package io.nflow.engine.workflow.executor;
+
+import org.joda.time.DateTime;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.nflow.engine.model.ModelObject;
+
+/**
+ * Describes a state processor of this nFlow instance that has been processing a workflow instance longer than the stuck
+ * thread threshold.
+ */
+@SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD", justification = "used by applications")
+public class LongRunningStateProcessor extends ModelObject {
+  /**
+   * The id of the workflow instance being processed.
+   */
+  public final int workflowInstanceId;
+  /**
+   * Time when the state processor started processing the workflow instance.
+   */
+  public final DateTime started;
+  /**
+   * The processing time in seconds when the watchdog last checked the state processor.
+   */
+  public final long processingTimeSeconds;
+  /**
+   * The stack trace of the state processor thread, sampled when the processing time exceeded the stuck thread threshold.
+   */
+  public final String stackTrace;
+
+  /**
+   * Creates a new long running state processor description.
+   *
+   * @param workflowInstanceId The id of the workflow instance being processed
+   * @param started Time when the state processor started processing the workflow instance
+   * @param processingTimeSeconds The processing time in seconds
+   * @param stackTrace The stack trace of the state processor thread
+   */
+  public LongRunningStateProcessor(int workflowInstanceId, DateTime started, long processingTimeSeconds, String stackTrace) {
+    this.workflowInstanceId = workflowInstanceId;
+    this.started = started;
+    this.processingTimeSeconds = processingTimeSeconds;
+    this.stackTrace = stackTrace;
+  }
+}
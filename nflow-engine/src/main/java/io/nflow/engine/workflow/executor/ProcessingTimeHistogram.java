@@ -0,0 +1,34 @@
+package io.nflow.engine.workflow.executor;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.util.List;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.nflow.engine.model.ModelObject;
+
+/**
+ * Cumulative histogram of the processing times of the state processor executions that have finished in this nFlow instance.
+ */
+@SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD", justification = "used by applications")
+public class ProcessingTimeHistogram extends ModelObject {
+  /**
+   * The inclusive upper bounds of the buckets in milliseconds. The last bucket has no upper bound and is not included.
+   */
+  public final List<Long> upperBoundsMillis;
+  /**
+   * The number of finished state processor executions in each bucket. Contains one more element than upperBoundsMillis.
+   */
+  public final List<Long> counts;
+
+  /**
+   * Creates a new processing time histogram.
+   *
+   * @param upperBoundsMillis The inclusive upper bounds of the buckets in milliseconds
+   * @param counts The number of finished state processor executions in each bucket
+   */
+  public ProcessingTimeHistogram(List<Long> upperBoundsMillis, List<Long> counts) {
+    this.upperBoundsMillis = unmodifiableList(upperBoundsMillis);
+    this.counts = unmodifiableList(counts);
+  }
+}
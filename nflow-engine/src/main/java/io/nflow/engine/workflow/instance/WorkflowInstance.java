@@ -146,6 +146,12 @@ public class WorkflowInstance extends ModelObject {
    */
   public final Optional<Integer> signal;
 
+  /**
+   * The priority of this workflow instance. Workflow instances with higher priority are executed before workflow instances with
+   * lower priority. The default priority is 0.
+   */
+  public final short priority;
+
   /**
    * Child workflow instance IDs created by this workflow instance, grouped by instance action ID.
    */
@@ -176,6 +182,7 @@ public class WorkflowInstance extends ModelObject {
     this.started = builder.started;
     this.executorGroup = builder.executorGroup;
     this.signal = builder.signal;
+    this.priority = builder.priority;
     this.mapper = builder.mapper;
   }
 
@@ -251,6 +258,7 @@ public class WorkflowInstance extends ModelObject {
     DateTime modified;
     String executorGroup;
     Optional<Integer> signal = Optional.empty();
+    short priority;
     ObjectStringMapper mapper;
 
     /**
@@ -293,6 +301,7 @@ public class WorkflowInstance extends ModelObject {
       this.modified = copy.modified;
       this.executorGroup = copy.executorGroup;
       this.signal = copy.signal;
+      this.priority = copy.priority;
       this.mapper = copy.mapper;
     }
 
@@ -554,6 +563,16 @@ public class WorkflowInstance extends ModelObject {
       return this;
     }
 
+    /**
+     * Set the priority. Workflow instances with higher priority are executed first.
+     * @param priority The priority.
+     * @return this.
+     */
+    public Builder setPriority(short priority) {
+      this.priority = priority;
+      return this;
+    }
+
     /**
      * Create the workflow instance object.
      * @return The workflow instance.
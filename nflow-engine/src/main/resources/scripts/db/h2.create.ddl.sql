@@ -17,7 +17,8 @@ create table if not exists nflow_workflow (
   created timestamp not null default current_timestamp,
   modified timestamp not null default current_timestamp,
   executor_group varchar(64) not null,
-  workflow_signal int
+  workflow_signal int,
+  priority smallint not null default 0
 );
 create trigger if not exists nflow_workflow_modified before update on nflow_workflow for each row call "io.nflow.engine.internal.storage.db.H2ModifiedColumnTrigger";
 
@@ -25,6 +26,8 @@ create unique index if not exists nflow_workflow_uniq on nflow_workflow (type, e
 
 create index if not exists nflow_workflow_next_activation on nflow_workflow(next_activation, modified);
 
+create index if not exists nflow_workflow_polling on nflow_workflow(priority desc, next_activation);
+
 create table if not exists nflow_workflow_action (
   id int not null auto_increment primary key,
   workflow_id int not null,
@@ -60,9 +63,20 @@ create table if not exists nflow_executor (
   executor_group varchar(64),
   started timestamp not null default current_timestamp,
   active timestamp not null,
-  expires timestamp not null
+  expires timestamp not null,
+  thread_count int,
+  busy_threads int,
+  queue_size int,
+  throughput int
 );
 
+create table if not exists nflow_activation (
+  id int not null auto_increment primary key,
+  executor_group varchar(64) not null
+);
+
+create index if not exists nflow_activation_group on nflow_activation(executor_group, id);
+
 create table if not exists nflow_workflow_definition (
   type varchar(64) not null,
   definition_sha1 varchar(40) not null,
@@ -99,7 +113,8 @@ create table if not exists nflow_archive_workflow (
   created timestamp not null,
   modified timestamp not null,
   executor_group varchar(64) not null,
-  workflow_signal int
+  workflow_signal int,
+  priority smallint not null
 );
 
 create unique index if not exists nflow_archive_workflow_uniq on nflow_archive_workflow (type, external_id, executor_group);
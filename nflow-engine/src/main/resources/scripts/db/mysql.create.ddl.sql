@@ -18,12 +18,15 @@ create table if not exists nflow_workflow (
   modified timestamp(3) default current_timestamp(3) on update current_timestamp(3),
   executor_group varchar(64) not null,
   workflow_signal int,
+  priority smallint not null default 0,
   constraint nflow_workflow_uniq unique (type, external_id, executor_group)
 );
 
 drop index nflow_workflow_activation;
 create index nflow_workflow_activation on nflow_workflow(next_activation, modified);
 
+create index nflow_workflow_polling on nflow_workflow(priority desc, next_activation);
+
 create table if not exists nflow_workflow_action (
   id int not null auto_increment primary key,
   workflow_id int not null,
@@ -59,9 +62,20 @@ create table if not exists nflow_executor (
   executor_group varchar(64),
   started timestamp(3) not null default current_timestamp(3),
   active timestamp(3) not null default current_timestamp(3),
-  expires timestamp(3) not null default current_timestamp(3)
+  expires timestamp(3) not null default current_timestamp(3),
+  thread_count int,
+  busy_threads int,
+  queue_size int,
+  throughput int
 );
 
+create table if not exists nflow_activation (
+  id int not null auto_increment primary key,
+  executor_group varchar(64) not null
+);
+
+create index nflow_activation_group on nflow_activation(executor_group, id);
+
 create table if not exists nflow_workflow_definition (
   type varchar(64) not null,
   definition_sha1 varchar(40) not null,
@@ -99,6 +113,7 @@ create table if not exists nflow_archive_workflow (
   modified timestamp(3) default current_timestamp(3),
   executor_group varchar(64) not null,
   workflow_signal int,
+  priority smallint not null,
   constraint nflow_archive_workflow_uniq unique (type, external_id, executor_group)
 );
 
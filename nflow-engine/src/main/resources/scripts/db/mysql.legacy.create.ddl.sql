@@ -18,12 +18,15 @@ create table if not exists nflow_workflow (
   modified timestamp not null default current_timestamp on update current_timestamp,
   executor_group varchar(64) not null,
   workflow_signal int,
+  priority smallint not null default 0,
   constraint nflow_workflow_uniq unique (type, external_id, executor_group)
 );
 
 drop index nflow_workflow_activation;
 create index nflow_workflow_activation on nflow_workflow(next_activation, modified);
 
+create index nflow_workflow_polling on nflow_workflow(priority desc, next_activation);
+
 drop trigger if exists nflow_workflow_insert;
 
 create trigger nflow_workflow_insert before insert on `nflow_workflow`
@@ -64,9 +67,20 @@ create table if not exists nflow_executor (
   executor_group varchar(64),
   started timestamp not null default current_timestamp,
   active timestamp not null,
-  expires timestamp not null
+  expires timestamp not null,
+  thread_count int,
+  busy_threads int,
+  queue_size int,
+  throughput int
 );
 
+create table if not exists nflow_activation (
+  id int not null auto_increment primary key,
+  executor_group varchar(64) not null
+);
+
+create index nflow_activation_group on nflow_activation(executor_group, id);
+
 create table if not exists nflow_workflow_definition (
   type varchar(64) not null,
   definition_sha1 varchar(40) not null,
@@ -109,6 +123,7 @@ create table if not exists nflow_archive_workflow (
   modified timestamp not null,
   executor_group varchar(64) not null,
   workflow_signal int,
+  priority smallint not null,
   constraint nflow_archive_workflow_uniq unique (type, external_id, executor_group)
 );
 
@@ -17,6 +17,7 @@ create table nflow_workflow (
   modified timestamp default current_timestamp not null,
   executor_group varchar(64) not null,
   workflow_signal int,
+  priority smallint default 0 not null,
   constraint nflow_workflow_uniq unique (type, external_id, executor_group),
   constraint status_enum check (status in ('created', 'executing', 'inProgress', 'finished', 'manual'))
 )
@@ -25,6 +26,9 @@ create table nflow_workflow (
 create index nflow_workflow_activation on nflow_workflow (next_activation)
 /
 
+create index nflow_workflow_polling on nflow_workflow (priority desc, next_activation)
+/
+
 create sequence nflow_workflow_id_seq
 /
 
@@ -95,7 +99,11 @@ create table nflow_executor (
   executor_group varchar(64),
   started timestamp default current_timestamp not null,
   active timestamp not null,
-  expires timestamp not null
+  expires timestamp not null,
+  thread_count int,
+  busy_threads int,
+  queue_size int,
+  throughput int
 )
 /
 
@@ -111,6 +119,27 @@ begin
 end;
 /
 
+create table nflow_activation (
+  id int not null primary key,
+  executor_group varchar(64) not null
+)
+/
+
+create index nflow_activation_group on nflow_activation(executor_group, id)
+/
+
+create sequence nflow_activation_id_seq
+/
+
+create or replace trigger nflow_activation_insert
+  before insert on nflow_activation
+  for each row
+declare
+begin
+  :new.id := nflow_activation_id_seq.nextval;
+end;
+/
+
 create table nflow_workflow_definition (
   type varchar(64) not null,
   definition_sha1 varchar(40) not null,
@@ -158,6 +187,7 @@ create table nflow_archive_workflow (
   modified timestamp not null,
   executor_group varchar(64) not null,
   workflow_signal int,
+  priority smallint not null,
   constraint nflow_archive_workflow_uniq unique (type, external_id, executor_group)
 )
 /
@@ -20,6 +20,7 @@ create table if not exists nflow_workflow (
   modified timestamptz not null default current_timestamp,
   executor_group varchar(64) not null,
   workflow_signal int,
+  priority smallint not null default 0,
   constraint nflow_workflow_uniq unique (type, external_id, executor_group)
 );
 
@@ -38,6 +39,8 @@ create trigger update_nflow_modified before update on nflow_workflow for each ro
 drop index nflow_workflow_activation;
 create index nflow_workflow_activation on nflow_workflow(next_activation, modified);
 
+create index nflow_workflow_polling on nflow_workflow(priority desc, next_activation);
+
 create type action_type as enum ('stateExecution', 'stateExecutionFailed', 'recovery', 'externalChange');
 create table if not exists nflow_workflow_action (
   id serial primary key,
@@ -75,9 +78,20 @@ create table if not exists nflow_executor (
   executor_group varchar(64),
   started timestamptz not null default current_timestamp,
   active timestamptz not null,
-  expires timestamptz not null
+  expires timestamptz not null,
+  thread_count int,
+  busy_threads int,
+  queue_size int,
+  throughput int
 );
 
+create table if not exists nflow_activation (
+  id serial primary key,
+  executor_group varchar(64) not null
+);
+
+create index nflow_activation_group on nflow_activation(executor_group, id);
+
 create table if not exists nflow_workflow_definition (
   type varchar(64) not null,
   definition_sha1 varchar(40) not null,
@@ -119,6 +133,7 @@ create table if not exists nflow_archive_workflow (
   modified timestamptz not null,
   executor_group varchar(64) not null,
   workflow_signal int,
+  priority smallint not null,
   constraint nflow_archive_workflow_uniq unique (type, external_id, executor_group)
 );
 
@@ -0,0 +1,16 @@
+create table if not exists nflow_activation (
+  id int not null auto_increment primary key,
+  executor_group varchar(64) not null
+);
+
+create index if not exists nflow_activation_group on nflow_activation(executor_group, id);
+
+alter table nflow_workflow add priority smallint not null default 0;
+alter table nflow_archive_workflow add priority smallint not null default 0;
+
+create index if not exists nflow_workflow_polling on nflow_workflow(priority desc, next_activation);
+
+alter table nflow_executor add thread_count int;
+alter table nflow_executor add busy_threads int;
+alter table nflow_executor add queue_size int;
+alter table nflow_executor add throughput int;
@@ -0,0 +1,41 @@
+create table nflow_activation (
+  id int not null primary key,
+  executor_group varchar(64) not null
+)
+/
+
+create index nflow_activation_group on nflow_activation(executor_group, id)
+/
+
+create sequence nflow_activation_id_seq
+/
+
+create or replace trigger nflow_activation_insert
+  before insert on nflow_activation
+  for each row
+declare
+begin
+  :new.id := nflow_activation_id_seq.nextval;
+end;
+/
+
+alter table nflow_workflow add priority smallint default 0 not null
+/
+
+alter table nflow_archive_workflow add priority smallint default 0 not null
+/
+
+create index nflow_workflow_polling on nflow_workflow (priority desc, next_activation)
+/
+
+alter table nflow_executor add thread_count int
+/
+
+alter table nflow_executor add busy_threads int
+/
+
+alter table nflow_executor add queue_size int
+/
+
+alter table nflow_executor add throughput int
+/
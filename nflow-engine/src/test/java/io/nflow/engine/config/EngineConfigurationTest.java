@@ -4,8 +4,10 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
 
 import org.joda.time.DateTime;
@@ -15,6 +17,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.mock.env.MockEnvironment;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
@@ -33,23 +36,44 @@ public class EngineConfigurationTest {
       .withProperty("nflow.dispatcher.executor.thread.keepalive.seconds", "0");
   @Mock
   private ThreadFactory threadFactory;
+  @Mock
+  private ObjectProvider<ExecutorService> executorServiceProvider;
+  @Mock
+  private ExecutorService executorService;
 
   @InjectMocks
   private final EngineConfiguration configuration = new EngineConfiguration();
 
   @Test
   public void dispatcherPoolExecutorInstantiationFromThreads() {
-    WorkflowInstanceExecutor executor = configuration.nflowExecutor(threadFactory, environment);
+    WorkflowInstanceExecutor executor = configuration.nflowExecutor(threadFactory, environment, executorServiceProvider);
     assertThat(executor.getQueueRemainingCapacity(), is(200));
   }
 
   @Test
   public void dispatcherPoolExecutorInstantiationFromQueueSize() {
     environment.setProperty("nflow.dispatcher.executor.queue.size", "10");
-    WorkflowInstanceExecutor executor = configuration.nflowExecutor(threadFactory, environment);
+    WorkflowInstanceExecutor executor = configuration.nflowExecutor(threadFactory, environment, executorServiceProvider);
     assertThat(executor.getQueueRemainingCapacity(), is(10));
   }
 
+  @Test
+  public void dispatcherExecutorInstantiationFromApplicationExecutorService() {
+    when(executorServiceProvider.getIfAvailable()).thenReturn(executorService);
+    WorkflowInstanceExecutor executor = configuration.nflowExecutor(threadFactory, environment, executorServiceProvider);
+    assertThat(executor.getThreadCount(), is(300));
+    assertThat(executor.getRemainingCapacity(), is(300));
+    assertThat(executor.getRemainingCapacityAtThreshold(), is(150));
+  }
+
+  @Test
+  public void dispatcherExecutorInstantiationFromApplicationExecutorServiceWithMaxInFlight() {
+    environment.setProperty("nflow.dispatcher.executor.inflight.max", "1000");
+    when(executorServiceProvider.getIfAvailable()).thenReturn(executorService);
+    WorkflowInstanceExecutor executor = configuration.nflowExecutor(threadFactory, environment, executorServiceProvider);
+    assertThat(executor.getRemainingCapacity(), is(1000));
+  }
+
   @Test
   public void nonSpringWorkflowsListingNotInstantiated() throws IOException {
     assertEquals(configuration.nflowNonSpringWorkflowsListing(environment).contentLength(), 0L);
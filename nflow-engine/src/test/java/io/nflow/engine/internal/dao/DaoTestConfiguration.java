@@ -9,7 +9,6 @@ import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
-import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
@@ -17,7 +16,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
 
 import io.nflow.engine.config.NFlow;
-import io.nflow.engine.internal.executor.WorkflowInstanceExecutor;
 import io.nflow.engine.config.db.H2DatabaseConfiguration;
 import io.nflow.engine.config.db.H2DatabaseConfiguration.H2SQLVariants;
 import io.nflow.engine.internal.workflow.ObjectStringMapper;
@@ -80,11 +78,6 @@ public class DaoTestConfiguration {
     return mapper;
   }
 
-  @Bean
-  public WorkflowInstanceExecutor workflowInstanceExecutor() {
-    return new WorkflowInstanceExecutor(10, 1, 5, 10, 10, new CustomizableThreadFactory("junit-"));
-  }
-
   @Bean
   public WorkflowInstanceFactory workflowInstanceFactory() {
     return new WorkflowInstanceFactory(new ObjectStringMapper(objectMapper()));
@@ -2,8 +2,6 @@ package io.nflow.engine.internal.dao;
 
 import static org.hamcrest.Matchers.is;
 import static org.joda.time.DateTime.now;
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertThat;
 
 import java.util.List;
@@ -12,24 +10,40 @@ import javax.inject.Inject;
 
 import org.joda.time.DateTime;
 import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
 
+import io.nflow.engine.internal.executor.ExecutorLoad;
+import io.nflow.engine.internal.storage.db.SQLVariants;
 import io.nflow.engine.workflow.executor.WorkflowExecutor;
 
 public class ExecutorDaoTest extends BaseDaoTest {
 
   @Inject
   ExecutorDao dao;
+  @Inject
+  SQLVariants sqlVariants;
+  ExecutorLoad load = new ExecutorLoad(4, 3, 10, 120);
 
   @Test
-  public void tickCausesDeadNodeRecoveryPeriodically() {
-    DateTime firstNextUpdate = dao.getMaxWaitUntil();
-    boolean updated = dao.tick();
-    assertThat(updated, is(true));
-    DateTime secondNextUpdate = dao.getMaxWaitUntil();
-    assertNotEquals(firstNextUpdate, secondNextUpdate);
-    updated = dao.tick();
-    assertThat(updated, is(false));
-    assertEquals(secondNextUpdate, dao.getMaxWaitUntil());
+  public void updateActiveTimestampRenewsLease() {
+    dao.getExecutorId();
+    dao.updateActiveTimestamp(load);
+
+    assertThat(dao.hasValidLease(), is(true));
+  }
+
+  @Test
+  public void leaseExpiresOneKeepaliveIntervalBeforeExecutorExpires() {
+    MockEnvironment env = new MockEnvironment();
+    env.setProperty("nflow.executor.group", dao.getExecutorGroup());
+    env.setProperty("nflow.executor.timeout.seconds", "1");
+    env.setProperty("nflow.executor.keepalive.seconds", "1");
+    ExecutorDao executorDao = new ExecutorDao();
+    executorDao.setEnvironment(env);
+    executorDao.setSqlVariants(sqlVariants);
+    executorDao.setJdbcTemplate(jdbc);
+
+    assertThat(executorDao.hasValidLease(), is(false));
   }
 
   @Test
@@ -49,6 +63,26 @@ public class ExecutorDaoTest extends BaseDaoTest {
     assertThat(executor.expires, is(crashedNodeStartTime.plusHours(1)));
   }
 
+  @Test
+  public void getOtherExecutorLoadsReturnsPublishedLoadsOfOtherActiveExecutors() {
+    insertExecutor(dao.getExecutorId(), now().plusHours(1));
+    insertExecutor(dao.getExecutorId() + 1, now().plusHours(1));
+    insertExecutor(dao.getExecutorId() + 2, now().minusHours(1));
+    insertExecutor(dao.getExecutorId() + 3, now().plusHours(1));
+    jdbc.update("update nflow_executor set thread_count = 8, busy_threads = 2, queue_size = 1, throughput = 60 where id <> ?",
+        dao.getExecutorId() + 3);
+
+    dao.updateActiveTimestamp(load);
+    List<ExecutorLoad> loads = dao.getOtherExecutorLoads();
+
+    assertThat(loads.size(), is(1));
+    ExecutorLoad other = loads.get(0);
+    assertThat(other.threadCount, is(8));
+    assertThat(other.busyThreads, is(2));
+    assertThat(other.queueSize, is(1));
+    assertThat(other.throughput, is(60));
+  }
+
   @Test
   public void markShutdownSetsExecutorExpired() {
     jdbc.update(
@@ -60,4 +94,10 @@ public class ExecutorDaoTest extends BaseDaoTest {
 
     assertThat(dao.getExecutors().get(0).expires.isAfterNow(), is(false));
   }
+
+  private void insertExecutor(int id, DateTime expires) {
+    jdbc.update(
+        "insert into nflow_executor (id, host, pid, executor_group, started, active, expires) values (?, ?, ?, ?, ?, ?, ?)", id,
+        "localhost", 666, dao.getExecutorGroup(), now().toDate(), now().toDate(), expires.toDate());
+  }
 }
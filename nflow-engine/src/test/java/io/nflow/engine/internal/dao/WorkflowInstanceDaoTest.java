@@ -14,6 +14,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonMap;
 import static org.apache.commons.lang3.StringUtils.countMatches;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
@@ -58,10 +59,12 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import io.nflow.engine.config.NFlow;
 import io.nflow.engine.internal.dao.WorkflowInstanceDao.WorkflowInstanceActionRowMapper;
-import io.nflow.engine.internal.executor.WorkflowInstanceExecutor;
+import io.nflow.engine.config.db.H2DatabaseConfiguration.H2SQLVariants;
 import io.nflow.engine.config.db.PgDatabaseConfiguration.PostgreSQLVariants;
 import io.nflow.engine.service.WorkflowInstanceInclude;
+import io.nflow.engine.workflow.executor.ActivationNotifier;
 import io.nflow.engine.workflow.instance.QueryWorkflowInstances;
 import io.nflow.engine.workflow.instance.WorkflowInstance;
 import io.nflow.engine.workflow.instance.WorkflowInstanceAction;
@@ -76,7 +79,8 @@ public class WorkflowInstanceDaoTest extends BaseDaoTest {
   @Inject
   TransactionTemplate transaction;
   @Inject
-  WorkflowInstanceExecutor workflowInstanceExecutor;
+  @NFlow
+  ActivationNotifier activationNotifier;
   List<WorkflowInstance> noChildWorkflows = emptyList();
   List<WorkflowInstance> emptyWorkflows = emptyList();
   Map<String, String> emptyVars = emptyMap();
@@ -566,15 +570,16 @@ public class WorkflowInstanceDaoTest extends BaseDaoTest {
     DateTime started = now();
     WorkflowInstance wf = new WorkflowInstance.Builder().setStatus(inProgress).setState("updateState").setStateText("update text")
         .setRootWorkflowId(9283).setParentWorkflowId(110).setParentActionId(421).setNextActivation(started.plusSeconds(1))
-        .setRetries(3).setId(43).putStateVariable("A", "B").putStateVariable("C", "D").setSignal(Optional.of(1)).build();
+        .setRetries(3).setId(43).putStateVariable("A", "B").putStateVariable("C", "D").setSignal(Optional.of(1))
+        .setPriority((short) 2).build();
 
     d.insertWorkflowInstance(wf);
     assertEquals(
         "with wf as (insert into nflow_workflow(type, root_workflow_id, parent_workflow_id, parent_action_id, business_key, "
-            + "external_id, executor_group, status, state, state_text, next_activation, workflow_signal) values "
-            + "(?, ?, ?, ?, ?, ?, ?, ?::workflow_status, ?, ?, ?, ?) returning id), ins12 as "
+            + "external_id, executor_group, status, state, state_text, next_activation, workflow_signal, priority) values "
+            + "(?, ?, ?, ?, ?, ?, ?, ?::workflow_status, ?, ?, ?, ?, ?) returning id), ins13 as "
             + "(insert into nflow_workflow_state(workflow_id, action_id, state_key, state_value) select wf.id,0,?,? from wf), "
-            + "ins14 as (insert into nflow_workflow_state(workflow_id, action_id, state_key, state_value) "
+            + "ins15 as (insert into nflow_workflow_state(workflow_id, action_id, state_key, state_value) "
             + "select wf.id,0,?,? from wf) select wf.id from wf",
         sql.getValue());
     assertThat(args.getAllValues().size(), is(countMatches(sql.getValue(), "?")));
@@ -592,6 +597,7 @@ public class WorkflowInstanceDaoTest extends BaseDaoTest {
     assertThat(args.getAllValues().get(i++), is((Object) wf.stateText));
     assertThat(args.getAllValues().get(i++), is((Object) new Timestamp(wf.nextActivation.getMillis())));
     assertThat(args.getAllValues().get(i++), is((Object) wf.signal.get()));
+    assertThat(args.getAllValues().get(i++), is((Object) wf.priority));
     assertThat(args.getAllValues().get(i++), is((Object) "A"));
     assertThat(args.getAllValues().get(i++), is((Object) "B"));
     assertThat(args.getAllValues().get(i++), is((Object) "C"));
@@ -619,6 +625,30 @@ public class WorkflowInstanceDaoTest extends BaseDaoTest {
     checkSameWorkflowInfo(i1, createdInstance);
   }
 
+  @Test
+  public void getStateVariablesReturnsCurrentValuesOfRequestedStateVariables() {
+    DateTime started = now();
+    final WorkflowInstance i1 = constructWorkflowInstanceBuilder().setStarted(started).build();
+    i1.stateVariables.put("a", "1");
+    i1.stateVariables.put("b", "2");
+    int id = dao.insertWorkflowInstance(i1);
+    final WorkflowInstanceAction a1 = new WorkflowInstanceAction.Builder().setExecutionStart(started).setExecutorId(42)
+        .setExecutionEnd(started.plusMillis(100)).setRetryNo(1).setType(stateExecution).setState("test")
+        .setStateText("state text").setWorkflowInstanceId(id).build();
+    i1.stateVariables.put("b", "3");
+    transaction.execute(new TransactionCallback<Void>() {
+      @Override
+      public Void doInTransaction(TransactionStatus status) {
+        dao.insertWorkflowInstanceAction(i1, a1);
+        return null;
+      }
+    });
+
+    Map<String, String> variables = dao.getStateVariables(id, asList("b", "c"));
+
+    assertThat(variables, is(singletonMap("b", "3")));
+  }
+
   @Test
   public void pollNextWorkflowInstances() {
     WorkflowInstance i1 = constructWorkflowInstanceBuilder().setNextActivation(now().minusMinutes(1)).setExecutorGroup("junit")
@@ -631,6 +661,95 @@ public class WorkflowInstanceDaoTest extends BaseDaoTest {
     assertThat(secondBatch.size(), equalTo(0));
   }
 
+  @Test
+  public void pollNextWorkflowInstancesLoadsInstancesForExecution() {
+    DateTime started = now();
+    WorkflowInstance i1 = constructWorkflowInstanceBuilder().setNextActivation(now().minusMinutes(1)).setExecutorGroup("junit")
+        .build();
+    i1.stateVariables.put("b", "2");
+    int id = dao.insertWorkflowInstance(i1);
+    int actionId = addWorkflowAction(id, i1, started);
+    int childId = addSubWorkflow(id, actionId);
+    jdbc.update("update nflow_workflow set next_activation = null where id = ?", childId);
+
+    List<WorkflowInstance> instances = dao.pollNextWorkflowInstances(100);
+
+    assertThat(instances.size(), is(1));
+    WorkflowInstance polled = instances.get(0);
+    WorkflowInstance loaded = dao.getWorkflowInstance(id, EnumSet.of(WorkflowInstanceInclude.CHILD_WORKFLOW_IDS,
+        WorkflowInstanceInclude.CURRENT_STATE_VARIABLES, WorkflowInstanceInclude.STARTED), null);
+    assertThat(polled.status, is(executing));
+    assertThat(polled, is(loaded));
+    assertThat(polled.childWorkflows.get(actionId), contains(childId));
+    assertThat(polled.stateVariables.get("b"), is("2"));
+    assertThat(polled.originalStateVariables.get("b"), is("2"));
+    assertThat(dao.pollNextWorkflowInstances(100).size(), is(0));
+  }
+
+  @Test
+  public void pollNextWorkflowInstancesInPriorityOrder() {
+    int low = dao.insertWorkflowInstance(
+        constructWorkflowInstanceBuilder().setNextActivation(now().minusMinutes(2)).setExecutorGroup("junit").build());
+    int high = dao.insertWorkflowInstance(constructWorkflowInstanceBuilder().setNextActivation(now().minusMinutes(1))
+        .setExecutorGroup("junit").setPriority((short) 1).build());
+    List<WorkflowInstance> polled = dao.pollNextWorkflowInstances(1);
+    assertThat(polled.get(0).id, is(high));
+    assertThat(polled.get(0).priority, is((short) 1));
+    assertThat(dao.pollNextWorkflowInstances(1).get(0).id, is(low));
+  }
+
+  @Test
+  public void pollNextWorkflowInstancesFromPartition() {
+    for (int i = 0; i < 4; i++) {
+      dao.insertWorkflowInstance(
+          constructWorkflowInstanceBuilder().setNextActivation(now().minusMinutes(1)).setExecutorGroup("junit").build());
+    }
+    List<WorkflowInstance> polled = dao.pollNextWorkflowInstances(100, 1, 2);
+    assertThat(polled.size(), is(2));
+    for (WorkflowInstance instance : polled) {
+      assertThat(instance.id % 2, is(1));
+    }
+    assertThat(dao.pollNextWorkflowInstances(100, 1, 2).size(), is(0));
+    assertThat(dao.pollNextWorkflowInstances(100, 0, 2).size(), is(2));
+  }
+
+  @Test
+  public void pollNextWorkflowInstancesSkipsExcludedTypes() {
+    for (String type : asList("limited", "unlimited")) {
+      dao.insertWorkflowInstance(constructWorkflowInstanceBuilder().setType(type).setNextActivation(now().minusMinutes(1))
+          .setExecutorGroup("junit").build());
+    }
+    List<WorkflowInstance> polled = dao.pollNextWorkflowInstances(100, 0, 1, asList("limited", "it's"));
+    assertThat(polled.size(), is(1));
+    assertThat(polled.get(0).type, is("unlimited"));
+    assertThat(dao.getExecutingWorkflowInstanceCountsByType(), is(singletonMap("unlimited", 1)));
+  }
+
+  @Test
+  public void pollNextWorkflowInstancesOfType() {
+    for (String type : asList("flooding", "other", "flooding")) {
+      dao.insertWorkflowInstance(constructWorkflowInstanceBuilder().setType(type).setNextActivation(now().minusMinutes(1))
+          .setExecutorGroup("junit").build());
+    }
+    List<WorkflowInstance> polled = dao.pollNextWorkflowInstancesOfType(100, 0, 1, "other");
+    assertThat(polled.size(), is(1));
+    assertThat(polled.get(0).type, is("other"));
+    assertThat(dao.pollNextWorkflowInstancesOfType(100, 0, 1, "other").size(), is(0));
+  }
+
+  @Test
+  public void releaseWorkflowInstancesMakesClaimedInstancesPollableAgain() {
+    int id = dao.insertWorkflowInstance(
+        constructWorkflowInstanceBuilder().setNextActivation(now().minusMinutes(1)).setExecutorGroup("junit").build());
+    assertThat(dao.pollNextWorkflowInstances(100).size(), is(1));
+
+    assertThat(dao.releaseWorkflowInstances(asList(id)), is(1));
+
+    WorkflowInstance released = dao.getWorkflowInstance(id, emptySet(), null);
+    assertThat(released.status, is(inProgress));
+    assertThat(dao.pollNextWorkflowInstances(100).size(), is(1));
+  }
+
   @Test
   public void fakePostgreSQLpollNextWorkflowInstances() {
     JdbcTemplate j = mock(JdbcTemplate.class);
@@ -639,13 +758,50 @@ public class WorkflowInstanceDaoTest extends BaseDaoTest {
     when(j.queryForList(sql.capture(), eq(Integer.class))).thenReturn(asList(1, 2, 3));
     assertThat(d.pollNextWorkflowInstanceIds(5), is(asList(1, 2, 3)));
     assertEquals(
-        "update nflow_workflow set executor_id = 42, status = 'executing'::workflow_status, external_next_activation = null where id in (select id from nflow_workflow where executor_id is null and status in ('created'::workflow_status, 'inProgress'::workflow_status) and next_activation <= current_timestamp and group matches order by next_activation asc limit 5) and executor_id is null returning id",
+        "update nflow_workflow set executor_id = 42, status = 'executing'::workflow_status, external_next_activation = null where id in (select id from nflow_workflow where executor_id is null and status in ('created'::workflow_status, 'inProgress'::workflow_status) and next_activation <= current_timestamp and group matches order by priority desc, next_activation asc limit 5) and executor_id is null returning id",
         sql.getValue());
   }
 
+  @Test
+  public void fakePostgreSQLpollNextWorkflowInstancesWithSkipLocked() {
+    JdbcTemplate j = mock(JdbcTemplate.class);
+    WorkflowInstanceDao d = preparePostgreSQLDao(j);
+    d.setSqlVariants(new PostgreSQLVariants(true));
+    ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+    when(j.queryForList(sql.capture(), eq(Integer.class))).thenReturn(asList(1, 2, 3));
+    assertThat(d.pollNextWorkflowInstanceIds(5), is(asList(1, 2, 3)));
+    assertEquals(
+        "update nflow_workflow set executor_id = 42, status = 'executing'::workflow_status, external_next_activation = null where id in (select id from nflow_workflow where executor_id is null and status in ('created'::workflow_status, 'inProgress'::workflow_status) and next_activation <= current_timestamp and group matches order by priority desc, next_activation asc limit 5 for update skip locked) and executor_id is null returning id",
+        sql.getValue());
+  }
+
+  @Test
+  public void pollNextWorkflowInstancesWithLockingQuery() {
+    dao.setSqlVariants(new H2SQLVariants() {
+      @Override
+      public boolean hasSkipLocked() {
+        return true;
+      }
+    });
+    try {
+      for (int i = 0; i < 3; i++) {
+        dao.insertWorkflowInstance(
+            constructWorkflowInstanceBuilder().setNextActivation(now().minusMinutes(1)).setExecutorGroup("junit").build());
+      }
+      List<Integer> firstBatch = dao.pollNextWorkflowInstanceIds(2);
+      List<Integer> secondBatch = dao.pollNextWorkflowInstanceIds(2);
+      assertThat(firstBatch.size(), is(2));
+      assertThat(secondBatch.size(), is(1));
+      assertThat(dao.getWorkflowInstance(secondBatch.get(0), emptySet(), null).status, is(executing));
+      assertThat(dao.pollNextWorkflowInstanceIds(2).size(), is(0));
+    } finally {
+      dao.setSqlVariants(new H2SQLVariants());
+    }
+  }
+
   private WorkflowInstanceDao preparePostgreSQLDao(JdbcTemplate j) {
     WorkflowInstanceDao d = new WorkflowInstanceDao();
-    d.setWorkflowInstanceExecutor(workflowInstanceExecutor);
+    d.setActivationNotifier(activationNotifier);
     d.setSqlVariants(new PostgreSQLVariants());
     ExecutorDao eDao = mock(ExecutorDao.class);
     when(eDao.getExecutorGroupCondition()).thenReturn("group matches");
@@ -828,7 +984,7 @@ public class WorkflowInstanceDaoTest extends BaseDaoTest {
     int updated = jdbc.update("update nflow_workflow set executor_id = ? where id = ?", crashedExecutorId, id);
     assertThat(updated, is(1));
 
-    dao.recoverWorkflowInstancesFromDeadNodes();
+    assertThat(dao.recoverWorkflowInstancesFromDeadNodes(), is(1));
 
     Integer executorId = jdbc.queryForObject("select executor_id from nflow_workflow where id = ?", Integer.class, id);
     assertThat(executorId, is(nullValue()));
@@ -842,8 +998,9 @@ public class WorkflowInstanceDaoTest extends BaseDaoTest {
     assertThat(workflowInstanceAction.executorId, is(executorDao.getExecutorId()));
     assertThat(workflowInstanceAction.type, is(recovery));
     assertThat(workflowInstanceAction.stateText, is("Recovered"));
+    assertThat(workflowInstanceAction.state, is("processing"));
 
-    dao.recoverWorkflowInstancesFromDeadNodes();
+    assertThat(dao.recoverWorkflowInstancesFromDeadNodes(), is(0));
 
     executorId = jdbc.queryForObject("select executor_id from nflow_workflow where id = ?", Integer.class, id);
     assertThat(executorId, is(nullValue()));
@@ -856,6 +1013,24 @@ public class WorkflowInstanceDaoTest extends BaseDaoTest {
     assertThat(workflowInstanceAction.stateText, is("Recovered"));
   }
 
+  @Test
+  public void recoverWorkflowInstancesFromDeadNodesRecoversAllChunks() {
+    int crashedExecutorId = 999;
+    insertCrashedExecutor(crashedExecutorId, executorDao.getExecutorGroup());
+    for (int i = 0; i < 1001; i++) {
+      dao.insertWorkflowInstance(new WorkflowInstance.Builder().setType("test").setExternalId("extId" + i)
+          .setExecutorGroup(executorDao.getExecutorGroup()).setStatus(executing).setState("processing").build());
+    }
+    jdbc.update("update nflow_workflow set executor_id = ?", crashedExecutorId);
+
+    assertThat(dao.recoverWorkflowInstancesFromDeadNodes(), is(1001));
+
+    assertThat(jdbc.queryForObject("select count(1) from nflow_workflow where executor_id is null and status = ?", Integer.class,
+        inProgress.name()), is(1001));
+    assertThat(jdbc.queryForObject("select count(1) from nflow_workflow_action where type = ?", Integer.class, recovery.name()),
+        is(1001));
+  }
+
   @Test
   public void settingSignalInsertsAction() {
     WorkflowInstance i = constructWorkflowInstanceBuilder().setBusinessKey("setSignalTest").build();
@@ -0,0 +1,62 @@
+package io.nflow.engine.internal.executor;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class AdaptivePollingControllerTest {
+  AdaptivePollingController controller = new AdaptivePollingController(100, 1000);
+
+  @Test
+  public void emptyPollsBackOffExponentiallyUpToMaximum() {
+    assertThat(controller.noWorkFound(), is(100L));
+    assertThat(controller.noWorkFound(), is(200L));
+    assertThat(controller.noWorkFound(), is(400L));
+    assertThat(controller.noWorkFound(), is(800L));
+    assertThat(controller.noWorkFound(), is(1000L));
+    assertThat(controller.noWorkFound(), is(1000L));
+  }
+
+  @Test
+  public void foundWorkResetsBackOff() {
+    controller.noWorkFound();
+    controller.noWorkFound();
+    controller.workFound();
+    assertThat(controller.noWorkFound(), is(100L));
+  }
+
+  @Test
+  public void backOffIsDisabledWhenMaximumIsNotGreaterThanMinimum() {
+    controller = new AdaptivePollingController(100, 50);
+    assertThat(controller.noWorkFound(), is(100L));
+    assertThat(controller.noWorkFound(), is(100L));
+  }
+
+  @Test
+  public void batchSizeIsRemainingCapacityBeforeCompletionRateIsKnown() {
+    assertThat(controller.nextBatchSize(20, 4, 0), is(20));
+  }
+
+  @Test
+  public void batchSizeIsLimitedByCompletionRate() throws InterruptedException {
+    controller.nextBatchSize(20, 4, 0);
+    Thread.sleep(100);
+    assertThat(controller.nextBatchSize(20, 4, 1), is(4));
+  }
+
+  @Test
+  public void batchSizeIsLimitedByRemainingCapacity() throws InterruptedException {
+    controller.nextBatchSize(20, 4, 0);
+    Thread.sleep(10);
+    assertThat(controller.nextBatchSize(20, 4, 100_000), is(20));
+  }
+
+  @Test
+  public void partitionedBatchSizeIsShareOfCapacity() throws InterruptedException {
+    controller = new AdaptivePollingController(100, 1000, 3);
+    assertThat(controller.nextBatchSize(20, 4, 0), is(7));
+    Thread.sleep(100);
+    assertThat(controller.nextBatchSize(20, 4, 1), is(2));
+  }
+}
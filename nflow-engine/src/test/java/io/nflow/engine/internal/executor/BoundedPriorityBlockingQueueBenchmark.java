@@ -0,0 +1,76 @@
+package io.nflow.engine.internal.executor;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the task hand-off throughput of the executor queue between one dispatcher thread and 64 executor threads. The
+ * dispatcher yields when the queue is full. LinkedBlockingQueue is included as a baseline. Run with the main method using the
+ * test classpath.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoundedPriorityBlockingQueueBenchmark {
+  private static final Runnable TASK = () -> {
+    // no-op
+  };
+
+  @Param({ "priority", "linked" })
+  public String queueType;
+
+  private BlockingQueue<Runnable> queue;
+
+  @Setup
+  public void setup() {
+    if ("linked".equals(queueType)) {
+      queue = new LinkedBlockingQueue<>(1024);
+    } else {
+      queue = new BoundedPriorityBlockingQueue<>(1024, (r1, r2) -> 0);
+    }
+  }
+
+  @Benchmark
+  @Group("handoff")
+  @GroupThreads(1)
+  public boolean dispatch() {
+    if (queue.offer(TASK)) {
+      return true;
+    }
+    Thread.yield();
+    return false;
+  }
+
+  @Benchmark
+  @Group("handoff")
+  @GroupThreads(64)
+  public Runnable execute() throws InterruptedException {
+    return queue.poll(1, MILLISECONDS);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(BoundedPriorityBlockingQueueBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,64 @@
+package io.nflow.engine.internal.executor;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class BoundedPriorityBlockingQueueTest {
+  BoundedPriorityBlockingQueue<Integer> q = new BoundedPriorityBlockingQueue<>(3);
+
+  @Test
+  public void worksAsQueue() throws InterruptedException {
+    assertThat(q.isEmpty(), is(true));
+    assertThat(q.offer(1), is(true));
+    q.put(2);
+    assertThat(q.offer(3), is(true));
+    assertThat(q.size(), is(3));
+    assertThat(q.remainingCapacity(), is(0));
+    assertThat(q.offer(4), is(false));
+    assertThat(q.offer(4, 5, MILLISECONDS), is(false));
+    assertThat(q.peek(), is(1));
+    assertThat(q.take(), is(1));
+    assertThat(q.poll(), is(2));
+    assertThat(q.poll(5, MILLISECONDS), is(3));
+
+    ArrayList<Integer> l = new ArrayList<>();
+    q.put(1);
+    assertThat(q.iterator().next(), is(1));
+    q.drainTo(l);
+    assertThat(l, is(asList(1)));
+
+    l.clear();
+    q.put(2);
+    q.put(3);
+    q.drainTo(l, 1);
+    assertThat(l, is(asList(2)));
+  }
+
+  @Test
+  public void elementsAreTakenInComparatorOrderAndThenInInsertionOrder() throws InterruptedException {
+    BoundedPriorityBlockingQueue<String> pq = new BoundedPriorityBlockingQueue<>(4, (s1, s2) -> Character.compare(s1.charAt(0), s2.charAt(0)));
+    pq.put("b1");
+    pq.put("a1");
+    pq.put("b2");
+    pq.put("a2");
+    assertThat(pq.iterator().next(), is("a1"));
+    assertThat(pq.take(), is("a1"));
+    assertThat(pq.poll(), is("a2"));
+    assertThat(pq.remove("b2"), is(true));
+    assertThat(pq.poll(5, MILLISECONDS), is("b1"));
+    assertThat(pq.isEmpty(), is(true));
+  }
+
+  @Test
+  public void waitingTimeOfConsumersIsMeasured() throws InterruptedException {
+    assertThat(q.getTotalWaitMillis(), is(0L));
+    q.poll(50, MILLISECONDS);
+    assertThat(q.getTotalWaitMillis() >= 50, is(true));
+  }
+}
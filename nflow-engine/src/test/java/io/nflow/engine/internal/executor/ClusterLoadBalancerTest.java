@@ -0,0 +1,59 @@
+package io.nflow.engine.internal.executor;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class ClusterLoadBalancerTest {
+  ClusterLoadBalancer balancer = new ClusterLoadBalancer();
+
+  @Test
+  public void batchSizeIsNotLimitedWithoutOtherExecutors() {
+    assertThat(balancer.limitBatchSize(100, new ExecutorLoad(10, 10, 50, 0), emptyList()), is(100));
+  }
+
+  @Test
+  public void batchSizeIsLimitedToFairShareByThreadCount() {
+    ExecutorLoad local = new ExecutorLoad(10, 10, 20, 0);
+    ExecutorLoad idle = new ExecutorLoad(10, 0, 0, 0);
+
+    // (30 outstanding + 50 requested) / 2 executors = 40, of which 30 are already claimed
+    assertThat(balancer.limitBatchSize(50, local, asList(idle)), is(10));
+  }
+
+  @Test
+  public void batchSizeIsLimitedToFairShareByThroughputWhenAllExecutorsReportIt() {
+    ExecutorLoad local = new ExecutorLoad(10, 10, 0, 300);
+    ExecutorLoad slow = new ExecutorLoad(10, 10, 0, 100);
+
+    // (20 outstanding + 40 requested) * 3 / 4 = 45, of which 10 are already claimed
+    assertThat(balancer.limitBatchSize(40, local, asList(slow)), is(35));
+  }
+
+  @Test
+  public void idleThreadsCanAlwaysBeFilled() {
+    ExecutorLoad local = new ExecutorLoad(10, 2, 0, 0);
+    ExecutorLoad busy = new ExecutorLoad(100, 0, 0, 0);
+
+    assertThat(balancer.limitBatchSize(50, local, asList(busy)), is(8));
+  }
+
+  @Test
+  public void overloadedExecutorClaimsOneInstance() {
+    ExecutorLoad local = new ExecutorLoad(10, 10, 100, 0);
+    ExecutorLoad idle = new ExecutorLoad(10, 0, 0, 0);
+
+    assertThat(balancer.limitBatchSize(50, local, asList(idle)), is(1));
+  }
+
+  @Test
+  public void batchSizeIsNeverIncreased() {
+    ExecutorLoad local = new ExecutorLoad(10, 0, 0, 0);
+    ExecutorLoad overloaded = new ExecutorLoad(10, 10, 1000, 0);
+
+    assertThat(balancer.limitBatchSize(20, local, asList(overloaded)), is(20));
+  }
+}
@@ -0,0 +1,51 @@
+package io.nflow.engine.internal.executor;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class FairShareAllocatorTest {
+  FairShareAllocator allocator = new FairShareAllocator();
+
+  @Test
+  public void batchIsSplitByWeights() {
+    Map<String, Integer> allocation = allocator.allocate(40, weights(3, 1));
+    assertThat(allocation.get("a"), is(30));
+    assertThat(allocation.get("b"), is(10));
+  }
+
+  @Test
+  public void smallBatchesRotateBetweenTypes() {
+    Map<String, Integer> total = new LinkedHashMap<>();
+    for (int i = 0; i < 4; i++) {
+      Map<String, Integer> allocation = allocator.allocate(1, weights(1, 1));
+      assertThat(allocation.values().stream().mapToInt(Integer::intValue).sum(), is(1));
+      allocation.forEach((type, units) -> {
+        allocator.claimed(type, units, units);
+        total.merge(type, units, Integer::sum);
+      });
+    }
+    assertThat(total.get("a"), is(2));
+    assertThat(total.get("b"), is(2));
+  }
+
+  @Test
+  public void drainedTypeLosesDeficit() {
+    allocator.allocate(3, weights(1, 1));
+    allocator.claimed("a", 2, 0);
+    Map<String, Integer> allocation = allocator.allocate(2, weights(1, 1));
+    assertThat(allocation.get("a"), is(1));
+    assertThat(allocation.get("b"), is(1));
+  }
+
+  private static Map<String, Integer> weights(int a, int b) {
+    Map<String, Integer> weights = new LinkedHashMap<>();
+    weights.put("a", a);
+    weights.put("b", b);
+    return weights;
+  }
+}
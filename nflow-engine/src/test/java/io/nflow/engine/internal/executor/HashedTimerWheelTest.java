@@ -0,0 +1,71 @@
+package io.nflow.engine.internal.executor;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class HashedTimerWheelTest {
+  HashedTimerWheel timer = new HashedTimerWheel("test-timer", 5, 4);
+
+  @After
+  public void stop() {
+    timer.stop();
+  }
+
+  @Test
+  public void tasksAreRunInDeadlineOrderAfterTheirDelay() throws InterruptedException {
+    List<Integer> order = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(3);
+    long start = System.nanoTime();
+    timer.schedule(() -> {
+      order.add(3);
+      done.countDown();
+    }, 120);
+    timer.schedule(() -> {
+      order.add(1);
+      done.countDown();
+    }, 10);
+    timer.schedule(() -> {
+      order.add(2);
+      done.countDown();
+    }, 50);
+
+    assertThat(done.await(5, SECONDS), is(true));
+    assertThat(order, contains(1, 2, 3));
+    assertThat((System.nanoTime() - start) / 1_000_000, greaterThanOrEqualTo(120L));
+  }
+
+  @Test
+  public void cancelledTaskIsNotRun() throws InterruptedException {
+    List<Integer> run = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(1);
+    HashedTimerWheel.Timeout timeout = timer.schedule(() -> run.add(1), 10);
+    timer.schedule(done::countDown, 50);
+
+    timeout.cancel();
+
+    assertThat(done.await(5, SECONDS), is(true));
+    assertThat(run, is(empty()));
+    assertThat(timeout.task, is(nullValue()));
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void stoppedTimerRejectsTasks() {
+    timer.stop();
+    timer.schedule(() -> {
+      // never run
+    }, 0);
+  }
+}
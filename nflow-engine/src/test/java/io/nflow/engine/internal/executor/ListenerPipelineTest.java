@@ -0,0 +1,92 @@
+package io.nflow.engine.internal.executor;
+
+import static java.util.Collections.singleton;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.nflow.engine.listener.AbstractWorkflowExecutorListener;
+import io.nflow.engine.listener.WorkflowExecutorListener;
+import io.nflow.engine.listener.WorkflowExecutorListener.ListenerContext;
+import io.nflow.engine.workflow.definition.TestWorkflow;
+
+public class ListenerPipelineTest {
+  private final TestWorkflow definition = new TestWorkflow();
+
+  @Test
+  public void listenerIsNotCalledForHooksItDoesNotOverride() {
+    BeforeProcessingListener listener = new BeforeProcessingListener();
+    ListenerPipeline pipeline = new ListenerPipeline(definition, listener);
+
+    pipeline.beforeProcessing(null);
+    pipeline.afterProcessing(null);
+
+    assertThat(listener.calls, is(1));
+    assertThat(pipeline.processors, is(emptyArray()));
+  }
+
+  @Test
+  public void listenerIsNotCalledForOtherWorkflowTypes() {
+    WorkflowExecutorListener listener = mock(WorkflowExecutorListener.class);
+    when(listener.getWorkflowTypes()).thenReturn(singleton("other"));
+    ListenerPipeline pipeline = new ListenerPipeline(definition, listener);
+
+    assertThat(pipeline.processors, is(emptyArray()));
+  }
+
+  @Test
+  public void listenerIsCalledForListedWorkflowTypes() {
+    WorkflowExecutorListener listener = mock(WorkflowExecutorListener.class);
+    when(listener.getWorkflowTypes()).thenReturn(singleton("test"));
+    ListenerPipeline pipeline = new ListenerPipeline(definition, listener);
+
+    assertThat(pipeline.processors, arrayContaining(listener));
+  }
+
+  @Test
+  public void exceptionFromListenerIsLogged() {
+    WorkflowExecutorListener listener = mock(WorkflowExecutorListener.class);
+    doThrow(RuntimeException.class).when(listener).afterFailure(any(ListenerContext.class), any(Throwable.class));
+    ListenerPipeline pipeline = new ListenerPipeline(definition, listener);
+
+    pipeline.afterFailure(null, new Exception());
+
+    verify(listener).afterFailure(any(), any(Throwable.class));
+  }
+
+  @Test
+  public void pipelineIsCompiledOncePerDefinition() {
+    ListenerPipelines pipelines = new ListenerPipelines(new BeforeProcessingListener());
+
+    ListenerPipeline pipeline = pipelines.get(definition);
+
+    assertThat(pipelines.get(definition), is(sameInstance(pipeline)));
+    assertThat(pipelines.get(new TestWorkflow()), is(not(sameInstance(pipeline))));
+  }
+
+  static class BeforeProcessingListener extends AbstractWorkflowExecutorListener {
+    int calls;
+
+    @Override
+    public void beforeProcessing(ListenerContext listenerContext) {
+      calls++;
+    }
+
+    @Override
+    public Set<String> getWorkflowTypes() {
+      return singleton("test");
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package io.nflow.engine.internal.executor;
+
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class LocalActivationNotifierTest {
+  LocalActivationNotifier notifier = new LocalActivationNotifier();
+  ExecutorService waiter = newSingleThreadExecutor();
+
+  @After
+  public void shutdown() {
+    waiter.shutdownNow();
+  }
+
+  @Test
+  public void awaitTimesOutWithoutActivation() throws InterruptedException {
+    assertThat(notifier.awaitActivation(10), is(false));
+  }
+
+  @Test
+  public void activationBeforeAwaitIsNotLost() throws InterruptedException {
+    notifier.notifyActivation();
+    assertThat(notifier.awaitActivation(10_000), is(true));
+    assertThat(notifier.awaitActivation(10), is(false));
+  }
+
+  @Test
+  public void activationWakesUpWaitingThread() throws Exception {
+    Future<Boolean> result = waiter.submit(() -> notifier.awaitActivation(60_000));
+    Thread.sleep(50);
+    notifier.notifyActivation();
+    assertThat(result.get(5, SECONDS), is(true));
+  }
+
+  @Test
+  public void activationWakesUpAllWaitingThreads() throws Exception {
+    Future<Boolean> result = waiter.submit(() -> notifier.awaitActivation(60_000));
+    Thread.sleep(50);
+    notifier.notifyActivation();
+    assertThat(notifier.awaitActivation(10_000), is(true));
+    assertThat(result.get(5, SECONDS), is(true));
+  }
+
+  @Test
+  public void shutdownWakesUpWaitingThread() throws Exception {
+    Future<Boolean> result = waiter.submit(() -> notifier.awaitActivation(60_000));
+    Thread.sleep(50);
+    notifier.shutdown();
+    assertThat(result.get(5, SECONDS), is(false));
+    assertThat(notifier.awaitActivation(60_000), is(false));
+  }
+}
@@ -0,0 +1,132 @@
+package io.nflow.engine.internal.executor;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.nflow.engine.internal.dao.BaseDaoTest;
+
+public class TableActivationNotifierTest extends BaseDaoTest {
+  @Inject
+  TransactionTemplate transaction;
+  TableActivationNotifier sender;
+  TableActivationNotifier receiver;
+  TableActivationNotifier otherGroup;
+
+  @Before
+  public void setup() {
+    sender = new TableActivationNotifier(jdbc, "junit", 10);
+    receiver = new TableActivationNotifier(jdbc, "junit", 10);
+    otherGroup = new TableActivationNotifier(jdbc, "other", 10);
+  }
+
+  @After
+  public void shutdown() {
+    sender.shutdown();
+    receiver.shutdown();
+    otherGroup.shutdown();
+  }
+
+  @Test
+  public void activationIsDeliveredThroughDatabase() throws InterruptedException {
+    sender.notifyActivation();
+    assertThat(receiver.awaitActivation(5_000), is(true));
+    assertThat(receiver.awaitActivation(30), is(false));
+  }
+
+  @Test
+  public void activationOfOtherExecutorGroupIsIgnored() throws InterruptedException {
+    sender.notifyActivation();
+    assertThat(otherGroup.awaitActivation(30), is(false));
+  }
+
+  @Test
+  public void oldActivationsAreDeleted() throws InterruptedException {
+    notifyInTransaction();
+    notifyInTransaction();
+    assertThat(receiver.awaitActivation(5_000), is(true));
+    assertThat(jdbc.queryForObject("select count(*) from nflow_activation", Integer.class), is(1));
+  }
+
+  @Test
+  public void activationsOfTransactionAreInsertedOnceInTheTransaction() throws InterruptedException {
+    transaction.execute(status -> {
+      sender.notifyActivation();
+      sender.notifyActivation();
+      assertThat(activationCount(), is(1));
+      return null;
+    });
+    assertThat(activationCount(), is(1));
+    assertThat(receiver.awaitActivation(5_000), is(true));
+  }
+
+  @Test
+  public void activationsOfRolledBackTransactionAreNotInserted() throws InterruptedException {
+    transaction.execute(status -> {
+      sender.notifyActivation();
+      status.setRollbackOnly();
+      return null;
+    });
+    assertThat(activationCount(), is(0));
+    assertThat(receiver.awaitActivation(30), is(false));
+  }
+
+  @Test
+  public void activationsOfConsecutiveTransactionsAreNotCoalesced() {
+    notifyInTransaction();
+    notifyInTransaction();
+    assertThat(activationCount(), is(2));
+  }
+
+  @Test
+  public void activationOutsideTransactionIsInsertedByCheckerThread() throws InterruptedException {
+    sender.notifyActivation();
+    sender.notifyActivation();
+    assertThat(receiver.awaitActivation(5_000), is(true));
+    sender.shutdown();
+    assertThat(activationCount(), is(1));
+  }
+
+  @Test
+  public void activationBeforeFirstCheckIsDelivered() throws InterruptedException {
+    sender.notifyActivation();
+    assertThat(receiver.awaitActivation(5_000), is(true));
+  }
+
+  @Test
+  public void oneCheckWakesUpAllWaitingThreads() throws Exception {
+    receiver.awaitActivation(0);
+    ExecutorService threads = newFixedThreadPool(2);
+    try {
+      Future<Boolean> first = threads.submit(() -> receiver.awaitActivation(5_000));
+      Future<Boolean> second = threads.submit(() -> receiver.awaitActivation(5_000));
+      Thread.sleep(50);
+      sender.notifyActivation();
+      assertThat(first.get(), is(true));
+      assertThat(second.get(), is(true));
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  private void notifyInTransaction() {
+    transaction.execute(status -> {
+      sender.notifyActivation();
+      return null;
+    });
+  }
+
+  private int activationCount() {
+    return jdbc.queryForObject("select count(*) from nflow_activation", Integer.class);
+  }
+}
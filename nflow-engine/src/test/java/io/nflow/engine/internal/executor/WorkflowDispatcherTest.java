@@ -1,23 +1,41 @@
 package io.nflow.engine.internal.executor;
 
 import static edu.umd.cs.mtc.TestFramework.runOnce;
+import static java.lang.Thread.currentThread;
 import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.joda.time.DateTime.now;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.slf4j.Logger.ROOT_LOGGER_NAME;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -46,6 +64,7 @@ import io.nflow.engine.internal.dao.ExecutorDao;
 import io.nflow.engine.internal.dao.WorkflowInstanceDao;
 import io.nflow.engine.listener.WorkflowExecutorListener;
 import io.nflow.engine.service.WorkflowDefinitionService;
+import io.nflow.engine.workflow.instance.WorkflowInstance;
 
 @RunWith(MockitoJUnitRunner.class)
 public class WorkflowDispatcherTest {
@@ -65,20 +84,34 @@ public class WorkflowDispatcherTest {
   Appender<ILoggingEvent> mockAppender;
   @Captor
   ArgumentCaptor<ILoggingEvent> loggingEventCaptor;
+  LocalActivationNotifier activationNotifier = new LocalActivationNotifier();
 
   @Before
   public void setup() {
     env.setProperty("nflow.autoinit", "true");
     env.setProperty("nflow.dispatcher.sleep.ms", "0");
+    env.setProperty("nflow.dispatcher.pipelined", "false");
+    env.setProperty("nflow.dispatcher.threads", "1");
+    env.setProperty("nflow.dispatcher.fairshare", "false");
+    env.setProperty("nflow.dispatcher.loadbalancing", "false");
+    env.setProperty("nflow.dispatcher.await.termination.seconds", "1");
     env.setProperty("nflow.dispatcher.executor.queue.wait_until_threshold", "0");
     env.setProperty("nflow.illegal.state.change.action", "ignore");
     env.setProperty("nflow.unknown.workflow.type.retry.delay.minutes", "60");
     env.setProperty("nflow.unknown.workflow.state.retry.delay.minutes", "60");
     env.setProperty("nflow.executor.stuckThreadThreshold.seconds", "60");
     env.setProperty("nflow.executor.stateSaveRetryDelay.seconds", "60");
+    env.setProperty("nflow.executor.localContinuation.max.ms", "0");
+    env.setProperty("nflow.executor.asyncState.timeout.seconds", "300");
+    env.setProperty("nflow.executor.stateVariables.lazy", "false");
+    env.setProperty("nflow.executor.asyncState.maxSuspended", "1000");
+    env.setProperty("nflow.executor.timeout.seconds", "900");
+    env.setProperty("nflow.executor.keepalive.seconds", "60");
     when(executorDao.isTransactionSupportEnabled()).thenReturn(true);
+    when(executorDao.hasValidLease()).thenReturn(true);
     executor = new WorkflowInstanceExecutor(3, 2, 0, 10, 0, new CustomizableThreadFactory("nflow-executor-"));
-    dispatcher = new WorkflowDispatcher(executor, workflowInstances, executorFactory, workflowDefinitions, executorDao, env);
+    dispatcher = new WorkflowDispatcher(executor, workflowInstances, executorFactory, workflowDefinitions, executorDao,
+        activationNotifier, env);
     Logger logger = (Logger) getLogger(ROOT_LOGGER_NAME);
     logger.addAppender(mockAppender);
   }
@@ -92,7 +125,15 @@ public class WorkflowDispatcherTest {
   @Test(expected = BeanCreationException.class)
   public void workflowDispatcherCreationFailsWithoutTransactionSupport() {
     when(executorDao.isTransactionSupportEnabled()).thenReturn(false);
-    new WorkflowDispatcher(executor, workflowInstances, executorFactory, workflowDefinitions, executorDao, env);
+    new WorkflowDispatcher(executor, workflowInstances, executorFactory, workflowDefinitions, executorDao,
+        activationNotifier, env);
+  }
+
+  @Test(expected = BeanCreationException.class)
+  public void workflowDispatcherCreationFailsWhenLookAheadIsNotShorterThanExecutorTimeout() {
+    when(workflowInstances.getPollLookAheadSeconds()).thenReturn(900);
+    new WorkflowDispatcher(executor, workflowInstances, executorFactory, workflowDefinitions, executorDao,
+        activationNotifier, env);
   }
 
   @Test
@@ -100,13 +141,13 @@ public class WorkflowDispatcherTest {
     @SuppressWarnings("unused")
     class ExceptionDuringDispatcherExecutionCausesRetry extends MultithreadedTestCase {
       public void threadDispatcher() {
-        when(workflowInstances.pollNextWorkflowInstanceIds(anyInt())).thenReturn(ids(1))
+        when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenReturn(instances(1))
             .thenThrow(new RuntimeException("Expected: exception during dispatcher execution"))
-            .thenAnswer(waitForTickAndAnswer(2, ids(2), this));
+            .thenAnswer(waitForTickAndAnswer(2, instances(2), this));
         WorkflowStateProcessor fakeWorkflowExecutor = fakeWorkflowExecutor(1, noOpRunnable());
-        when(executorFactory.createProcessor(1)).thenReturn(fakeWorkflowExecutor);
+        when(executorFactory.createProcessor(instance(1))).thenReturn(fakeWorkflowExecutor);
         WorkflowStateProcessor fakeWorkflowExecutor2 = fakeWorkflowExecutor(2, noOpRunnable());
-        when(executorFactory.createProcessor(2)).thenReturn(fakeWorkflowExecutor2);
+        when(executorFactory.createProcessor(instance(2))).thenReturn(fakeWorkflowExecutor2);
         dispatcher.run();
       }
 
@@ -117,10 +158,10 @@ public class WorkflowDispatcherTest {
 
       @Override
       public void finish() {
-        verify(workflowInstances, times(3)).pollNextWorkflowInstanceIds(anyInt());
+        verify(workflowInstances, times(3)).pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection());
         InOrder inOrder = inOrder(executorFactory);
-        inOrder.verify(executorFactory).createProcessor(1);
-        inOrder.verify(executorFactory).createProcessor(2);
+        inOrder.verify(executorFactory).createProcessor(instance(1));
+        inOrder.verify(executorFactory).createProcessor(instance(2));
       }
     }
     runOnce(new ExceptionDuringDispatcherExecutionCausesRetry());
@@ -131,7 +172,7 @@ public class WorkflowDispatcherTest {
     @SuppressWarnings("unused")
     class ErrorDuringDispatcherExecutionStopsDispatcher extends MultithreadedTestCase {
       public void threadDispatcher() {
-        when(workflowInstances.pollNextWorkflowInstanceIds(anyInt())).thenThrow(new AssertionError()).thenReturn(ids(1));
+        when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenThrow(new AssertionError()).thenReturn(instances(1));
         try {
           dispatcher.run();
           Assert.fail("Error should stop the dispatcher");
@@ -142,8 +183,8 @@ public class WorkflowDispatcherTest {
 
       @Override
       public void finish() {
-        verify(workflowInstances).pollNextWorkflowInstanceIds(anyInt());
-        verify(executorFactory, never()).createProcessor(anyInt());
+        verify(workflowInstances).pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection());
+        verify(executorFactory, never()).createProcessor(any(WorkflowInstance.class));
       }
     }
     runOnce(new ErrorDuringDispatcherExecutionStopsDispatcher());
@@ -155,8 +196,8 @@ public class WorkflowDispatcherTest {
     class EmptyPollResultCausesNoTasksToBeScheduled extends MultithreadedTestCase {
       @SuppressWarnings("unchecked")
       public void threadDispatcher() {
-        when(workflowInstances.pollNextWorkflowInstanceIds(anyInt())).thenReturn(ids(), ids())
-            .thenAnswer(waitForTickAndAnswer(2, ids(), this));
+        when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenReturn(instances(), instances())
+            .thenAnswer(waitForTickAndAnswer(2, instances(), this));
         dispatcher.run();
       }
 
@@ -167,8 +208,8 @@ public class WorkflowDispatcherTest {
 
       @Override
       public void finish() {
-        verify(workflowInstances, times(3)).pollNextWorkflowInstanceIds(anyInt());
-        verify(executorFactory, never()).createProcessor(anyInt());
+        verify(workflowInstances, times(3)).pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection());
+        verify(executorFactory, never()).createProcessor(any(WorkflowInstance.class));
       }
     }
     runOnce(new EmptyPollResultCausesNoTasksToBeScheduled());
@@ -179,9 +220,9 @@ public class WorkflowDispatcherTest {
     @SuppressWarnings("unused")
     class ShutdownBlocksUntilPoolShutdown extends MultithreadedTestCase {
       public void threadDispatcher() {
-        when(workflowInstances.pollNextWorkflowInstanceIds(anyInt())).thenAnswer(waitForTickAndAnswer(2, ids(1), this));
+        when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenAnswer(waitForTickAndAnswer(2, instances(1), this));
         WorkflowStateProcessor fakeWorkflowExecutor = fakeWorkflowExecutor(1, waitForTickRunnable(3, this));
-        when(executorFactory.createProcessor(anyInt())).thenReturn(fakeWorkflowExecutor);
+        when(executorFactory.createProcessor(any(WorkflowInstance.class))).thenReturn(fakeWorkflowExecutor);
         dispatcher.run();
       }
 
@@ -200,16 +241,16 @@ public class WorkflowDispatcherTest {
     @SuppressWarnings("unused")
     class ShutdownCanBeInterrupted extends MultithreadedTestCase {
       public void threadDispatcher() {
-        when(workflowInstances.pollNextWorkflowInstanceIds(anyInt())).thenAnswer(new Answer<Object>() {
+        when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenAnswer(new Answer<Object>() {
           @Override
           public Object answer(InvocationOnMock invocation) throws Throwable {
             waitForTick(2);
             getThreadByName("threadShutdown").interrupt();
-            return ids(1);
+            return instances(1);
           }
         });
         WorkflowStateProcessor fakeWorkflowExecutor = fakeWorkflowExecutor(1, waitForTickRunnable(3, this));
-        when(executorFactory.createProcessor(anyInt())).thenReturn(fakeWorkflowExecutor);
+        when(executorFactory.createProcessor(any(WorkflowInstance.class))).thenReturn(fakeWorkflowExecutor);
         dispatcher.run();
       }
 
@@ -233,11 +274,12 @@ public class WorkflowDispatcherTest {
       @Override
       public void initialize() {
         poolSpy = Mockito.spy(executor);
-        dispatcher = new WorkflowDispatcher(poolSpy, workflowInstances, executorFactory, workflowDefinitions, executorDao, env);
+        dispatcher = new WorkflowDispatcher(poolSpy, workflowInstances, executorFactory, workflowDefinitions, executorDao,
+        activationNotifier, env);
       }
 
       public void threadDispatcher() {
-        when(workflowInstances.pollNextWorkflowInstanceIds(anyInt())).thenAnswer(waitForTickAndAnswer(2, ids(), this));
+        when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenAnswer(waitForTickAndAnswer(2, instances(), this));
         doThrow(new RuntimeException("Expected: exception on pool shutdown")).when(poolSpy).shutdown();
         dispatcher.run();
       }
@@ -260,7 +302,7 @@ public class WorkflowDispatcherTest {
     @SuppressWarnings("unused")
     class ShutdownCanBeCalledMultipleTimes extends MultithreadedTestCase {
       public void threadDispatcher() throws InterruptedException {
-        when(workflowInstances.pollNextWorkflowInstanceIds(anyInt())).thenAnswer(waitForTickAndAnswer(2, ids(), this));
+        when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenAnswer(waitForTickAndAnswer(2, instances(), this));
         dispatcher.run();
       }
 
@@ -279,13 +321,149 @@ public class WorkflowDispatcherTest {
   }
 
   @Test
-  public void dispatcherLogsWarningWhenAllThreadsArePotentiallyStuck() throws Throwable {
+  public void pipelinedDispatcherPrefetchesNextBatchInBackground() throws InterruptedException {
+    env.setProperty("nflow.dispatcher.pipelined", "true");
+    dispatcher = new WorkflowDispatcher(executor, workflowInstances, executorFactory, workflowDefinitions, executorDao,
+        activationNotifier, env);
+    final List<String> pollingThreads = new CopyOnWriteArrayList<>();
+    when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenAnswer(invocation -> {
+      pollingThreads.add(currentThread().getName());
+      return pollingThreads.size() == 1 ? instances(1) : pollingThreads.size() == 2 ? instances(2) : instances();
+    });
+    WorkflowStateProcessor fakeWorkflowExecutor = fakeWorkflowExecutor(1, noOpRunnable());
+    when(executorFactory.createProcessor(instance(1))).thenReturn(fakeWorkflowExecutor);
+    WorkflowStateProcessor fakeWorkflowExecutor2 = fakeWorkflowExecutor(2, noOpRunnable());
+    when(executorFactory.createProcessor(instance(2))).thenReturn(fakeWorkflowExecutor2);
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    verify(executorFactory, timeout(5000)).createProcessor(instance(2));
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
+    assertEquals("dispatcher", pollingThreads.get(0));
+    assertThat(pollingThreads.get(1), startsWith("nflow-dispatcher-poller-"));
+  }
+
+  @Test
+  public void workflowInstancesAreRecoveredFromDeadNodesInBackground() throws InterruptedException {
+    final List<String> recoveryThreads = new CopyOnWriteArrayList<>();
+    final CountDownLatch recovered = new CountDownLatch(1);
+    when(workflowInstances.recoverWorkflowInstancesFromDeadNodes()).thenAnswer(invocation -> {
+      recoveryThreads.add(currentThread().getName());
+      recovered.countDown();
+      return 1;
+    });
+    when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenReturn(instances());
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    assertThat(recovered.await(5, SECONDS), is(true));
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
+    assertThat(recoveryThreads.get(0), startsWith("nflow-recovery-"));
+  }
+
+  @Test
+  public void expiredLeaseStopsClaimingWorkflowInstances() throws InterruptedException {
+    final List<String> heartbeatThreads = new CopyOnWriteArrayList<>();
+    when(executorDao.hasValidLease()).thenReturn(false);
+    doAnswer(invocation -> heartbeatThreads.add(currentThread().getName())).when(executorDao)
+        .updateActiveTimestamp(any(ExecutorLoad.class));
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    verify(executorDao, timeout(5000)).updateActiveTimestamp(any(ExecutorLoad.class));
+    verify(executorDao, timeout(5000).atLeast(2)).hasValidLease();
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
+    verify(workflowInstances, never()).pollNextWorkflowInstances(anyInt(), anyInt(), anyInt(), anyCollection());
+    assertThat(heartbeatThreads.get(0), startsWith("nflow-heartbeat-"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void instancesClaimedBeforeActivationAreScheduled() throws InterruptedException {
+    WorkflowInstance upcoming = new WorkflowInstance.Builder().setId(3).setType("test").setNextActivation(now().plusSeconds(2))
+        .build();
+    when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenReturn(asList(upcoming),
+        instances());
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    verify(executorFactory, timeout(5000)).scheduleProcessor(upcoming, 0);
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
+    verify(executorFactory, never()).createProcessor(any(WorkflowInstance.class));
+    verify(executorFactory).stopLocalContinuations();
+  }
+
+  @Test
+  public void pollThatFoundOnlyUpcomingInstancesWaitsForActivation() throws InterruptedException {
+    env.setProperty("nflow.dispatcher.sleep.ms", "10000");
+    dispatcher = new WorkflowDispatcher(executor, workflowInstances, executorFactory, workflowDefinitions, executorDao,
+        activationNotifier, env);
+    WorkflowInstance upcoming = new WorkflowInstance.Builder().setId(3).setType("test").setNextActivation(now().plusSeconds(2))
+        .build();
+    when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenReturn(asList(upcoming));
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    verify(executorFactory, timeout(5000)).scheduleProcessor(upcoming, 0);
+    verify(workflowInstances, after(300).times(1)).pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection());
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
+  }
+
+  @Test
+  public void scheduledInstancesReduceThePollBatchSize() throws InterruptedException {
+    when(executorFactory.getLocalContinuationCount()).thenReturn(3);
+    when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenReturn(instances());
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    verify(workflowInstances, timeout(5000).atLeastOnce()).pollNextWorkflowInstances(eq(2), eq(0), eq(1), anyCollection());
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
+    verify(workflowInstances, never()).pollNextWorkflowInstances(eq(5), anyInt(), anyInt(), anyCollection());
+  }
+
+  @Test
+  public void fullTimerWheelStopsPolling() throws InterruptedException {
+    when(executorFactory.getLocalContinuationCount()).thenReturn(5);
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    verify(executorFactory, timeout(5000).atLeast(2)).getLocalContinuationCount();
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
+    verify(workflowInstances, never()).pollNextWorkflowInstances(anyInt(), anyInt(), anyInt(), anyCollection());
+  }
+
+  @Test
+  public void suspendedInstancesLimitThePollBatchSize() throws InterruptedException {
+    env.setProperty("nflow.executor.asyncState.maxSuspended", "4");
+    dispatcher = new WorkflowDispatcher(executor, workflowInstances, executorFactory, workflowDefinitions, executorDao,
+        activationNotifier, env);
+    when(executorFactory.getSuspendedCount()).thenReturn(3);
+    when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenReturn(instances());
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    verify(workflowInstances, timeout(5000).atLeastOnce()).pollNextWorkflowInstances(eq(1), eq(0), eq(1), anyCollection());
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
+    verify(workflowInstances, never()).pollNextWorkflowInstances(eq(5), anyInt(), anyInt(), anyCollection());
+  }
+
+  @Test
+  public void claimedInstancesThatWereNotStartedAreReleasedOnShutdown() throws Throwable {
     @SuppressWarnings("unused")
-    class DispatcherLogsWarning extends MultithreadedTestCase {
-      public void threadDispatcher() throws InterruptedException {
-        when(workflowInstances.pollNextWorkflowInstanceIds(anyInt()))
-            .thenAnswer(waitForTickAndAnswer(2, Collections.<Integer> emptyList(), this));
-        when(executorFactory.getPotentiallyStuckProcessors()).thenReturn(executor.getThreadCount());
+    class ClaimedInstancesThatWereNotStartedAreReleasedOnShutdown extends MultithreadedTestCase {
+      private WorkflowInstanceExecutor poolSpy;
+
+      @Override
+      public void initialize() {
+        poolSpy = Mockito.spy(executor);
+        dispatcher = new WorkflowDispatcher(poolSpy, workflowInstances, executorFactory, workflowDefinitions, executorDao,
+            activationNotifier, env);
+      }
+
+      public void threadDispatcher() {
+        when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection())).thenAnswer(waitForTickAndAnswer(2, instances(), this));
+        doReturn(asList(1, 2)).when(poolSpy).shutdown();
+        when(executorFactory.stopLocalContinuations()).thenReturn(asList(3));
         dispatcher.run();
       }
 
@@ -296,17 +474,51 @@ public class WorkflowDispatcherTest {
 
       @Override
       public void finish() {
-        verify(mockAppender, atLeast(1)).doAppend(loggingEventCaptor.capture());
-        for (ILoggingEvent event : loggingEventCaptor.getAllValues()) {
-          if (event.getLevel().equals(Level.WARN) && event.getFormattedMessage()
-              .equals("2 of 2 state processor threads are potentially stuck (processing longer than 60 seconds)")) {
-            return;
-          }
-        }
-        Assert.fail("Expected warning was not logged");
+        verify(workflowInstances).releaseWorkflowInstances(argThat((Collection<Integer> ids) -> ids.size() == 3 && ids.containsAll(asList(1, 2, 3))));
+        verify(executorDao).markShutdown();
       }
     }
-    runOnce(new DispatcherLogsWarning());
+    runOnce(new ClaimedInstancesThatWereNotStartedAreReleasedOnShutdown());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void dispatcherThreadsPollSeparatePartitions() throws InterruptedException {
+    env.setProperty("nflow.dispatcher.threads", "2");
+    dispatcher = new WorkflowDispatcher(executor, workflowInstances, executorFactory, workflowDefinitions, executorDao,
+        activationNotifier, env);
+    final List<String> partition1Threads = new CopyOnWriteArrayList<>();
+    when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(2), anyCollection())).thenReturn(instances(2), instances());
+    when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(1), eq(2), anyCollection())).thenAnswer(invocation -> {
+      partition1Threads.add(currentThread().getName());
+      return partition1Threads.size() == 1 ? instances(1) : instances();
+    });
+    WorkflowStateProcessor fakeWorkflowExecutor = fakeWorkflowExecutor(1, noOpRunnable());
+    when(executorFactory.createProcessor(instance(1))).thenReturn(fakeWorkflowExecutor);
+    WorkflowStateProcessor fakeWorkflowExecutor2 = fakeWorkflowExecutor(2, noOpRunnable());
+    when(executorFactory.createProcessor(instance(2))).thenReturn(fakeWorkflowExecutor2);
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    verify(executorFactory, timeout(5000)).createProcessor(instance(1));
+    verify(executorFactory, timeout(5000)).createProcessor(instance(2));
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
+    assertEquals("nflow-dispatcher-1", partition1Threads.get(0));
+    assertPoolIsShutdown(true);
+    verify(executorDao).markShutdown();
+  }
+
+  @Test
+  public void dispatcherLogsWarningWhenAllThreadsArePotentiallyStuck() throws Throwable {
+    when(workflowInstances.pollNextWorkflowInstances(anyInt(), eq(0), eq(1), anyCollection()))
+        .thenReturn(Collections.<WorkflowInstance> emptyList());
+    when(executorFactory.getPotentiallyStuckProcessors()).thenReturn(executor.getThreadCount());
+    Thread dispatcherThread = new Thread(dispatcher, "dispatcher");
+    dispatcherThread.start();
+    verify(mockAppender, timeout(5000)).doAppend(argThat(event -> event.getLevel().equals(Level.WARN) && event
+        .getFormattedMessage().equals("2 of 2 state processor threads are potentially stuck (processing longer than 60 seconds)")));
+    dispatcher.shutdown();
+    dispatcherThread.join(5000);
   }
 
   void assertPoolIsShutdown(boolean isTrue) {
@@ -340,10 +552,10 @@ public class WorkflowDispatcherTest {
     };
   }
 
-  Answer<List<Integer>> waitForTickAndAnswer(final int tick, final List<Integer> answer, final MultithreadedTestCase mtc) {
-    return new Answer<List<Integer>>() {
+  Answer<List<WorkflowInstance>> waitForTickAndAnswer(final int tick, final List<WorkflowInstance> answer, final MultithreadedTestCase mtc) {
+    return new Answer<List<WorkflowInstance>>() {
       @Override
-      public List<Integer> answer(InvocationOnMock invocation) {
+      public List<WorkflowInstance> answer(InvocationOnMock invocation) {
         mtc.waitForTick(tick);
         return answer;
       }
@@ -354,11 +566,19 @@ public class WorkflowDispatcherTest {
   static class ThreadPoolTaskExecutorWithThresholdQueue extends ThreadPoolTaskExecutor {
     @Override
     protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
-      return new ThresholdBlockingQueue<>(queueCapacity, 0);
+      return new BoundedPriorityBlockingQueue<>(queueCapacity);
+    }
+  }
+
+  static List<WorkflowInstance> instances(Integer... ids) {
+    List<WorkflowInstance> instances = new ArrayList<>();
+    for (Integer id : ids) {
+      instances.add(instance(id));
     }
+    return instances;
   }
 
-  static List<Integer> ids(Integer... ids) {
-    return asList(ids);
+  static WorkflowInstance instance(int id) {
+    return new WorkflowInstance.Builder().setId(id).setNextActivation(null).build();
   }
 }
@@ -1,14 +1,28 @@
 package io.nflow.engine.internal.executor;
 
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.joda.time.DateTime;
 import org.junit.Test;
@@ -40,6 +54,7 @@ public class WorkflowInstanceExecutorTest {
   public void testDummyGetters() {
     WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(3, 2, 1, 3, 4, threadFactory);
     assertThat(t.getQueueRemainingCapacity(), is(3));
+    assertThat(t.getCompletedTaskCount(), is(0L));
   }
 
   @Test
@@ -49,11 +64,225 @@ public class WorkflowInstanceExecutorTest {
     verify(runnable, timeout(1000)).run();
   }
 
+  @Test
+  public void executeDefersRunnablesOfSaturatedWorkflowType() throws InterruptedException {
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(3, 2, 1, 3, 4, new CustomizableThreadFactory("test"));
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    t.execute(() -> {
+      started.countDown();
+      awaitQuietly(release);
+    }, "limited", 1);
+    started.await(5, SECONDS);
+    t.execute(runnable, "limited", 1);
+    assertThat(t.getDeferredCount(), is(1));
+    assertThat(t.getSaturatedWorkflowTypes(), contains("limited"));
+    verify(runnable, after(100).never()).run();
+    release.countDown();
+    verify(runnable, timeout(1000)).run();
+    assertThat(t.getDeferredCount(), is(0));
+  }
+
+  @Test
+  public void deferredRunnableRejectedByFullQueueIsResubmittedWhenCapacityIsFreed() throws InterruptedException {
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(1, 1, 1, 3, 4, new CustomizableThreadFactory("test"));
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    t.execute(() -> {
+      started.countDown();
+      awaitQuietly(release);
+    }, "limited", 1);
+    started.await(5, SECONDS);
+    t.execute(runnable, "limited", 1);
+    t.execute(() -> {
+      // fills the queue, so the deferred runnable is rejected when the first runnable finishes
+    });
+
+    release.countDown();
+
+    verify(runnable, timeout(1000)).run();
+    assertThat(t.getDeferredCount(), is(0));
+    t.shutdown();
+    assertThat(t.getInFlightCount(), is(0));
+    assertThat(t.getSaturatedWorkflowTypes().isEmpty(), is(true));
+  }
+
+  @Test
+  public void heldSlotIsKeptUntilRunnableIsResumed() throws InterruptedException {
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(3, 2, 1, 3, 4, new CustomizableThreadFactory("test"));
+    AtomicReference<WorkflowTypeBulkheads.Slot> slot = new AtomicReference<>();
+    CountDownLatch suspended = new CountDownLatch(1);
+    t.execute(() -> {
+      slot.set(WorkflowTypeBulkheads.holdCurrentSlot());
+      suspended.countDown();
+    }, "limited", 1);
+    suspended.await(5, SECONDS);
+    Runnable resumed = mock(Runnable.class);
+
+    t.execute(runnable, "limited", 1);
+
+    verify(runnable, after(100).never()).run();
+    assertThat(t.getDeferredCount(), is(1));
+    slot.get().resume(resumed);
+    verify(resumed, timeout(1000)).run();
+    verify(runnable, timeout(1000)).run();
+    assertThat(t.getDeferredCount(), is(0));
+    t.shutdown();
+    assertThat(t.getSaturatedWorkflowTypes().isEmpty(), is(true));
+  }
+
+  @Test
+  public void releasingHeldSlotStartsDeferredRunnable() throws InterruptedException {
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(3, 2, 1, 3, 4, new CustomizableThreadFactory("test"));
+    AtomicReference<WorkflowTypeBulkheads.Slot> slot = new AtomicReference<>();
+    CountDownLatch suspended = new CountDownLatch(1);
+    t.execute(() -> {
+      slot.set(WorkflowTypeBulkheads.holdCurrentSlot());
+      suspended.countDown();
+    }, "limited", 1);
+    suspended.await(5, SECONDS);
+    t.execute(runnable, "limited", 1);
+
+    slot.get().release();
+    slot.get().release();
+
+    verify(runnable, timeout(1000)).run();
+    t.shutdown();
+    assertThat(t.getSaturatedWorkflowTypes().isEmpty(), is(true));
+  }
+
+  @Test
+  public void noSlotIsHeldWithoutConcurrencyLimit() throws InterruptedException {
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(3, 2, 1, 3, 4, new CustomizableThreadFactory("test"));
+    AtomicReference<Object> slot = new AtomicReference<>(new Object());
+    CountDownLatch done = new CountDownLatch(1);
+    t.execute(() -> {
+      slot.set(WorkflowTypeBulkheads.holdCurrentSlot());
+      done.countDown();
+    }, "unlimited", 0);
+    done.await(5, SECONDS);
+    assertThat(slot.get(), is(nullValue()));
+    t.shutdown();
+  }
+
+  @Test
+  public void shutdownReturnsInstanceIdsOfQueuedAndDeferredProcessors() throws InterruptedException {
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(3, 1, 1, 1, 4, new CustomizableThreadFactory("test"));
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    t.execute(() -> {
+      started.countDown();
+      awaitQuietly(release);
+    }, "limited", 1);
+    started.await(5, SECONDS);
+    t.execute(processor(1));
+    t.execute(processor(2), "limited", 1);
+
+    List<Integer> unstarted = t.shutdown();
+    release.countDown();
+
+    assertThat(unstarted, containsInAnyOrder(1, 2));
+  }
+
+  @Test
+  public void drainUnstartedRemovesQueuedAndDeferredProcessorsAndFreesTheirConcurrencySlots() throws InterruptedException {
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(3, 1, 1, 1, 4, new CustomizableThreadFactory("test"));
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    t.execute(() -> {
+      started.countDown();
+      awaitQuietly(release);
+    });
+    started.await(5, SECONDS);
+    t.execute(processor(1), "limited", 1);
+    t.execute(processor(2), "limited", 1);
+
+    List<Integer> unstarted = t.drainUnstarted();
+    release.countDown();
+
+    assertThat(unstarted, containsInAnyOrder(1, 2));
+    assertThat(t.getSaturatedWorkflowTypes().isEmpty(), is(true));
+    t.shutdown();
+  }
+
   @Test
   public void testWait() throws InterruptedException {
     WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(3, 2, 1, 3, 4, new CustomizableThreadFactory("test"));
     t.execute(runnable);
-    t.waitUntilQueueSizeLowerThanThreshold(new DateTime().plusSeconds(5));
+    t.waitUntilInFlightLowerThanThreshold(new DateTime().plusSeconds(5));
+  }
+
+  @Test
+  public void inFlightCountIsReleasedWhenStateProcessorFinishes() throws InterruptedException {
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(3, 2, 1, 3, 4, new CustomizableThreadFactory("test"));
+    assertThat(t.getRemainingCapacity(), is(5));
+    assertThat(t.getRemainingCapacityAtThreshold(), is(2));
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    t.execute(() -> {
+      started.countDown();
+      awaitQuietly(release);
+    });
+    started.await(5, SECONDS);
+    assertThat(t.getInFlightCount(), is(1));
+    assertThat(t.getRemainingCapacity(), is(4));
+    release.countDown();
+    t.waitUntilInFlightLowerThanThreshold(new DateTime().plusSeconds(5));
+    t.shutdown();
+    assertThat(t.getInFlightCount(), is(0));
+    assertThat(t.getCompletedTaskCount(), is(1L));
+  }
+
+  @Test
+  public void applicationExecutorServiceRunsStateProcessors() {
+    ExecutorService executorService = newCachedThreadPool();
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(executorService, 4, 2, 3);
+    try {
+      t.execute(runnable);
+      verify(runnable, timeout(1000)).run();
+      assertThat(t.getThreadCount(), is(4));
+    } finally {
+      t.shutdown();
+      executorService.shutdown();
+    }
+    assertThat(executorService.isShutdown(), is(true));
+  }
+
+  @Test
+  public void shutdownTakesBackStateProcessorsNotStartedByApplicationExecutorService() throws InterruptedException {
+    ExecutorService executorService = newSingleThreadExecutor();
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(executorService, 4, 2, 3);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    t.execute(() -> {
+      started.countDown();
+      awaitQuietly(release);
+    });
+    started.await(5, SECONDS);
+    WorkflowStateProcessor queued = processor(1);
+    t.execute(queued);
+    t.execute(processor(2), "limited", 1);
+    assertThat(t.getInFlightCount(), is(3));
+
+    List<Integer> unstarted = t.drainUnstarted();
+    release.countDown();
+    t.shutdown();
+    executorService.shutdown();
+    executorService.awaitTermination(5, SECONDS);
+
+    assertThat(unstarted, containsInAnyOrder(1, 2));
+    assertThat(t.getInFlightCount(), is(0));
+    assertThat(t.getSaturatedWorkflowTypes().isEmpty(), is(true));
+    verify(queued, never()).run();
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void shutdownExecutorRejectsStateProcessors() {
+    ExecutorService executorService = newCachedThreadPool();
+    WorkflowInstanceExecutor t = new WorkflowInstanceExecutor(executorService, 4, 2, 3);
+    t.shutdown();
+    executorService.shutdown();
+    t.execute(runnable);
   }
 
   @Test
@@ -62,4 +291,18 @@ public class WorkflowInstanceExecutorTest {
     t.shutdown();
     assertThat(t.executor.isShutdown(), is(true));
   }
+
+  private static WorkflowStateProcessor processor(int instanceId) {
+    WorkflowStateProcessor processor = mock(WorkflowStateProcessor.class);
+    when(processor.getInstanceId()).thenReturn(instanceId);
+    return processor;
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, SECONDS);
+    } catch (@SuppressWarnings("unused") InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
 }
@@ -1,5 +1,6 @@
 package io.nflow.engine.internal.executor;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.is;
 import static org.joda.time.DateTimeUtils.currentTimeMillis;
 import static org.junit.Assert.assertNotNull;
@@ -7,6 +8,7 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -15,12 +17,15 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.springframework.mock.env.MockEnvironment;
 
+import io.nflow.engine.internal.dao.ExecutorDao;
 import io.nflow.engine.internal.dao.WorkflowInstanceDao;
 import io.nflow.engine.internal.workflow.ObjectStringMapper;
 import io.nflow.engine.internal.workflow.WorkflowInstancePreProcessor;
 import io.nflow.engine.listener.WorkflowExecutorListener;
 import io.nflow.engine.service.WorkflowDefinitionService;
 import io.nflow.engine.service.WorkflowInstanceService;
+import io.nflow.engine.workflow.executor.LongRunningStateProcessor;
+import io.nflow.engine.workflow.instance.WorkflowInstance;
 
 public class WorkflowStateProcessorFactoryTest extends BaseNflowTest {
   @Mock
@@ -33,8 +38,12 @@ public class WorkflowStateProcessorFactoryTest extends BaseNflowTest {
   WorkflowInstanceDao workflowInstanceDao;
   @Mock
   WorkflowInstancePreProcessor workflowInstancePreProcessor;
+  @Mock
+  WorkflowInstanceExecutor executor;
   MockEnvironment env = new MockEnvironment();
   @Mock
+  ExecutorDao executorDao;
+  @Mock
   WorkflowExecutorListener listener1;
   @Mock
   WorkflowExecutorListener listener2;
@@ -49,8 +58,11 @@ public class WorkflowStateProcessorFactoryTest extends BaseNflowTest {
     env.setProperty("nflow.unknown.workflow.state.retry.delay.minutes", "60");
     env.setProperty("nflow.executor.stuckThreadThreshold.seconds", Integer.toString(STUCK_THREAD_THRESHOLD));
     env.setProperty("nflow.executor.stateSaveRetryDelay.seconds", "60");
+    env.setProperty("nflow.executor.localContinuation.max.ms", "0");
+    env.setProperty("nflow.executor.asyncState.timeout.seconds", "300");
+    env.setProperty("nflow.executor.stateVariables.lazy", "false");
     factory = new WorkflowStateProcessorFactory(workflowDefinitions, workflowInstances, objectMapper, workflowInstanceDao,
-        workflowInstancePreProcessor, env);
+        workflowInstancePreProcessor, executor, executorDao, env);
   }
 
   @Test
@@ -66,6 +78,12 @@ public class WorkflowStateProcessorFactoryTest extends BaseNflowTest {
     assertNotNull(executor);
   }
 
+  @Test
+  public void factoryCreatesExecutorsForLoadedInstances() {
+    WorkflowStateProcessor executor = factory.createProcessor(new WorkflowInstance.Builder().setId(12).build());
+    assertNotNull(executor);
+  }
+
   @Test
   public void checkIfStateProcessorsAreStuckLogsLongRunningInstance() {
     WorkflowStateProcessor executor1 = mock(WorkflowStateProcessor.class);
@@ -81,4 +99,44 @@ public class WorkflowStateProcessorFactoryTest extends BaseNflowTest {
     verify(executor1).logPotentiallyStuck(anyLong());
     verify(executor2, never()).logPotentiallyStuck(anyLong());
   }
+
+  @Test
+  public void stackOfLongRunningStateProcessorIsSampledOnce() {
+    WorkflowStateProcessor executor1 = mock(WorkflowStateProcessor.class);
+    when(executor1.getStartTimeSeconds()).thenReturn(currentTimeMillis() / 1000 - STUCK_THREAD_THRESHOLD - 1);
+    when(executor1.logPotentiallyStuck(anyLong())).thenReturn("stack");
+    factory.processingInstances.put(111, executor1);
+
+    factory.getPotentiallyStuckProcessors();
+    factory.getPotentiallyStuckProcessors();
+
+    verify(executor1, times(1)).logPotentiallyStuck(anyLong());
+    LongRunningStateProcessor processor = factory.getLongRunningStateProcessors().get(0);
+    assertThat(processor.workflowInstanceId, is(111));
+    assertThat(processor.stackTrace, is("stack"));
+  }
+
+  @Test
+  public void processingTimeHistogramDoesNotCountRunningStateProcessors() {
+    WorkflowStateProcessor executor1 = mock(WorkflowStateProcessor.class);
+    when(executor1.getStartTimeSeconds()).thenReturn(currentTimeMillis() / 1000 - 20);
+    factory.processingInstances.put(111, executor1);
+
+    factory.getPotentiallyStuckProcessors();
+
+    assertThat(factory.getProcessingTimeHistogram().counts, is(asList(0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L)));
+  }
+
+  @Test
+  public void processingTimeHistogramCountsFinishedStateProcessorExecutions() {
+    factory.createProcessor(111).run();
+    factory.createProcessor(222).run();
+
+    long total = 0;
+    for (long count : factory.getProcessingTimeHistogram().counts) {
+      total += count;
+    }
+    assertThat(total, is(2L));
+    assertThat(factory.getProcessingTimeHistogram().upperBoundsMillis.size(), is(9));
+  }
 }
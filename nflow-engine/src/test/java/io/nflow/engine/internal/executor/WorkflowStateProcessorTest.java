@@ -11,7 +11,9 @@ import static io.nflow.engine.workflow.instance.WorkflowInstance.WorkflowInstanc
 import static io.nflow.engine.workflow.instance.WorkflowInstanceAction.WorkflowActionType.stateExecution;
 import static io.nflow.engine.workflow.instance.WorkflowInstanceAction.WorkflowActionType.stateExecutionFailed;
 import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
@@ -24,6 +26,7 @@ import static org.joda.time.DateTimeUtils.setCurrentMillisSystem;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
@@ -44,6 +47,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
@@ -65,6 +69,7 @@ import org.mockito.hamcrest.MockitoHamcrest;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -144,6 +149,10 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
 
   WorkflowDefinition<NotifyTestWorkflow.State> wakeWf = new NotifyTestWorkflow();
 
+  WorkflowDefinition<DelayTestWorkflow.State> delayWf = new DelayTestWorkflow();
+
+  WorkflowDefinition<AsyncTestWorkflow.State> asyncWf = new AsyncTestWorkflow();
+
   static WorkflowInstance newChildWorkflow = mock(WorkflowInstance.class);
 
   static WorkflowInstance newWorkflow = mock(WorkflowInstance.class);
@@ -164,6 +173,9 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     env.setProperty("nflow.unknown.workflow.type.retry.delay.minutes", "60");
     env.setProperty("nflow.unknown.workflow.state.retry.delay.minutes", "60");
     env.setProperty("nflow.executor.stateSaveRetryDelay.seconds", "1");
+    env.setProperty("nflow.executor.localContinuation.max.ms", "0");
+    env.setProperty("nflow.executor.asyncState.timeout.seconds", "300");
+    env.setProperty("nflow.executor.stateVariables.lazy", "false");
 
     executor = new WorkflowStateProcessor(1, objectMapper, workflowDefinitions, workflowInstances, workflowInstanceDao,
         workflowInstancePreProcessor, env, processingInstances, listener1, listener2);
@@ -172,6 +184,7 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     doReturn(simpleWf).when(workflowDefinitions).getWorkflowDefinition("simple-test");
     doReturn(failingWf).when(workflowDefinitions).getWorkflowDefinition("failing-test");
     doReturn(wakeWf).when(workflowDefinitions).getWorkflowDefinition("wake-test");
+    doReturn(delayWf).when(workflowDefinitions).getWorkflowDefinition("delay-test");
     filterChain(listener1);
     filterChain(listener2);
     when(executionMock.getRetries()).thenReturn(testWorkflowDef.getSettings().maxRetries);
@@ -200,6 +213,146 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     assertThat(workflows.getValue().get(0), is(newWorkflow));
   }
 
+  @Test
+  public void shortTransitionDelayKeepsInstanceClaimedAndContinuesLocally() {
+    env.setProperty("nflow.executor.localContinuation.max.ms", "1000");
+    LocalContinuationScheduler localContinuations = mock(LocalContinuationScheduler.class);
+    WorkflowInstance instance = executingInstanceBuilder().setType("delay-test").setState("start").build();
+    executor = new WorkflowStateProcessor(instance.id, instance, objectMapper, workflowDefinitions, workflowInstances,
+        workflowInstanceDao, workflowInstancePreProcessor, env, processingInstances, localContinuations, listener1, listener2);
+
+    executor.run();
+
+    verify(workflowInstanceDao).updateWorkflowInstanceAfterExecution(
+        MockitoHamcrest.argThat(matchesWorkflowInstance(executing, DelayTestWorkflow.State.process, 0,
+            is("Scheduled by previous state start"))),
+        MockitoHamcrest.argThat(matchesWorkflowInstanceAction(DelayTestWorkflow.State.start, is("Process soon"), 0, stateExecution)),
+        argThat(List::isEmpty), argThat(List::isEmpty), eq(true));
+    verify(localContinuations).schedule(executor, "delay-test", 0, 500L);
+    verifyNoMoreInteractions(workflowInstanceDao);
+  }
+
+  @Test
+  public void longTransitionDelayReleasesInstance() {
+    env.setProperty("nflow.executor.localContinuation.max.ms", "100");
+    LocalContinuationScheduler localContinuations = mock(LocalContinuationScheduler.class);
+    WorkflowInstance instance = executingInstanceBuilder().setType("delay-test").setState("start").build();
+    executor = new WorkflowStateProcessor(instance.id, instance, objectMapper, workflowDefinitions, workflowInstances,
+        workflowInstanceDao, workflowInstancePreProcessor, env, processingInstances, localContinuations, listener1, listener2);
+
+    executor.run();
+
+    verify(workflowInstanceDao).updateWorkflowInstanceAfterExecution(
+        MockitoHamcrest.argThat(matchesWorkflowInstance(inProgress, DelayTestWorkflow.State.process, 0,
+            is("Scheduled by previous state start"))),
+        MockitoHamcrest.argThat(matchesWorkflowInstanceAction(DelayTestWorkflow.State.start, is("Process soon"), 0, stateExecution)),
+        argThat(List::isEmpty), argThat(List::isEmpty), eq(true));
+    verifyNoMoreInteractions(localContinuations);
+  }
+
+  @Test
+  public void asyncStateMethodReleasesThreadAndContinuesWhenCompletionStageCompletes() {
+    LocalContinuationScheduler localContinuations = mock(LocalContinuationScheduler.class);
+    AsyncTestWorkflow.result = new CompletableFuture<>();
+    doReturn(asyncWf).when(workflowDefinitions).getWorkflowDefinition("async-test");
+    WorkflowInstance instance = executingInstanceBuilder().setType("async-test").setState("start").build();
+    executor = new WorkflowStateProcessor(instance.id, instance, objectMapper, workflowDefinitions, workflowInstances,
+        workflowInstanceDao, workflowInstancePreProcessor, env, processingInstances, localContinuations, listener1, listener2);
+
+    executor.run();
+
+    verify(localContinuations).resumeWhenComplete(executor, AsyncTestWorkflow.result, "async-test", 0, 300_000L);
+    verifyNoMoreInteractions(workflowInstanceDao);
+    verify(listener1, never()).afterProcessing(any(ListenerContext.class));
+
+    executor.asyncStateMethodCompleted(moveToStateAfter(AsyncTestWorkflow.State.process, tomorrow, "Remote call done"), null);
+    executor.run();
+
+    verify(workflowInstanceDao).updateWorkflowInstanceAfterExecution(
+        MockitoHamcrest.argThat(matchesWorkflowInstance(inProgress, AsyncTestWorkflow.State.process, 0,
+            is("Scheduled by previous state start"))),
+        MockitoHamcrest.argThat(
+            matchesWorkflowInstanceAction(AsyncTestWorkflow.State.start, is("Remote call done"), 0, stateExecution)),
+        argThat(isEmptyWorkflowList()), argThat(isEmptyWorkflowList()), eq(true));
+    verify(listener1).beforeProcessing(any(ListenerContext.class));
+    verify(listener1).afterProcessing(any(ListenerContext.class));
+  }
+
+  @Test
+  public void asyncStateMethodHoldsConcurrencySlotOfWorkflowType() {
+    LocalContinuationScheduler localContinuations = mock(LocalContinuationScheduler.class);
+    AsyncTestWorkflow.result = new CompletableFuture<>();
+    doReturn(asyncWf).when(workflowDefinitions).getWorkflowDefinition("async-test");
+    WorkflowInstance instance = executingInstanceBuilder().setType("async-test").setState("start").build();
+    executor = new WorkflowStateProcessor(instance.id, instance, objectMapper, workflowDefinitions, workflowInstances,
+        workflowInstanceDao, workflowInstancePreProcessor, env, processingInstances, localContinuations, listener1, listener2);
+    WorkflowInstanceExecutor pool = new WorkflowInstanceExecutor(3, 1, 1, 1, 4, new CustomizableThreadFactory("test"));
+
+    pool.execute(executor, "async-test", 1);
+    pool.shutdown();
+
+    verify(localContinuations).resumeWhenComplete(executor, AsyncTestWorkflow.result, "async-test", 0, 300_000L);
+    assertThat(pool.getSaturatedWorkflowTypes(), contains("async-test"));
+    executor.takeHeldSlot().release();
+    assertThat(pool.getSaturatedWorkflowTypes(), is(empty()));
+    assertThat(executor.takeHeldSlot(), is(nullValue()));
+  }
+
+  @Test
+  public void asyncStateMethodTimeoutRetriesState() {
+    LocalContinuationScheduler localContinuations = mock(LocalContinuationScheduler.class);
+    AsyncTestWorkflow.result = new CompletableFuture<>();
+    doReturn(asyncWf).when(workflowDefinitions).getWorkflowDefinition("async-test");
+    WorkflowInstance instance = executingInstanceBuilder().setType("async-test").setState("start").build();
+    executor = new WorkflowStateProcessor(instance.id, instance, objectMapper, workflowDefinitions, workflowInstances,
+        workflowInstanceDao, workflowInstancePreProcessor, env, processingInstances, localContinuations, listener1, listener2);
+
+    executor.run();
+    executor.asyncStateMethodTimedOut(100);
+    executor.run();
+
+    verify(workflowInstanceDao).updateWorkflowInstanceAfterExecution(
+        MockitoHamcrest.argThat(matchesWorkflowInstance(inProgress, AsyncTestWorkflow.State.start, 1,
+            containsString("did not complete in 100 ms"))),
+        MockitoHamcrest.argThat(matchesWorkflowInstanceAction(AsyncTestWorkflow.State.start,
+            containsString("did not complete in 100 ms"), 0, stateExecutionFailed)),
+        argThat(isEmptyWorkflowList()), argThat(isEmptyWorkflowList()), eq(true));
+    assertThat(AsyncTestWorkflow.result.isCancelled(), is(true));
+  }
+
+  @Test
+  public void completedAsyncStateMethodIsProcessedWithoutSuspending() {
+    AsyncTestWorkflow.result = completedFuture(moveToStateAfter(AsyncTestWorkflow.State.process, tomorrow, "Cached"));
+    doReturn(asyncWf).when(workflowDefinitions).getWorkflowDefinition("async-test");
+    WorkflowInstance instance = executingInstanceBuilder().setType("async-test").setState("start").build();
+    executor = new WorkflowStateProcessor(instance.id, instance, objectMapper, workflowDefinitions, workflowInstances,
+        workflowInstanceDao, workflowInstancePreProcessor, env, processingInstances, null, listener1, listener2);
+
+    executor.run();
+
+    verify(workflowInstanceDao).updateWorkflowInstanceAfterExecution(
+        MockitoHamcrest.argThat(matchesWorkflowInstance(inProgress, AsyncTestWorkflow.State.process, 0,
+            is("Scheduled by previous state start"))),
+        MockitoHamcrest.argThat(matchesWorkflowInstanceAction(AsyncTestWorkflow.State.start, is("Cached"), 0, stateExecution)),
+        argThat(isEmptyWorkflowList()), argThat(isEmptyWorkflowList()), eq(true));
+  }
+
+  @Test
+  public void runWorkflowUsesLoadedInstanceWithoutReadingItAgain() {
+    WorkflowInstance instance = executingInstanceBuilder().setType("failing-test").setState("start").build();
+    executor = new WorkflowStateProcessor(instance.id, instance, objectMapper, workflowDefinitions, workflowInstances,
+        workflowInstanceDao, workflowInstancePreProcessor, env, processingInstances, null, listener1, listener2);
+
+    executor.run();
+
+    verify(workflowInstances, never()).getWorkflowInstance(any(Integer.class), any(), any());
+    verify(workflowInstanceDao).updateWorkflowInstanceAfterExecution(
+        MockitoHamcrest.argThat(matchesWorkflowInstance(inProgress, FailingTestWorkflow.State.start, 1, containsString("test-fail"))),
+        MockitoHamcrest.argThat(
+            matchesWorkflowInstanceAction(FailingTestWorkflow.State.start, containsString("test-fail"), 0, stateExecutionFailed)),
+        argThat(isEmptyWorkflowList()), argThat(isEmptyWorkflowList()), eq(true));
+  }
+
   @Test
   public void runWorkflowThroughOneFailedState() {
     WorkflowInstance instance = executingInstanceBuilder().setType("failing-test").setState("start").build();
@@ -363,6 +516,7 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     verify(listener1, times(2)).process(any(ListenerContext.class), any(ListenerChain.class));
     verify(listener1).afterFailure(any(ListenerContext.class), isNull());
     verify(listener1).afterProcessing(any(ListenerContext.class));
+    verify(listener1).getWorkflowTypes();
     verifyNoMoreInteractions(listener1);
     verify(workflowInstanceDao, times(2)).updateWorkflowInstanceAfterExecution(update.capture(), action.capture(),
         childWorkflows.capture(), workflows.capture(), eq(true));
@@ -403,6 +557,7 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     verify(listener1, times(2)).process(any(ListenerContext.class), any(ListenerChain.class));
     verify(listener1).afterFailure(any(ListenerContext.class), any(Throwable.class));
     verify(listener1).afterProcessing(any(ListenerContext.class));
+    verify(listener1).getWorkflowTypes();
     verifyNoMoreInteractions(listener1);
     verify(workflowInstanceDao, times(2)).updateWorkflowInstanceAfterExecution(update.capture(), action.capture(),
         childWorkflows.capture(), workflows.capture(), eq(true));
@@ -490,6 +645,7 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     verify(listener1).beforeProcessing(any(ListenerContext.class));
     verify(listener1).process(any(ListenerContext.class), any(ListenerChain.class));
     verify(listener1).afterProcessing(any(ListenerContext.class));
+    verify(listener1).getWorkflowTypes();
     verifyNoMoreInteractions(listener1);
     verify(workflowInstanceDao).updateWorkflowInstanceAfterExecution(
         MockitoHamcrest.argThat(matchesWorkflowInstance(inProgress, FailingTestWorkflow.State.retryingState, 1, is("Retrying"))),
@@ -508,6 +664,7 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     verify(listener1).beforeProcessing(any(ListenerContext.class));
     verify(listener1).process(any(ListenerContext.class), any(ListenerChain.class));
     verify(listener1).afterFailure(any(ListenerContext.class), any(Throwable.class));
+    verify(listener1).getWorkflowTypes();
     verifyNoMoreInteractions(listener1);
     verify(workflowInstanceDao).updateWorkflowInstanceAfterExecution(
         MockitoHamcrest.argThat(matchesWorkflowInstance(inProgress, FailingTestWorkflow.State.start, 1, containsString("test-fail"))),
@@ -576,6 +733,37 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     assertThat(state.get("hello"), is("[1,2,3]"));
   }
 
+  @Test
+  public void lazyStateVariablesOfStateMethodParametersArePrefetched() {
+    env.setProperty("nflow.executor.stateVariables.lazy", "true");
+    executor = new WorkflowStateProcessor(1, objectMapper, workflowDefinitions, workflowInstances, workflowInstanceDao,
+        workflowInstancePreProcessor, env, processingInstances, listener1, listener2);
+    Map<String, String> storedState = new LinkedHashMap<>();
+    storedState.put("string", "Str");
+    storedState.put("int", "42");
+    storedState.put("pojo", "{\"field\": \"val\", \"test\": true}");
+    storedState.put("immutablePojo", "{\"field\": \"unmodified\"}");
+    WorkflowInstance instance = executingInstanceBuilder().setType("execute-test").setState("process").build();
+    when(workflowInstances.getWorkflowInstance(instance.id,
+        EnumSet.of(WorkflowInstanceInclude.CHILD_WORKFLOW_IDS, WorkflowInstanceInclude.STARTED), null)).thenReturn(instance);
+    when(workflowInstanceDao.getStateVariables(eq(instance.id), anyCollection())).thenReturn(storedState);
+    Map<String, String> changed = new LinkedHashMap<>();
+    doAnswer(invocation -> {
+      changed.putAll(invocation.<WorkflowInstance> getArgument(0).getChangedStateVariables());
+      return null;
+    }).when(workflowInstanceDao).updateWorkflowInstanceAfterExecution(any(WorkflowInstance.class),
+        any(WorkflowInstanceAction.class), argThat(isEmptyWorkflowList()), argThat(isEmptyWorkflowList()), eq(true));
+
+    executor.run();
+
+    verify(workflowInstanceDao, times(1)).getStateVariables(eq(instance.id), anyCollection());
+    assertThat((String) lastArgs.get(0), is("Str"));
+    assertThat((Integer) lastArgs.get(1), is(42));
+    assertThat(changed.containsKey("string"), is(false));
+    assertThat(changed.containsKey("immutablePojo"), is(false));
+    assertThat(changed.get("pojo"), is("{\"field\":\"val modified\",\"test\":true}"));
+  }
+
   private Matcher<WorkflowInstance> matchesWorkflowInstance(WorkflowInstanceStatus status, WorkflowState state,
       int retries, Matcher<String> stateTextMatcher) {
     return matchesWorkflowInstance(status, state, retries, stateTextMatcher, Matchers.any(DateTime.class));
@@ -646,6 +834,8 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     verify(listener2).process(any(ListenerContext.class), any(ListenerChain.class));
     verify(listener1).afterProcessing(any(ListenerContext.class));
     verify(listener2).afterProcessing(any(ListenerContext.class));
+    verify(listener1).getWorkflowTypes();
+    verify(listener2).getWorkflowTypes();
     verifyNoMoreInteractions(listener1, listener2);
   }
 
@@ -662,6 +852,8 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
     verify(listener2).process(any(ListenerContext.class), any(ListenerChain.class));
     verify(listener1).afterFailure(any(ListenerContext.class),  argThat(new IsTestFailException()));
     verify(listener2).afterFailure(any(ListenerContext.class), argThat(new IsTestFailException()));
+    verify(listener1).getWorkflowTypes();
+    verify(listener2).getWorkflowTypes();
     verifyNoMoreInteractions(listener1, listener2);
   }
 
@@ -1075,4 +1267,78 @@ public class WorkflowStateProcessorTest extends BaseNflowTest {
 
   }
 
+  public static class DelayTestWorkflow extends WorkflowDefinition<DelayTestWorkflow.State> {
+
+    protected DelayTestWorkflow() {
+      super("delay", State.start, State.end);
+      permit(State.start, State.process);
+      permit(State.process, State.end);
+    }
+
+    public static enum State implements WorkflowState {
+      start(WorkflowStateType.start), process(WorkflowStateType.normal), end(WorkflowStateType.end);
+
+      private final WorkflowStateType stateType;
+
+      private State(WorkflowStateType stateType) {
+        this.stateType = stateType;
+      }
+
+      @Override
+      public WorkflowStateType getType() {
+        return stateType;
+      }
+
+      @Override
+      public String getDescription() {
+        return name();
+      }
+    }
+
+    public NextAction start(@SuppressWarnings("unused") StateExecution execution) {
+      return moveToStateAfter(State.process, now().plusMillis(500), "Process soon");
+    }
+
+    public NextAction process(@SuppressWarnings("unused") StateExecution execution) {
+      return stopInState(State.end, "Finished");
+    }
+  }
+
+  public static class AsyncTestWorkflow extends WorkflowDefinition<AsyncTestWorkflow.State> {
+    static CompletableFuture<NextAction> result;
+
+    protected AsyncTestWorkflow() {
+      super("async", State.start, State.end);
+      permit(State.start, State.process);
+      permit(State.process, State.end);
+    }
+
+    public static enum State implements WorkflowState {
+      start(WorkflowStateType.start), process(WorkflowStateType.normal), end(WorkflowStateType.end);
+
+      private final WorkflowStateType stateType;
+
+      private State(WorkflowStateType stateType) {
+        this.stateType = stateType;
+      }
+
+      @Override
+      public WorkflowStateType getType() {
+        return stateType;
+      }
+
+      @Override
+      public String getDescription() {
+        return name();
+      }
+    }
+
+    public CompletableFuture<NextAction> start(@SuppressWarnings("unused") StateExecution execution) {
+      return result;
+    }
+
+    public NextAction process(@SuppressWarnings("unused") StateExecution execution) {
+      return stopInState(State.end, "Finished");
+    }
+  }
 }
@@ -0,0 +1,75 @@
+package io.nflow.engine.internal.workflow;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+import io.nflow.engine.model.ModelObject;
+
+/**
+ * Measures round-tripping a typical POJO state variable through ObjectStringMapper, using the type lookup and generic
+ * ObjectMapper calls of earlier versions as a baseline. Run with the main method using the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectStringMapperBenchmark {
+  private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JodaModule());
+  private final ObjectStringMapper mapper = new ObjectStringMapper(objectMapper);
+  private final Order order = new Order("12345", new DateTime(2020, 1, 1, 12, 0), Arrays.asList("first", "second"), 3);
+
+  @Benchmark
+  public Object cachedReaderAndWriter() {
+    return mapper.convertToObject(Order.class, "order", mapper.convertFromObject("order", order));
+  }
+
+  @Benchmark
+  public Object objectMapper() throws IOException {
+    String value = objectMapper.writeValueAsString(order);
+    return objectMapper.readValue(value, objectMapper.getTypeFactory().constructType(Order.class));
+  }
+
+  public static class Order extends ModelObject {
+    public String id;
+    public DateTime created;
+    public List<String> items;
+    public int quantity;
+
+    public Order() {
+      // for Jackson
+    }
+
+    public Order(String id, DateTime created, List<String> items, int quantity) {
+      this.id = id;
+      this.created = created;
+      this.items = items;
+      this.quantity = quantity;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ObjectStringMapperBenchmark.class.getSimpleName()).build()).run();
+  }
+}
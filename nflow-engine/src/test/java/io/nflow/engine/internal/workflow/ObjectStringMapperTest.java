@@ -0,0 +1,145 @@
+package io.nflow.engine.internal.workflow;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.nflow.engine.internal.workflow.WorkflowDefinitionScannerTest.ScannerState;
+import io.nflow.engine.model.ModelObject;
+import io.nflow.engine.workflow.definition.Mutable;
+import io.nflow.engine.workflow.definition.NextAction;
+import io.nflow.engine.workflow.definition.StateExecution;
+import io.nflow.engine.workflow.definition.StateVar;
+import io.nflow.engine.workflow.definition.WorkflowDefinition;
+
+public class ObjectStringMapperTest {
+  private final ObjectStringMapper mapper = new ObjectStringMapper(new ObjectMapper());
+  private final WorkflowStateMethod method = new WorkflowDefinitionScanner().getStateMethods(MutableWorkflow.class).get("start");
+  private final StateExecution execution = mock(StateExecution.class);
+  private final String storedData = "{ \"name\": \"foo\", \"count\": 1 }";
+
+  @Test
+  public void convertsObjectsToStringAndBack() {
+    Data data = new Data("foo", 42);
+
+    String value = mapper.convertFromObject("key", data);
+
+    assertThat(value, is("{\"name\":\"foo\",\"count\":42}"));
+    assertThat(mapper.convertToObject(Data.class, "key", value), is(data));
+    assertThat(mapper.convertToObject(Data.class, "key", mapper.convertFromObject("key", new Data("bar", 1))),
+        is(new Data("bar", 1)));
+  }
+
+  @Test
+  public void convertsGenericTypes() {
+    Type type = new TypeReference<List<Data>>() {
+      // type token
+    }.getType();
+
+    Object value = mapper.convertToObject(type, "key", "[{\"name\":\"foo\",\"count\":1},{\"name\":\"bar\",\"count\":2}]");
+
+    assertThat(value, is(asList(new Data("foo", 1), new Data("bar", 2))));
+  }
+
+  @Test
+  public void convertsNullToJsonNull() {
+    assertThat(mapper.convertFromObject("key", null), is("null"));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void convertToObjectFailsWithInvalidValue() {
+    mapper.convertToObject(Data.class, "key", "not json");
+  }
+
+  @Test
+  public void unchangedMutableVariablesAreNotSerializedAgain() {
+    when(execution.getVariable("data")).thenReturn(storedData);
+    when(execution.getVariable("tracked")).thenReturn(storedData);
+    when(execution.getVariable("text")).thenReturn("bar");
+    Object[] args = mapper.createArguments(execution, method);
+
+    mapper.storeArguments(execution, method, args);
+
+    verify(execution).setVariable("data", "{\"name\":\"foo\",\"count\":1}");
+    verify(execution).setVariable("tracked", storedData);
+    verify(execution).setVariable("text", "bar");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void replacedMutableVariablesAreSerialized() {
+    when(execution.getVariable("tracked")).thenReturn(storedData);
+    when(execution.getVariable("text")).thenReturn("bar");
+    Object[] args = mapper.createArguments(execution, method);
+    ((Mutable<Data>) args[2]).val.count = 2;
+    ((Mutable<String>) args[3]).val = "baz";
+
+    mapper.storeArguments(execution, method, args);
+
+    verify(execution).setVariable("tracked", storedData);
+    verify(execution).setVariable("text", "baz");
+
+    ((Mutable<Data>) args[2]).val = new Data("foo", 2);
+
+    mapper.storeArguments(execution, method, args);
+
+    verify(execution).setVariable("tracked", "{\"name\":\"foo\",\"count\":2}");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void newMutableVariablesAreSerialized() {
+    Object[] args = mapper.createArguments(execution, method);
+    ((Mutable<Data>) args[2]).val = new Data("foo", 1);
+
+    mapper.storeArguments(execution, method, args);
+
+    verify(execution).setVariable("tracked", "{\"name\":\"foo\",\"count\":1}");
+    verify(execution, never()).setVariable(eq("data"), anyString());
+    verify(execution, never()).setVariable(eq("text"), anyString());
+  }
+
+  public static class MutableWorkflow extends WorkflowDefinition<ScannerState> {
+    public MutableWorkflow() {
+      super("mutable", ScannerState.start, ScannerState.end);
+    }
+
+    public NextAction start(@SuppressWarnings("unused") StateExecution execution, @StateVar("data") Mutable<Data> data,
+        @StateVar(value = "tracked", detectChangesByIdentity = true) Mutable<Data> tracked,
+        @StateVar("text") Mutable<String> text) {
+      return null;
+    }
+
+    public void end(@SuppressWarnings("unused") StateExecution execution) {
+      // no-op
+    }
+  }
+
+  public static class Data extends ModelObject {
+    public String name;
+    public int count;
+
+    public Data() {
+      // for Jackson
+    }
+
+    public Data(String name, int count) {
+      this.name = name;
+      this.count = count;
+    }
+  }
+}
@@ -1,14 +1,20 @@
 package io.nflow.engine.internal.workflow;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -216,6 +222,32 @@ public class StateExecutionImplTest {
     assertThat(execution.getVariable("foo", Data.class, defaultData), is(defaultData));
   }
 
+  @Test
+  public void getVariableLoadsLazyStateVariableOnce() {
+    when(workflowDao.getStateVariables(99, singletonList("foo"))).thenReturn(singletonMap("foo", "bar"));
+    execution = new StateExecutionImpl(instance, objectStringMapper, workflowDao, workflowInstancePreProcessor,
+        workflowInstanceService, new LazyStateVariables(workflowDao));
+
+    assertThat(execution.getVariable("foo"), is("bar"));
+    assertThat(execution.getVariable("foo"), is("bar"));
+
+    verify(workflowDao, times(1)).getStateVariables(99, singletonList("foo"));
+    assertThat(instance.originalStateVariables.get("foo"), is("bar"));
+    assertThat(instance.getChangedStateVariables(), is(emptyMap()));
+  }
+
+  @Test
+  public void getVariableDoesNotLoadLazyStateVariableThatIsSet() {
+    execution = new StateExecutionImpl(instance, objectStringMapper, workflowDao, workflowInstancePreProcessor,
+        workflowInstanceService, new LazyStateVariables(workflowDao));
+
+    execution.setVariable("foo", "bar");
+
+    assertThat(execution.getVariable("foo"), is("bar"));
+    verify(workflowDao, never()).getStateVariables(anyInt(), anyCollection());
+    assertThat(instance.getChangedStateVariables(), is(singletonMap("foo", "bar")));
+  }
+
   @Test
   public void getSignalWorks() {
     when(workflowDao.getSignal(instance.id)).thenReturn(Optional.of(42));
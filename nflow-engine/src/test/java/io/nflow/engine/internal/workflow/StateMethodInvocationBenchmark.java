@@ -0,0 +1,83 @@
+package io.nflow.engine.internal.workflow;
+
+import static io.nflow.engine.workflow.definition.NextAction.moveToState;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.springframework.util.ReflectionUtils.invokeMethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.nflow.engine.internal.workflow.WorkflowDefinitionScannerTest.ScannerState;
+import io.nflow.engine.workflow.definition.NextAction;
+import io.nflow.engine.workflow.definition.StateExecution;
+import io.nflow.engine.workflow.definition.StateVar;
+import io.nflow.engine.workflow.definition.WorkflowDefinition;
+
+/**
+ * Measures the dispatch overhead of invoking a state method, using the method handle of WorkflowStateMethod and Spring
+ * ReflectionUtils.invokeMethod as a baseline. Scanning the workflow definition is included to show the cost of creating a
+ * definition instance. Run with the main method using the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateMethodInvocationBenchmark {
+  private final BenchmarkWorkflow definition = new BenchmarkWorkflow();
+  private final Object[] args = new Object[] { null, "value", 1 };
+  private WorkflowStateMethod method;
+
+  @Setup
+  public void setup() {
+    method = new WorkflowDefinitionScanner().getStateMethods(BenchmarkWorkflow.class).get("start");
+  }
+
+  @Benchmark
+  public Object methodHandle() {
+    return method.invoke(definition, args);
+  }
+
+  @Benchmark
+  public Object reflection() {
+    return invokeMethod(method.method, definition, args);
+  }
+
+  @Benchmark
+  public Object scanDefinition() {
+    return new WorkflowDefinitionScanner().scanStateMethods(BenchmarkWorkflow.class);
+  }
+
+  public static class BenchmarkWorkflow extends WorkflowDefinition<ScannerState> {
+    private static final NextAction NEXT_ACTION = moveToState(ScannerState.end, "done");
+
+    public BenchmarkWorkflow() {
+      super("benchmark", ScannerState.start, ScannerState.end);
+    }
+
+    @SuppressWarnings("unused")
+    public NextAction start(StateExecution execution, @StateVar("key") String value, @StateVar("count") int count) {
+      return NEXT_ACTION;
+    }
+
+    public void end(@SuppressWarnings("unused") StateExecution execution) {
+      // no-op
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(StateMethodInvocationBenchmark.class.getSimpleName()).build()).run();
+  }
+}
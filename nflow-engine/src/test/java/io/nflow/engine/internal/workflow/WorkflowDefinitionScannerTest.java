@@ -6,12 +6,17 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.Map;
 import java.util.Objects;
 
@@ -95,6 +100,39 @@ public class WorkflowDefinitionScannerTest {
     assertThat(methods.get("end").params[0], stateParam("paramKey", String.class, true, false));
   }
 
+  @Test
+  public void detectChangesByIdentityFlagSetsFlagInStateParameter() {
+    Map<String, WorkflowStateMethod> methods = scanner.getStateMethods(IdentityStateVarWorkflow.class);
+    StateParameter mutableParam = methods.get("end").params[0];
+    StateParameter param = methods.get("end").params[1];
+    assertThat(mutableParam, stateParam("paramKey", ParamObj.class, false, true));
+    assertTrue(mutableParam.identityTracked);
+    assertThat(param, stateParam("paramKey2", ParamObj.class, true, false));
+    assertTrue(param.identityTracked);
+    assertTrue(scanner.getStateMethods(MutableParamWorkflow.class).get("end").params[0].identityTracked);
+    assertFalse(scanner.getStateMethods(InitiateParameterWorkflow.class).get("end").params[0].identityTracked);
+  }
+
+  @Test
+  public void stateMethodsAreScannedOncePerClass() {
+    assertSame(scanner.getStateMethods(ReadOnlyStateVarWorkflow.class),
+        new WorkflowDefinitionScanner().getStateMethods(ReadOnlyStateVarWorkflow.class));
+  }
+
+  @Test
+  public void stateMethodIsInvokedWithPrimitiveArgument() {
+    Map<String, WorkflowStateMethod> methods = scanner.getStateMethods(InvokedWorkflow.class);
+    NextAction nextAction = (NextAction) methods.get("start").invoke(new InvokedWorkflow(), null, 3);
+    assertThat(nextAction.getReason(), is("3"));
+  }
+
+  @Test
+  public void checkedExceptionFromStateMethodIsWrapped() {
+    Map<String, WorkflowStateMethod> methods = scanner.getStateMethods(InvokedWorkflow.class);
+    thrown.expect(UndeclaredThrowableException.class);
+    methods.get("end").invoke(new InvokedWorkflow(), (Object) null);
+  }
+
   private CustomMatcher<StateParameter> stateParam(final String key, final Type type, final boolean readOnly, final boolean mutable) {
     return new CustomMatcher<WorkflowStateMethod.StateParameter>("") {
       @Override
@@ -198,4 +236,24 @@ public class WorkflowDefinitionScannerTest {
     public NextAction start(StateExecution exec) { return null; }
     public NextAction end(StateExecution exec, @StateVar(value = "paramKey", readOnly = true) String param) { return null; }
   }
+
+  public static class IdentityStateVarWorkflow extends WorkflowDefinition<ScannerState> {
+    public IdentityStateVarWorkflow() {
+      super("identity", ScannerState.start, ScannerState.end);
+    }
+    public NextAction start(StateExecution exec) { return null; }
+    public NextAction end(StateExecution exec,
+        @StateVar(value = "paramKey", detectChangesByIdentity = true) Mutable<ParamObj> param,
+        @StateVar(value = "paramKey2", detectChangesByIdentity = true) ParamObj param2) { return null; }
+  }
+
+  public static class InvokedWorkflow extends WorkflowDefinition<ScannerState> {
+    public InvokedWorkflow() {
+      super("invoked", ScannerState.start, ScannerState.end);
+    }
+    public NextAction start(StateExecution exec, @StateVar("count") int count) {
+      return NextAction.moveToState(ScannerState.end, Integer.toString(count));
+    }
+    public void end(StateExecution exec) throws IOException { throw new IOException("fail"); }
+  }
 }
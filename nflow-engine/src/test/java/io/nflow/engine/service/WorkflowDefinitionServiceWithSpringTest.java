@@ -38,10 +38,12 @@ import io.nflow.engine.internal.dao.TableMetadataChecker;
 import io.nflow.engine.internal.dao.WorkflowDefinitionDao;
 import io.nflow.engine.internal.dao.WorkflowInstanceDao;
 import io.nflow.engine.internal.executor.WorkflowInstanceExecutor;
+import io.nflow.engine.internal.executor.WorkflowStateProcessorFactory;
 import io.nflow.engine.internal.storage.db.SQLVariants;
 import io.nflow.engine.internal.workflow.WorkflowInstancePreProcessor;
 import io.nflow.engine.workflow.definition.AbstractWorkflowDefinition;
 import io.nflow.engine.workflow.definition.WorkflowState;
+import io.nflow.engine.workflow.executor.ActivationNotifier;
 import io.nflow.engine.workflow.instance.WorkflowInstanceFactory;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -140,6 +142,17 @@ public class WorkflowDefinitionServiceWithSpringTest {
       return mock(WorkflowInstanceExecutor.class);
     }
 
+    @Bean
+    public WorkflowStateProcessorFactory workflowStateProcessorFactory() {
+      return mock(WorkflowStateProcessorFactory.class);
+    }
+
+    @Bean
+    @NFlow
+    public ActivationNotifier activationNotifier() {
+      return mock(ActivationNotifier.class);
+    }
+
     @Bean
     public WorkflowInstanceFactory workflowInstanceFactory() {
       return mock(WorkflowInstanceFactory.class);
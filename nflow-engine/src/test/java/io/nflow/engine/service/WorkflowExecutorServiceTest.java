@@ -1,6 +1,7 @@
 package io.nflow.engine.service;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
@@ -14,6 +15,8 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import io.nflow.engine.internal.dao.ExecutorDao;
 import io.nflow.engine.internal.executor.BaseNflowTest;
+import io.nflow.engine.internal.executor.WorkflowStateProcessorFactory;
+import io.nflow.engine.workflow.executor.LongRunningStateProcessor;
 import io.nflow.engine.workflow.executor.WorkflowExecutor;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -25,15 +28,24 @@ public class WorkflowExecutorServiceTest extends BaseNflowTest {
   private ExecutorDao executorDao;
   @Mock
   private WorkflowExecutor executor;
+  @Mock
+  private WorkflowStateProcessorFactory stateProcessorFactory;
 
   @Before
   public void setup() {
-    when(executorDao.getExecutors()).thenReturn(asList(executor));
-    service = new WorkflowExecutorService(executorDao);
+    service = new WorkflowExecutorService(executorDao, stateProcessorFactory);
   }
 
   @Test
   public void getWorkflowExecutorsWorks() {
+    when(executorDao.getExecutors()).thenReturn(asList(executor));
     assertThat(service.getWorkflowExecutors().size(), is(equalTo(1)));
   }
+
+  @Test
+  public void getLongRunningStateProcessorsWorks() {
+    LongRunningStateProcessor processor = new LongRunningStateProcessor(1, null, 120, "stack");
+    when(stateProcessorFactory.getLongRunningStateProcessors()).thenReturn(singletonList(processor));
+    assertThat(service.getLongRunningStateProcessors(), is(singletonList(processor)));
+  }
 }
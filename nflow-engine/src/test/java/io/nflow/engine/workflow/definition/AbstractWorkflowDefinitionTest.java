@@ -136,6 +136,29 @@ public class AbstractWorkflowDefinitionTest {
     assertThat(workflow.isAllowedNextAction(instance, nextAction), is(true));
   }
 
+  @Test
+  public void isAllowedNextActionReturnsTrueForStateChangePermittedAfterFirstCheck() {
+    TestWorkflow2 wf = new TestWorkflow2();
+    WorkflowInstance instance = new WorkflowInstance.Builder().setState("process").build();
+    NextAction nextAction = moveToState(TestWorkflow.State.failed, "reason");
+    assertThat(wf.isAllowedNextAction(instance, nextAction), is(false));
+    wf.permitSameFailure();
+    assertThat(wf.isAllowedNextAction(instance, nextAction), is(true));
+    assertThat(wf.isAllowedNextAction(instance, moveToState(TestWorkflow.State.done, "reason")), is(true));
+  }
+
+  @Test
+  public void getStateReturnsStateByName() {
+    assertThat(workflow.getState("process"), is(TestWorkflow.State.process));
+  }
+
+  @Test
+  public void getStateThrowsExceptionForUnknownState() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("No state 'unknown' in workflow definiton test");
+    workflow.getState("unknown");
+  }
+
   @Test
   public void nonFinalStateMethodMustReturnNextAction() {
     thrown.expect(IllegalArgumentException.class);
@@ -147,7 +170,7 @@ public class AbstractWorkflowDefinitionTest {
   public void finalStateMethodMustReturnVoid() {
     thrown.expect(IllegalArgumentException.class);
     thrown
-        .expectMessage("Class 'io.nflow.engine.workflow.definition.AbstractWorkflowDefinitionTest$TestWorkflow4' has a non-final state method 'begin' that does not return NextAction");
+        .expectMessage("Class 'io.nflow.engine.workflow.definition.AbstractWorkflowDefinitionTest$TestWorkflow4' has a non-final state method 'begin' that does not return NextAction or CompletionStage<NextAction>");
     new TestWorkflow4();
   }
 
@@ -17,10 +17,11 @@ import com.codahale.metrics.health.HealthCheckRegistry;
 import com.codahale.metrics.jmx.JmxReporter;
 
 import io.nflow.engine.internal.dao.ExecutorDao;
+import io.nflow.engine.internal.executor.WorkflowInstanceExecutor;
 import io.nflow.engine.service.HealthCheckService;
 
 /**
- * Configures MetricsWorkflowExecutorListener.
+ * Configures MetricsWorkflowExecutorListener and workflow instance executor metrics.
  */
 @Named("nflowMetrics/metricsContext")
 @Configuration
@@ -36,6 +37,9 @@ public class NflowMetricsContext {
   @Inject
   private HealthCheckRegistry healthCheckRegistry;
 
+  @Inject
+  private WorkflowInstanceExecutor workflowInstanceExecutor;
+
   @Bean
   public DatabaseConnectionHealthCheck databaseConnectionHealthCheck() {
     return new DatabaseConnectionHealthCheck(healthCheckService);
@@ -46,6 +50,11 @@ public class NflowMetricsContext {
     healthCheckRegistry.register("nflowDatabaseConnection", databaseConnectionHealthCheck());
   }
 
+  @Bean
+  public WorkflowInstanceExecutorMetrics workflowInstanceExecutorMetrics(ExecutorDao executors) {
+    return new WorkflowInstanceExecutorMetrics(metricRegistry, workflowInstanceExecutor, executors);
+  }
+
   @Bean
   public MetricsWorkflowExecutorListener metricsWorkflowExecutorListener(ExecutorDao executors) {
     logger.info("Enabling MetricsWorkflowExecutorListener");
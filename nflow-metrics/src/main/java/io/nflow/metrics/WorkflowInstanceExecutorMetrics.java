@@ -0,0 +1,29 @@
+package io.nflow.metrics;
+
+import static java.lang.String.format;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import io.nflow.engine.internal.dao.ExecutorDao;
+import io.nflow.engine.internal.executor.WorkflowInstanceExecutor;
+
+/**
+ * Register gauges for the workflow instance executor thread pool
+ * <ul>
+ * <li>Total time executor threads have spent idle waiting for workflow instances</li>
+ * <li>Number of currently idle executor threads</li>
+ * <li>Number of workflow instances waiting in the executor queue</li>
+ * <li>Number of workflow instances submitted to the executor that have not finished yet</li>
+ * </ul>
+ */
+public class WorkflowInstanceExecutorMetrics {
+
+  public WorkflowInstanceExecutorMetrics(MetricRegistry metricRegistry, WorkflowInstanceExecutor executor, ExecutorDao executors) {
+    String prefix = format("%s.%s.", executors.getExecutorGroup(), executors.getExecutorId());
+    metricRegistry.register(prefix + "executor-idle-time", (Gauge<Long>) executor::getTotalIdleTimeMillis);
+    metricRegistry.register(prefix + "executor-idle-threads", (Gauge<Integer>) executor::getIdleThreadCount);
+    metricRegistry.register(prefix + "executor-queue-size", (Gauge<Integer>) executor::getQueueSize);
+    metricRegistry.register(prefix + "executor-in-flight", (Gauge<Integer>) executor::getInFlightCount);
+  }
+}
@@ -24,6 +24,7 @@ import com.codahale.metrics.health.HealthCheckRegistry;
 
 import io.nflow.engine.config.NFlow;
 import io.nflow.engine.internal.dao.ExecutorDao;
+import io.nflow.engine.internal.executor.WorkflowInstanceExecutor;
 import io.nflow.engine.internal.storage.db.SQLVariants;
 import io.nflow.engine.listener.WorkflowExecutorListener;
 import io.nflow.engine.listener.WorkflowExecutorListener.ListenerContext;
@@ -98,6 +99,13 @@ public class MetricsWorkflowExecutorListenerTest {
     assertEquals(1, metricRegistry.getMeters().get("foobarName.0.myWorkflow.my-state.error-count").getCount());
   }
 
+  @Test
+  public void executorGauges() {
+    assertEquals(1234L, metricRegistry.getGauges().get("foobarName.0.executor-idle-time").getValue());
+    assertEquals(2, metricRegistry.getGauges().get("foobarName.0.executor-idle-threads").getValue());
+    assertEquals(3, metricRegistry.getGauges().get("foobarName.0.executor-queue-size").getValue());
+  }
+
   @Configuration
   @Import(NflowMetricsContext.class)
   public static class Config {
@@ -124,6 +132,15 @@ public class MetricsWorkflowExecutorListenerTest {
       return dao;
     }
 
+    @Bean
+    public WorkflowInstanceExecutor workflowInstanceExecutor() {
+      WorkflowInstanceExecutor executor = mock(WorkflowInstanceExecutor.class);
+      when(executor.getTotalIdleTimeMillis()).thenReturn(1234L);
+      when(executor.getIdleThreadCount()).thenReturn(2);
+      when(executor.getQueueSize()).thenReturn(3);
+      return executor;
+    }
+
     @Bean
     public SQLVariants SQLVariants() {
       return mock(SQLVariants.class);
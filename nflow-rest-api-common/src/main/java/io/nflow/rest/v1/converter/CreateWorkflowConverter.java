@@ -31,6 +31,9 @@ public class CreateWorkflowConverter {
     if (isNotEmpty(req.startState)) {
       builder.setState(req.startState);
     }
+    if (req.priority != null) {
+      builder.setPriority(req.priority);
+    }
     for (Entry<String, Object> entry : req.stateVariables.entrySet()) {
       Object value = entry.getValue();
       if (value instanceof String) {
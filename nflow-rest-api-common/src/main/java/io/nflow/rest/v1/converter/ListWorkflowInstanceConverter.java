@@ -51,6 +51,7 @@ public class ListWorkflowInstanceConverter {
     }
     resp.retries = instance.retries;
     resp.signal = instance.signal.orElse(null);
+    resp.priority = instance.priority;
     if (includes.contains(WorkflowInstanceInclude.ACTIONS)) {
       resp.actions = new ArrayList<>();
       for (WorkflowInstanceAction action : instance.actions) {
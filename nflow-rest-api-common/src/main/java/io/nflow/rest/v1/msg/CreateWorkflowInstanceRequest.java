@@ -42,4 +42,7 @@ public class CreateWorkflowInstanceRequest extends ModelObject {
   @ApiModelProperty("State variables to be set for the new workflow instance.")
   public Map<String, Object> stateVariables = new HashMap<>();
 
+  @ApiModelProperty("Priority of the new workflow instance. Instances with higher priority are executed first. If null, defaults to 0.")
+  public Short priority;
+
 }
@@ -73,4 +73,7 @@ public class ListWorkflowInstanceResponse extends ModelObject {
   @ApiModelProperty("Current signal value")
   public Integer signal;
 
+  @ApiModelProperty("Workflow instance priority")
+  public short priority;
+
 }
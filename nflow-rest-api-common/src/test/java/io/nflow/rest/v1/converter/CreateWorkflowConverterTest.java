@@ -43,6 +43,7 @@ public class CreateWorkflowConverterTest {
     req.externalId = "externalId";
     req.type = "wfType";
     req.startState = "startState";
+    req.priority = 3;
     req.stateVariables.put("foo", "bar");
     req.stateVariables.put("textNode", new TextNode("text"));
     WorkflowInstance i = converter.convert(req);
@@ -51,6 +52,7 @@ public class CreateWorkflowConverterTest {
     assertThat(i.externalId, equalTo(req.externalId));
     assertThat(i.type, equalTo(req.type));
     assertThat(i.state, equalTo("startState"));
+    assertThat(i.priority, is((short) 3));
     assertThat(i.stateVariables.get("foo"), is("bar"));
     assertThat(i.stateVariables.get("textNode"), is("\"text\""));
   }
@@ -64,6 +66,7 @@ public class CreateWorkflowConverterTest {
     assertThat(i.businessKey, nullValue(String.class));
     assertThat(i.externalId, nullValue(String.class));
     assertThat(i.type, equalTo(req.type));
+    assertThat(i.priority, is((short) 0));
   }
 
   @Test
@@ -61,7 +61,7 @@ public class ListWorkflowInstanceConverterTest {
         .setBusinessKey("businessKey").setParentWorkflowId(942).setParentActionId(842).setExternalId("externalId")
         .setState("cState").setStateText("cState desc").setNextActivation(now()).setActions(asList(a))
         .setCreated(now().minusMinutes(1)).setCreated(now().minusHours(2)).setModified(now().minusHours(1)).setRetries(42)
-        .setStateVariables(stateVariables).setSignal(Optional.of(42)).build();
+        .setStateVariables(stateVariables).setSignal(Optional.of(42)).setPriority((short) 5).build();
 
     JsonNode node1 = mock(JsonNode.class);
     JsonNode nodeQuux = mock(JsonNode.class);
@@ -93,6 +93,7 @@ public class ListWorkflowInstanceConverterTest {
     assertThat(resp.started, is(i.started));
     assertThat(resp.retries, is(i.retries));
     assertThat(resp.signal, is(i.signal.get()));
+    assertThat(resp.priority, is(i.priority));
     assertThat(resp.actions, contains(reflectEquals(
         new Action(a.id, a.type.name(), a.state, a.stateText, a.retryNo, a.executionStart, a.executionEnd, a.executorId))));
   }